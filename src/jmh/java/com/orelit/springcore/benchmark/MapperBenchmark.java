@@ -0,0 +1,176 @@
+package com.orelit.springcore.benchmark;
+
+import com.orelit.springcore.common.dto.OrelUserDto;
+import com.orelit.springcore.persistence.converter.DepartmentMapper;
+import com.orelit.springcore.persistence.converter.DepartmentMapperImpl;
+import com.orelit.springcore.persistence.converter.OrelUserMapper;
+import com.orelit.springcore.persistence.converter.OrelUserMapperImpl;
+import com.orelit.springcore.persistence.entity.Department;
+import com.orelit.springcore.persistence.entity.OrelUser;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Throughput of the generated entity/DTO mappers used on every request, compared with the
+ * ModelMapper based mapping they replaced. Allocation rate is reported by the default -prof gc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+
+    @Param({"100"})
+    private int listSize;
+
+    private OrelUserMapper orelUserMapper;
+
+    private DepartmentMapper departmentMapper;
+
+    private ModelMapperBaseline modelMapperBaseline;
+
+    private OrelUser orelUser;
+
+    private List<OrelUser> orelUserList;
+
+    private OrelUserDto orelUserDto;
+
+    @Setup
+    public void setUp() {
+        orelUserMapper = new OrelUserMapperImpl();
+        departmentMapper = new DepartmentMapperImpl(orelUserMapper);
+        modelMapperBaseline = new ModelMapperBaseline(new ModelMapper());
+
+        orelUser = orelUser(1L);
+        orelUserList = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            orelUserList.add(orelUser(i + 1L));
+        }
+        orelUserDto = orelUserDto();
+    }
+
+    @Benchmark
+    public OrelUserDto orelUserToDto() {
+        return orelUserMapper.convertToDto(orelUser);
+    }
+
+    @Benchmark
+    public List<OrelUserDto> orelUserListToDtoList() {
+        return orelUserMapper.convertToOrelUserDtoList(orelUserList);
+    }
+
+    @Benchmark
+    public OrelUser dtoToOrelUser() {
+        return orelUserMapper.convertToEntity(orelUserDto);
+    }
+
+    @Benchmark
+    public Department dtoToDepartment() {
+        return departmentMapper.convertDepartmentDetailDtoToEntity(orelUserDto);
+    }
+
+    @Benchmark
+    public OrelUserDto modelMapperOrelUserToDto() {
+        return modelMapperBaseline.convertToDto(orelUser);
+    }
+
+    @Benchmark
+    public List<OrelUserDto> modelMapperOrelUserListToDtoList() {
+        return modelMapperBaseline.convertToOrelUserDtoList(orelUserList);
+    }
+
+    @Benchmark
+    public OrelUser modelMapperDtoToOrelUser() {
+        return modelMapperBaseline.convertToEntity(orelUserDto);
+    }
+
+    @Benchmark
+    public Department modelMapperDtoToDepartment() {
+        return modelMapperBaseline.convertDepartmentDetailDtoToEntity(orelUserDto);
+    }
+
+    static OrelUser orelUser(long id) {
+        OrelUser orelUser = new OrelUser(id);
+        orelUser.setPhoneNo("0123456789");
+        orelUser.setLanguage("English");
+        orelUser.setFirstName("John");
+        orelUser.setMiddleName("Doe");
+        orelUser.setEmail("john.doe@example.com");
+        Department department = new Department();
+        department.setDep_name("Finance");
+        department.setDep_contact_no("0112345678");
+        department.setDep_email("finance@example.com");
+        department.setOrelUser(orelUser);
+        orelUser.setDepartment(department);
+        return orelUser;
+    }
+
+    static OrelUserDto orelUserDto() {
+        return OrelUserDto.builder()
+                .phoneNo("0123456789")
+                .language("English")
+                .firstName("John")
+                .middleName("Doe")
+                .email("john.doe@example.com")
+                .dep_name("Finance")
+                .dep_contact_no("0112345678")
+                .dep_email("finance@example.com")
+                .build();
+    }
+
+    /**
+     * The previous ModelMapper based OrelUserMapper and DepartmentMapper, kept as the baseline for
+     * the generated mappers.
+     */
+    static class ModelMapperBaseline {
+
+        private final ModelMapper modelMapper;
+
+        ModelMapperBaseline(ModelMapper modelMapper) {
+            this.modelMapper = modelMapper;
+        }
+
+        OrelUser convertToEntity(OrelUserDto orelUserDto) {
+            return modelMapper.map(orelUserDto, OrelUser.class);
+        }
+
+        OrelUserDto convertToDto(OrelUser orelUser) {
+            OrelUserDto orelUserDto = modelMapper.map(orelUser, OrelUserDto.class);
+            if (orelUser.getDepartment() != null) {
+                orelUserDto.setDep_name(orelUser.getDepartment().getDep_name());
+                orelUserDto.setDep_contact_no(orelUser.getDepartment().getDep_contact_no());
+                orelUserDto.setDep_email(orelUser.getDepartment().getDep_email());
+            }
+            return orelUserDto;
+        }
+
+        List<OrelUserDto> convertToOrelUserDtoList(List<OrelUser> orelUserList) {
+            return orelUserList.stream().map(this::convertToDto).collect(Collectors.toList());
+        }
+
+        Department convertDepartmentDetailDtoToEntity(OrelUserDto orelUserDto) {
+            Department department = modelMapper.map(orelUserDto, Department.class);
+            department.setDep_name(orelUserDto.getDep_name());
+            department.setDep_email(orelUserDto.getDep_email());
+            department.setDep_contact_no(orelUserDto.getDep_contact_no());
+            return department;
+        }
+    }
+}
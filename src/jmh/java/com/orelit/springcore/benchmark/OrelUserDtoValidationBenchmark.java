@@ -0,0 +1,74 @@
+package com.orelit.springcore.benchmark;
+
+import com.orelit.springcore.common.dto.OrelUserDto;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the bean validation run on OrelUserDto by @Valid, for a valid request and for a
+ * request failing every constraint, which also builds the violation messages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrelUserDtoValidationBenchmark {
+
+    private ValidatorFactory validatorFactory;
+
+    private Validator validator;
+
+    private OrelUserDto validDto;
+
+    private OrelUserDto invalidDto;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        validDto = MapperBenchmark.orelUserDto();
+        invalidDto = OrelUserDto.builder()
+                .phoneNo("123")
+                .language("english")
+                .firstName("john")
+                .middleName("doe")
+                .email("john.doe")
+                .dep_name("finance")
+                .dep_contact_no("abc")
+                .dep_email("finance")
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<OrelUserDto>> validateValid() {
+        return validator.validate(validDto);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<OrelUserDto>> validateInvalid() {
+        return validator.validate(invalidDto);
+    }
+}
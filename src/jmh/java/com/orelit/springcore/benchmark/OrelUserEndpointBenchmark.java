@@ -0,0 +1,85 @@
+package com.orelit.springcore.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of a running application, reporting latency percentiles (p0.99 in the JMH output).
+ * Compare two configurations by running it against each with the same database and the same
+ * thread count, for example:
+ * -Djmh.args="OrelUserEndpointBenchmark -t 400 -p baseUrl=http://localhost:8081 -p path=/api/v1/OrelUser/list?page=0&amp;size=20"
+ * The client needs as many threads as concurrent requests, so -t sets the concurrency. Keep
+ * server.tomcat.threads.max at its default of 200 so the platform thread run saturates.
+ * The reactive stack serves the same routes, so an instance started with
+ * --spring.profiles.active=reactive is measured the same way.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 20)
+@Fork(value = 1, jvmArgsAppend = "-Djdk.httpclient.connectionPoolSize=0")
+@Threads(400)
+public class OrelUserEndpointBenchmark {
+
+    @Param("http://localhost:8081")
+    private String baseUrl;
+
+    @Param("/api/v1/OrelUser/list?page=0&size=20")
+    private String path;
+
+    private ExecutorService clientExecutor;
+
+    private HttpClient client;
+
+    private HttpRequest request;
+
+    @Setup
+    public void setUp() {
+        clientExecutor = Executors.newCachedThreadPool();
+        client = HttpClient.newBuilder()
+                .executor(clientExecutor)
+                .connectTimeout(Duration.ofSeconds(5))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        clientExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public int get() throws IOException, InterruptedException {
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("HTTP " + response.statusCode() + " from " + request.uri());
+        }
+        return response.statusCode();
+    }
+}
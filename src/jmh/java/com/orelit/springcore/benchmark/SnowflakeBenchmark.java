@@ -0,0 +1,108 @@
+package com.orelit.springcore.benchmark;
+
+import com.orelit.springcore.persistence.snowflake.IdBlock;
+import com.orelit.springcore.persistence.snowflake.Snowflake;
+import com.orelit.springcore.persistence.snowflake.SnowflakeOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contention benchmark for Snowflake id generation. All threads share one generator, the same way
+ * every request thread shares the generator behind BaseEntity.
+ * Run with a different thread count using: -Djmh.args="SnowflakeBenchmark -t 32".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class SnowflakeBenchmark {
+
+    private final Snowflake snowflake = new Snowflake(1);
+
+    private final Snowflake stripedSnowflake = new Snowflake(1, SnowflakeOptions.builder()
+            .stripes(64)
+            .waitStrategy(SnowflakeOptions.WaitStrategy.PARK)
+            .build());
+
+    private final SynchronizedSnowflake synchronizedSnowflake = new SynchronizedSnowflake(1);
+
+    @Benchmark
+    public long lockFreeNextId() {
+        return snowflake.nextId();
+    }
+
+    @Benchmark
+    public long stripedNextId() {
+        return stripedSnowflake.nextId();
+    }
+
+    @Benchmark
+    public void reserveBlock(Blackhole blackhole) {
+        IdBlock block = snowflake.reserve(128);
+        while (block.hasNext()) {
+            blackhole.consume(block.next());
+        }
+    }
+
+    @Benchmark
+    public long synchronizedNextId() {
+        return synchronizedSnowflake.nextId();
+    }
+
+    /**
+     * The previous monitor based generator, kept as the baseline for the lock-free one.
+     */
+    static class SynchronizedSnowflake {
+
+        private static final int NODE_ID_BITS = 10;
+        private static final int SEQUENCE_BITS = 12;
+        private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+        private static final long CUSTOM_EPOCH = 1293840000000L;
+
+        private final long node;
+
+        private volatile long lastTimestamp = -1L;
+        private volatile long sequence = 0L;
+
+        SynchronizedSnowflake(long node) {
+            this.node = node;
+        }
+
+        synchronized long nextId() {
+            long currentTimestamp = timestamp();
+            if (currentTimestamp == lastTimestamp) {
+                sequence = (sequence + 1) & MAX_SEQUENCE;
+                if (sequence == 0) {
+                    while (currentTimestamp == lastTimestamp) {
+                        currentTimestamp = timestamp();
+                    }
+                }
+            } else {
+                sequence = 0;
+            }
+            lastTimestamp = currentTimestamp;
+            return currentTimestamp << (NODE_ID_BITS + SEQUENCE_BITS)
+                    | (node << SEQUENCE_BITS)
+                    | sequence;
+        }
+
+        private long timestamp() {
+            return Instant.now().toEpochMilli() - CUSTOM_EPOCH;
+        }
+    }
+}
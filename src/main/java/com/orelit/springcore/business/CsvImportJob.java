@@ -0,0 +1,121 @@
+package com.orelit.springcore.business;
+
+import com.orelit.springcore.common.dto.CsvImportStatusDto;
+import com.orelit.springcore.common.dto.CsvRowErrorDto;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of one OrelUser CSV import. Counters are updated by the import stages and can be read
+ * at any time.
+ */
+public class CsvImportJob {
+
+    private final String id;
+
+    private final int maxErrors;
+
+    private final AtomicLong rowsRead = new AtomicLong();
+
+    private final AtomicLong rowsCreated = new AtomicLong();
+
+    private final AtomicLong rowsRejected = new AtomicLong();
+
+    private final List<CsvRowErrorDto> errors = new ArrayList<>();
+
+    private volatile CsvImportStatusDto.State state = CsvImportStatusDto.State.QUEUED;
+
+    private volatile String message;
+
+    private volatile Instant startedAt;
+
+    private volatile Instant finishedAt;
+
+    public CsvImportJob(String id, int maxErrors) {
+        this.id = id;
+        this.maxErrors = maxErrors;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    void start() {
+        startedAt = Instant.now();
+        state = CsvImportStatusDto.State.RUNNING;
+    }
+
+    void complete() {
+        finishedAt = Instant.now();
+        state = CsvImportStatusDto.State.COMPLETED;
+    }
+
+    void fail(String failure) {
+        message = failure;
+        finishedAt = Instant.now();
+        state = CsvImportStatusDto.State.FAILED;
+    }
+
+    void rowRead() {
+        rowsRead.incrementAndGet();
+    }
+
+    void rowCreated() {
+        rowsCreated.incrementAndGet();
+    }
+
+    /**
+     * Count a rejected row, its error is kept while fewer than maxErrors errors are kept.
+     *
+     * @param row     Data row number, 1 is the row after the header.
+     * @param phoneNo Phone number of the row, if any.
+     * @param error   Why the row was rejected.
+     */
+    void rowRejected(long row, String phoneNo, String error) {
+        rowsRejected.incrementAndGet();
+        synchronized (errors) {
+            if (errors.size() < maxErrors) {
+                errors.add(new CsvRowErrorDto(row, phoneNo, error));
+            }
+        }
+    }
+
+    /**
+     * Check whether the import has ended, successfully or not.
+     *
+     * @return true when completed or failed.
+     */
+    public boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * Snapshot of the progress.
+     *
+     * @return CsvImportStatusDto.
+     */
+    public CsvImportStatusDto toDto() {
+        List<CsvRowErrorDto> errorsSnapshot;
+        synchronized (errors) {
+            errorsSnapshot = new ArrayList<>(errors);
+        }
+        return CsvImportStatusDto.builder()
+                .jobId(id)
+                .state(state)
+                .rowsRead(rowsRead.get())
+                .rowsCreated(rowsCreated.get())
+                .rowsRejected(rowsRejected.get())
+                .errors(errorsSnapshot)
+                .message(message)
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .build();
+    }
+}
@@ -0,0 +1,83 @@
+package com.orelit.springcore.business;
+
+import com.orelit.springcore.common.util.SystemUtils;
+import com.orelit.springcore.persistence.repository.OrelUserTemplate;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports all OrelUsers with their departments as CSV. Rows are read from a forward-only cursor
+ * and written straight to the output, so memory use does not grow with the table. The first
+ * columns are the ones {@link OrelUserCsvImportService} reads, so an export can be imported again.
+ */
+@Service
+public class OrelUserCsvExportService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final CSVFormat FORMAT = CSVFormat.DEFAULT.builder()
+            .setHeader("phoneNo", "language", "firstName", "middleName", "email",
+                    "dep_name", "dep_contact_no", "dep_email", "id", "createdAt", "updatedAt")
+            .build();
+
+    private final OrelUserTemplate orelUserTemplate;
+
+    public OrelUserCsvExportService(OrelUserTemplate orelUserTemplate) {
+        this.orelUserTemplate = orelUserTemplate;
+    }
+
+    /**
+     * Write every OrelUser as a CSV row. The output is not closed.
+     *
+     * @param outputStream - Where the CSV is written.
+     * @param gzip         - Compress the CSV with gzip.
+     * @throws IOException - If writing fails.
+     */
+    public void exportCsv(OutputStream outputStream, boolean gzip) throws IOException {
+
+        GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream(outputStream, BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip ? gzipStream : outputStream,
+                StandardCharsets.UTF_8), BUFFER_SIZE);
+        CSVPrinter printer = new CSVPrinter(writer, FORMAT);
+        try {
+            orelUserTemplate.forEachWithDepartment(resultSet -> printRow(printer, resultSet));
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        printer.flush();
+        if (gzipStream != null) {
+            gzipStream.finish();
+        }
+        outputStream.flush();
+    }
+
+    private static void printRow(CSVPrinter printer, ResultSet resultSet) throws SQLException {
+        try {
+            for (int column = 1; column <= 9; column++) {
+                printer.print(resultSet.getString(column));
+            }
+            printer.print(formatDate(resultSet.getObject(10, LocalDate.class)));
+            printer.print(formatDate(resultSet.getObject(11, LocalDate.class)));
+            printer.println();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static String formatDate(LocalDate date) {
+        return date == null ? null : SystemUtils.csvDateFormatter().format(date);
+    }
+}
@@ -0,0 +1,49 @@
+package com.orelit.springcore.business;
+
+import com.orelit.springcore.common.dto.CsvImportStatusDto;
+import com.orelit.springcore.common.properties.ApplicationConfigurationProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Imports a CSV file of OrelUsers on startup, for one-off loads from the command line:
+ * java -jar spring-core.jar --application.csv-import.file=users.csv --spring.main.web-application-type=none
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "application.csv-import", name = "file")
+public class OrelUserCsvImportRunner implements ApplicationRunner {
+
+    private final OrelUserCsvImportService orelUserCsvImportService;
+
+    private final Path file;
+
+    public OrelUserCsvImportRunner(OrelUserCsvImportService orelUserCsvImportService,
+                                   ApplicationConfigurationProperties properties) {
+        this.orelUserCsvImportService = orelUserCsvImportService;
+        this.file = Path.of(properties.getCsvImport().getFile());
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        log.info("Importing OrelUsers from {}", file);
+        CsvImportStatusDto status;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            status = orelUserCsvImportService.importCsv(reader);
+        }
+        status.getErrors().forEach(error ->
+                log.warn("Row {} ({}) not imported: {}", error.getRow(), error.getPhoneNo(), error.getMessage()));
+        if (status.getState() == CsvImportStatusDto.State.FAILED) {
+            throw new IllegalStateException("CSV import of " + file + " failed: " + status.getMessage());
+        }
+    }
+}
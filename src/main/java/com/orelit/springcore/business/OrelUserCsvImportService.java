@@ -0,0 +1,408 @@
+package com.orelit.springcore.business;
+
+import com.orelit.springcore.common.dto.CsvImportStatusDto;
+import com.orelit.springcore.common.dto.OrelUserBulkResultDto;
+import com.orelit.springcore.common.dto.OrelUserDto;
+import com.orelit.springcore.common.exception.NotFoundException;
+import com.orelit.springcore.common.exception.PropertyValidationException;
+import com.orelit.springcore.common.properties.ApplicationConfigurationProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Imports OrelUsers from CSV files with bounded memory. The file is parsed one record at a time,
+ * rows are validated in chunks by several threads and valid rows are written by one thread through
+ * {@link OrelUserService#createValidatedOrelUsers(List)}, one batched transaction per chunk. The
+ * stages are connected by small bounded queues, so a slow writer slows the parser down instead of
+ * rows piling up in memory.
+ * The header must name the OrelUserDto fields, in any order and case:
+ * phoneNo,language,firstName,middleName,email,dep_name,dep_contact_no,dep_email.
+ */
+@Slf4j
+@Service
+public class OrelUserCsvImportService implements DisposableBean {
+
+    static final List<String> COLUMNS = List.of("phoneNo", "language", "firstName", "middleName",
+            "email", "dep_name", "dep_contact_no", "dep_email");
+
+    private static final long POLL_MILLIS = 100;
+
+    private static final int LOG_EVERY_CHUNKS = 100;
+
+    private static final List<CsvRow> END = new ArrayList<>(0);
+
+    private static final CSVFormat FORMAT = CSVFormat.DEFAULT.builder()
+            .setHeader()
+            .setSkipHeaderRecord(true)
+            .setIgnoreHeaderCase(true)
+            .setIgnoreEmptyLines(true)
+            .setTrim(true)
+            .build();
+
+    private final OrelUserService orelUserService;
+
+    private final ApplicationConfigurationProperties.CsvImport settings;
+
+    private final Map<String, CsvImportJob> jobs = new ConcurrentHashMap<>();
+
+    private final ExecutorService jobExecutor = Executors.newSingleThreadExecutor(
+            daemonThreads("csv-import-job"));
+
+    public OrelUserCsvImportService(OrelUserService orelUserService,
+                                    ApplicationConfigurationProperties properties) {
+        this.orelUserService = orelUserService;
+        this.settings = properties.getCsvImport();
+    }
+
+    /**
+     * Store the CSV in a temporary file and import it in the background, one import at a time.
+     *
+     * @param csv - CSV content, read to the end before returning.
+     * @return - Status of the queued import, poll {@link #getStatus(String)} for progress.
+     */
+    public CsvImportStatusDto submit(InputStream csv) {
+
+        purgeFinishedJobs();
+        Path file;
+        try {
+            file = Files.createTempFile("orel-user-import-", ".csv");
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        try {
+            Files.copy(csv, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            deleteQuietly(file);
+            throw new UncheckedIOException(ex);
+        }
+        CsvImportJob job = newJob();
+        jobExecutor.execute(() -> {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                run(reader, job);
+            } catch (IOException ex) {
+                job.fail("Could not read the CSV file!");
+            } finally {
+                deleteQuietly(file);
+            }
+        });
+        return job.toDto();
+    }
+
+    /**
+     * Import a CSV in the calling thread.
+     *
+     * @param reader - CSV content.
+     * @return - Final status of the import.
+     */
+    public CsvImportStatusDto importCsv(Reader reader) {
+
+        CsvImportJob job = newJob();
+        run(reader, job);
+        return job.toDto();
+    }
+
+    /**
+     * Get the progress of an import.
+     *
+     * @param jobId - Id returned when the import was submitted.
+     * @return - Status of the import.
+     */
+    public CsvImportStatusDto getStatus(String jobId) {
+
+        CsvImportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new NotFoundException("CSV import not found!");
+        }
+        return job.toDto();
+    }
+
+    @Override
+    public void destroy() {
+        jobExecutor.shutdownNow();
+    }
+
+    private CsvImportJob newJob() {
+        CsvImportJob job = new CsvImportJob(UUID.randomUUID().toString(), settings.getMaxErrors());
+        jobs.put(job.getId(), job);
+        return job;
+    }
+
+    private void purgeFinishedJobs() {
+        Instant before = Instant.now().minus(settings.getJobRetention());
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(before));
+    }
+
+    /**
+     * Run the parse, validate and write stages until the CSV is imported or a stage fails.
+     *
+     * @param reader - CSV content.
+     * @param job    - Progress of the import.
+     */
+    void run(Reader reader, CsvImportJob job) {
+
+        job.start();
+        int validators = Math.max(1, settings.getValidatorThreads());
+        int queueCapacity = Math.max(1, settings.getQueueCapacity());
+        BlockingQueue<List<CsvRow>> parsed = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<List<CsvRow>> validated = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ExecutorService stages = Executors.newFixedThreadPool(validators + 1, daemonThreads("csv-import"));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < validators; i++) {
+                futures.add(stages.submit(() -> stage(failure, () -> validate(parsed, validated, failure))));
+            }
+            futures.add(stages.submit(() -> stage(failure, () -> write(validated, validators, job, failure))));
+            stage(failure, () -> parse(reader, parsed, validators, job, failure));
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, ex);
+        } catch (ExecutionException ex) {
+            failure.compareAndSet(null, ex.getCause());
+        } finally {
+            stages.shutdownNow();
+        }
+
+        Throwable failed = failure.get();
+        if (failed == null) {
+            job.complete();
+            log.info("CSV import {} completed: {}", job.getId(), summary(job));
+        } else {
+            job.fail(failed instanceof PropertyValidationException || failed instanceof IllegalArgumentException
+                    ? failed.getMessage() : "CSV import failed!");
+            log.warn("CSV import {} failed: {}", job.getId(), summary(job), failed);
+        }
+    }
+
+    /**
+     * Read CSV records into chunks. Ends by passing one end marker per validator.
+     */
+    private void parse(Reader reader, BlockingQueue<List<CsvRow>> parsed, int validators,
+                       CsvImportJob job, AtomicReference<Throwable> failure) throws Exception {
+
+        int chunkSize = Math.max(1, settings.getChunkSize());
+        try (CSVParser parser = FORMAT.parse(reader)) {
+            Map<String, Integer> header = parser.getHeaderMap();
+            List<String> missing = COLUMNS.stream()
+                    .filter(column -> !header.containsKey(column))
+                    .toList();
+            if (!missing.isEmpty()) {
+                throw new PropertyValidationException("CSV header", "Missing columns " + missing);
+            }
+            List<CsvRow> chunk = new ArrayList<>(chunkSize);
+            for (CSVRecord record : parser) {
+                job.rowRead();
+                chunk.add(toRow(record));
+                if (chunk.size() == chunkSize) {
+                    put(parsed, chunk, failure);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                put(parsed, chunk, failure);
+            }
+        }
+        for (int i = 0; i < validators; i++) {
+            put(parsed, END, failure);
+        }
+    }
+
+    private static CsvRow toRow(CSVRecord record) {
+        if (!record.isConsistent()) {
+            return new CsvRow(record.getRecordNumber(), null,
+                    "Expected " + COLUMNS.size() + " columns but found " + record.size() + ".");
+        }
+        OrelUserDto orelUserDto = OrelUserDto.builder()
+                .phoneNo(record.get("phoneNo"))
+                .language(record.get("language"))
+                .firstName(record.get("firstName"))
+                .middleName(record.get("middleName"))
+                .email(record.get("email"))
+                .dep_name(record.get("dep_name"))
+                .dep_contact_no(record.get("dep_contact_no"))
+                .dep_email(record.get("dep_email"))
+                .build();
+        return new CsvRow(record.getRecordNumber(), orelUserDto, null);
+    }
+
+    /**
+     * Validate rows of a chunk against the OrelUserDto constraints.
+     */
+    private void validate(BlockingQueue<List<CsvRow>> parsed, BlockingQueue<List<CsvRow>> validated,
+                          AtomicReference<Throwable> failure) throws Exception {
+
+        while (true) {
+            List<CsvRow> chunk = take(parsed, failure);
+            if (chunk == END) {
+                put(validated, END, failure);
+                return;
+            }
+            for (CsvRow row : chunk) {
+                if (row.error == null) {
+                    row.error = orelUserService.validateOrelUser(row.orelUserDto);
+                }
+            }
+            put(validated, chunk, failure);
+        }
+    }
+
+    /**
+     * Save the valid rows of each chunk in one batched transaction and report the others.
+     */
+    private void write(BlockingQueue<List<CsvRow>> validated, int validators, CsvImportJob job,
+                       AtomicReference<Throwable> failure) throws Exception {
+
+        int ended = 0;
+        int written = 0;
+        while (ended < validators) {
+            List<CsvRow> chunk = take(validated, failure);
+            if (chunk == END) {
+                ended++;
+                continue;
+            }
+            List<CsvRow> valid = new ArrayList<>(chunk.size());
+            for (CsvRow row : chunk) {
+                if (row.error == null) {
+                    valid.add(row);
+                } else {
+                    job.rowRejected(row.row, row.orelUserDto != null ? row.orelUserDto.getPhoneNo() : null, row.error);
+                }
+            }
+            if (!valid.isEmpty()) {
+                List<OrelUserBulkResultDto> results = orelUserService.createValidatedOrelUsers(
+                        valid.stream().map(row -> row.orelUserDto).toList());
+                for (int i = 0; i < results.size(); i++) {
+                    OrelUserBulkResultDto result = results.get(i);
+                    if (result.getStatus() == OrelUserBulkResultDto.Status.CREATED) {
+                        job.rowCreated();
+                    } else {
+                        job.rowRejected(valid.get(i).row, result.getPhoneNo(), result.getMessage());
+                    }
+                }
+            }
+            if (++written % LOG_EVERY_CHUNKS == 0) {
+                log.info("CSV import {}: {}", job.getId(), summary(job));
+            }
+        }
+    }
+
+    /**
+     * Run a stage, recording the first failure so the other stages stop waiting on their queues.
+     */
+    private static void stage(AtomicReference<Throwable> failure, Stage stage) {
+        try {
+            stage.run();
+        } catch (CancellationException ex) {
+            // another stage failed first
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, ex);
+        } catch (Exception | Error ex) {
+            failure.compareAndSet(null, ex);
+        }
+    }
+
+    private static <T> void put(BlockingQueue<T> queue, T item, AtomicReference<Throwable> failure)
+            throws InterruptedException {
+        while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (failure.get() != null) {
+                throw new CancellationException();
+            }
+        }
+    }
+
+    private static <T> T take(BlockingQueue<T> queue, AtomicReference<Throwable> failure)
+            throws InterruptedException {
+        while (true) {
+            T item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (item != null) {
+                return item;
+            }
+            if (failure.get() != null) {
+                throw new CancellationException();
+            }
+        }
+    }
+
+    private static String summary(CsvImportJob job) {
+        CsvImportStatusDto status = job.toDto();
+        return status.getRowsRead() + " rows read, " + status.getRowsCreated() + " created, "
+                + status.getRowsRejected() + " rejected";
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            log.warn("Could not delete {}", file, ex);
+        }
+    }
+
+    /**
+     * A stage body.
+     */
+    @FunctionalInterface
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    /**
+     * One data row on its way through the stages.
+     */
+    private static final class CsvRow {
+
+        private final long row;
+
+        private final OrelUserDto orelUserDto;
+
+        private String error;
+
+        CsvRow(long row, OrelUserDto orelUserDto, String error) {
+            this.row = row;
+            this.orelUserDto = orelUserDto;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.orelit.springcore.business;
+
+import com.orelit.springcore.common.constant.SystemConstants;
+import com.orelit.springcore.common.dto.OrelUserBulkResultDto;
+import com.orelit.springcore.common.dto.OrelUserDto;
+import com.orelit.springcore.common.dto.OrelUserLookupDto;
+import com.orelit.springcore.common.dto.OrelUserLookupResultDto;
+import com.orelit.springcore.common.exception.PropertyValidationException;
+import com.orelit.springcore.common.util.CursorPage;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Request rules shared by {@link OrelUserService} and its reactive counterpart: argument checks,
+ * bulk create screening and results, and lookup keys and results. Checks throw the same
+ * exceptions with the same messages on both stacks; the reactive service emits them instead.
+ */
+final class OrelUserRequests {
+
+    private OrelUserRequests() {
+    }
+
+    /**
+     * Check the number of items of a bulk create.
+     *
+     * @param orelUserDtos - OrelUsers to create.
+     */
+    static void checkBulkSize(List<OrelUserDto> orelUserDtos) {
+        if (orelUserDtos == null || orelUserDtos.isEmpty() || orelUserDtos.size() > SystemConstants.MAX_BULK_SIZE) {
+            throw new PropertyValidationException("OrelUsers",
+                    "Between 1 and " + SystemConstants.MAX_BULK_SIZE + " OrelUsers are required!");
+        }
+    }
+
+    /**
+     * Validate one OrelUser the same way a single create request body is validated.
+     *
+     * @param validator   - Bean validator.
+     * @param orelUserDto - The OrelUser to validate.
+     * @return - Validation messages joined, or null when valid.
+     */
+    static String validate(Validator validator, OrelUserDto orelUserDto) {
+        Set<ConstraintViolation<OrelUserDto>> violations = validator.validate(orelUserDto);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .sorted(Comparator.comparing(violation -> violation.getPropertyPath().toString()))
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Reject the invalid items of a bulk create.
+     *
+     * @param validator    - Bean validator.
+     * @param orelUserDtos - All items of the bulk create.
+     * @param results      - Results by position, filled in for every invalid item.
+     * @return - Positions of the valid items.
+     */
+    static List<Integer> rejectInvalid(Validator validator, List<OrelUserDto> orelUserDtos,
+                                       OrelUserBulkResultDto[] results) {
+        List<Integer> valid = new ArrayList<>(orelUserDtos.size());
+        for (int i = 0; i < orelUserDtos.size(); i++) {
+            OrelUserDto orelUserDto = orelUserDtos.get(i);
+            String invalid = orelUserDto == null ? "OrelUser is required." : validate(validator, orelUserDto);
+            if (invalid != null) {
+                results[i] = bulkResult(i, orelUserDto, OrelUserBulkResultDto.Status.INVALID, invalid);
+            } else {
+                valid.add(i);
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Reject the items whose phone number is repeated earlier in the request.
+     *
+     * @param orelUserDtos - All items of the bulk create.
+     * @param valid        - Positions of the valid items.
+     * @param results      - Results by position, filled in for every repeated item.
+     * @return - Positions of the first item of each phone number.
+     */
+    static List<Integer> rejectRepeated(List<OrelUserDto> orelUserDtos, List<Integer> valid,
+                                        OrelUserBulkResultDto[] results) {
+        List<Integer> accepted = new ArrayList<>(valid.size());
+        Set<String> seen = new HashSet<>();
+        for (Integer i : valid) {
+            OrelUserDto orelUserDto = orelUserDtos.get(i);
+            if (!seen.add(orelUserDto.getPhoneNo())) {
+                results[i] = bulkResult(i, orelUserDto, OrelUserBulkResultDto.Status.DUPLICATE,
+                        "Phone no is repeated in the request!");
+            } else {
+                accepted.add(i);
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Reject the items whose phone number is already stored.
+     *
+     * @param orelUserDtos - All items of the bulk create.
+     * @param accepted     - Positions of the items left to save.
+     * @param existing     - Phone numbers found in the database.
+     * @param results      - Results by position, filled in for every stored number.
+     * @return - Positions of the items to save.
+     */
+    static List<Integer> rejectExisting(List<OrelUserDto> orelUserDtos, List<Integer> accepted,
+                                        Set<String> existing, OrelUserBulkResultDto[] results) {
+        List<Integer> toSave = new ArrayList<>(accepted.size());
+        for (Integer i : accepted) {
+            if (existing.contains(orelUserDtos.get(i).getPhoneNo())) {
+                results[i] = bulkResult(i, orelUserDtos.get(i), OrelUserBulkResultDto.Status.DUPLICATE,
+                        "Phone no already exists!");
+            } else {
+                toSave.add(i);
+            }
+        }
+        return toSave;
+    }
+
+    static List<String> phoneNosOf(List<OrelUserDto> orelUserDtos, List<Integer> positions) {
+        return positions.stream().map(i -> orelUserDtos.get(i).getPhoneNo()).toList();
+    }
+
+    /**
+     * Split the items to save into chunks of {@link SystemConstants#BULK_CHUNK_SIZE}.
+     *
+     * @param toSave - Positions of the items to save.
+     * @return - Positions by chunk, in order.
+     */
+    static List<List<Integer>> chunks(List<Integer> toSave) {
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (int from = 0; from < toSave.size(); from += SystemConstants.BULK_CHUNK_SIZE) {
+            chunks.add(toSave.subList(from, Math.min(from + SystemConstants.BULK_CHUNK_SIZE, toSave.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * Fill in the results of one saved or failed chunk.
+     *
+     * @param orelUserDtos - All items of the bulk create.
+     * @param chunk        - Positions of the items of the chunk.
+     * @param saved        - Whether the chunk was saved.
+     * @param results      - Results by position.
+     */
+    static void chunkResults(List<OrelUserDto> orelUserDtos, List<Integer> chunk, boolean saved,
+                             OrelUserBulkResultDto[] results) {
+        OrelUserBulkResultDto.Status status = saved
+                ? OrelUserBulkResultDto.Status.CREATED : OrelUserBulkResultDto.Status.FAILED;
+        String message = saved ? null : "Could not save the chunk of this OrelUser!";
+        for (Integer i : chunk) {
+            results[i] = bulkResult(i, orelUserDtos.get(i), status, message);
+        }
+    }
+
+    static OrelUserBulkResultDto bulkResult(int index, OrelUserDto orelUserDto,
+                                            OrelUserBulkResultDto.Status status, String message) {
+        return OrelUserBulkResultDto.builder()
+                .index(index)
+                .phoneNo(orelUserDto != null ? orelUserDto.getPhoneNo() : null)
+                .status(status)
+                .message(message)
+                .build();
+    }
+
+    /**
+     * The distinct phone numbers of a lookup, in request order.
+     *
+     * @param lookup - Phone numbers and ids.
+     * @return - Phone numbers without nulls and repeats.
+     */
+    static Set<String> lookupPhoneNos(OrelUserLookupDto lookup) {
+        Set<String> phoneNos = new LinkedHashSet<>();
+        if (lookup.getPhoneNos() != null) {
+            lookup.getPhoneNos().stream().filter(Objects::nonNull).forEach(phoneNos::add);
+        }
+        return phoneNos;
+    }
+
+    /**
+     * The distinct ids of a lookup, in request order.
+     *
+     * @param lookup - Phone numbers and ids.
+     * @return - Ids without nulls and repeats.
+     */
+    static Set<Long> lookupIds(OrelUserLookupDto lookup) {
+        Set<Long> ids = new LinkedHashSet<>();
+        if (lookup.getIds() != null) {
+            lookup.getIds().stream().filter(Objects::nonNull).forEach(ids::add);
+        }
+        return ids;
+    }
+
+    static void checkLookupSize(Collection<String> phoneNos, Collection<Long> ids) {
+        int keys = phoneNos.size() + ids.size();
+        if (keys == 0 || keys > SystemConstants.MAX_LOOKUP_SIZE) {
+            throw new PropertyValidationException("OrelUser lookup",
+                    "Between 1 and " + SystemConstants.MAX_LOOKUP_SIZE + " phone numbers and ids are required!");
+        }
+    }
+
+    /**
+     * Build a lookup result, listing the keys that were not found.
+     *
+     * @param phoneNos  - Requested phone numbers.
+     * @param ids       - Requested ids.
+     * @param byPhoneNo - Found OrelUsers by phone number.
+     * @param byId      - Found OrelUsers by id.
+     * @return - The lookup result.
+     */
+    static OrelUserLookupResultDto lookupResult(Set<String> phoneNos, Set<Long> ids,
+                                                Map<String, OrelUserDto> byPhoneNo, Map<Long, OrelUserDto> byId) {
+        return OrelUserLookupResultDto.builder()
+                .byPhoneNo(byPhoneNo)
+                .byId(byId)
+                .missingPhoneNos(phoneNos.stream().filter(phoneNo -> !byPhoneNo.containsKey(phoneNo)).toList())
+                .missingIds(ids.stream().filter(id -> !byId.containsKey(id)).toList())
+                .build();
+    }
+
+    static void checkPage(int page, int size) {
+        if (page < 0) {
+            throw new PropertyValidationException("page", "Page should not be negative!");
+        }
+        if (size < 1 || size > SystemConstants.MAX_PAGE_SIZE) {
+            throw new PropertyValidationException("size",
+                    "Size should be between 1 and " + SystemConstants.MAX_PAGE_SIZE + "!");
+        }
+    }
+
+    static void checkLimit(int limit) {
+        if (limit < 1 || limit > SystemConstants.MAX_PAGE_SIZE) {
+            throw new PropertyValidationException("limit",
+                    "Limit should be between 1 and " + SystemConstants.MAX_PAGE_SIZE + "!");
+        }
+    }
+
+    static void checkWindow(Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            throw new PropertyValidationException("from", "From must be before to!");
+        }
+    }
+
+    /**
+     * The id a continuation token continues after.
+     *
+     * @param after - Continuation token, null for the first page.
+     * @return - The id, -1 for the first page.
+     */
+    static long afterId(String after) {
+        return after == null ? -1L : CursorPage.decodeToken("after", after);
+    }
+}
@@ -2,23 +2,49 @@ package com.orelit.springcore.business;
 
 
 import com.orelit.springcore.common.constant.SystemConstants;
+import com.orelit.springcore.common.dto.OrelUserBulkResultDto;
 import com.orelit.springcore.common.dto.OrelUserDto;
+import com.orelit.springcore.common.dto.OrelUserLookupDto;
+import com.orelit.springcore.common.dto.OrelUserLookupResultDto;
 import com.orelit.springcore.common.exception.NotFoundException;
 import com.orelit.springcore.common.exception.PropertyValidationException;
 import com.orelit.springcore.common.exception.ValidationErrorUtil;
+import com.orelit.springcore.common.util.CursorPage;
+import com.orelit.springcore.common.util.RestResponsePage;
+import com.orelit.springcore.common.util.SingleFlight;
+import com.orelit.springcore.persistence.cache.PhoneNoBloomFilter;
+import com.orelit.springcore.persistence.cache.PhoneNoNegativeCache;
 import com.orelit.springcore.persistence.converter.DepartmentMapper;
 import com.orelit.springcore.persistence.converter.OrelUserMapper;
 import com.orelit.springcore.persistence.entity.Department;
 import com.orelit.springcore.persistence.entity.OrelUser;
 import com.orelit.springcore.persistence.repository.OrelUserDepartmentTemplate;
 import com.orelit.springcore.persistence.repository.OrelUserTemplate;
+import com.orelit.springcore.persistence.writebehind.WriteBehindQueue;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
- * Manage OrelUser-related operations.
+ * Manage OrelUser-related operations. Reads run in read-only transactions, served by a read
+ * replica when application.replicas is enabled. With application.write-behind enabled, updates
+ * are queued and written in batches, and reads see queued updates over what the database holds.
  */
 @Service
 public class OrelUserService {
@@ -31,15 +57,31 @@ public class OrelUserService {
 
     private final DepartmentMapper departmentMapper;
 
-    public OrelUserService(OrelUserTemplate OrelUserTemplate, OrelUserDepartmentTemplate orelUserDepartmentTemplate, OrelUserMapper orelUserMapper, DepartmentMapper departmentMapper) {
+    private final PhoneNoBloomFilter phoneNoBloomFilter;
+
+    private final PhoneNoNegativeCache phoneNoNegativeCache;
+
+    private final Validator validator;
+
+    private final WriteBehindQueue writeBehindQueue;
+
+    private final SingleFlight<String, OrelUserDto> phoneNoLookups = new SingleFlight<>();
+
+    public OrelUserService(OrelUserTemplate OrelUserTemplate, OrelUserDepartmentTemplate orelUserDepartmentTemplate, OrelUserMapper orelUserMapper, DepartmentMapper departmentMapper, PhoneNoBloomFilter phoneNoBloomFilter, PhoneNoNegativeCache phoneNoNegativeCache, Validator validator, ObjectProvider<WriteBehindQueue> writeBehindQueue) {
         this.OrelUserTemplate = OrelUserTemplate;
         this.orelUserDepartmentTemplate = orelUserDepartmentTemplate;
         this.orelUserMapper = orelUserMapper;
         this.departmentMapper = departmentMapper;
+        this.phoneNoBloomFilter = phoneNoBloomFilter;
+        this.phoneNoNegativeCache = phoneNoNegativeCache;
+        this.validator = validator;
+        this.writeBehindQueue = writeBehindQueue.getIfAvailable();
     }
 
     /**
-     * Save OrelUser.
+     * Save OrelUser. A number the phone number filter has not seen may still be stored through
+     * another instance; the unique constraint then rejects the insert, and the request fails as a
+     * duplicate when the number is found stored.
      *
      * @param orelUserDto - Contains OrelUser data.
      * @return - The created OrelUser DTO.
@@ -51,31 +93,159 @@ public class OrelUserService {
         OrelUser orelUser = orelUserMapper.convertToEntity(orelUserDto);
         //OrelUser savedUser = OrelUserTemplate.save(orelUser);
         Department department = departmentMapper.convertDepartmentDetailDtoToEntity(orelUserDto);
-        orelUserDepartmentTemplate.saveOrelUserDepartmentDetails(department);
+        try {
+            orelUserDepartmentTemplate.saveOrelUserDepartmentDetails(department);
+        } catch (DataIntegrityViolationException ex) {
+            if (OrelUserTemplate.findDtoByPhoneNo(orelUserDto.getPhoneNo()) != null) {
+                throw new RuntimeException("Phone no already exists!");
+            }
+            throw ex;
+        }
         return orelUserDto;
 
     }
 
     /**
-     * Validate if a phone number already exists.
+     * Save many OrelUsers. Invalid items and phone numbers repeated in the request are rejected,
+     * numbers already stored are found with one IN query for the whole request, and the rest is
+     * saved in chunks of {@link SystemConstants#BULK_CHUNK_SIZE}, one transaction per chunk. A
+     * failed chunk does not roll back chunks saved before it. A chunk rejected by the unique
+     * constraint, for numbers stored through another instance since the check, reports those
+     * numbers as duplicates and saves the rest again.
+     *
+     * @param orelUserDtos - OrelUsers to create, at most {@link SystemConstants#MAX_BULK_SIZE}.
+     * @return - One result per item, in request order.
+     */
+    public List<OrelUserBulkResultDto> createOrelUsers(List<OrelUserDto> orelUserDtos) {
+
+        OrelUserRequests.checkBulkSize(orelUserDtos);
+        OrelUserBulkResultDto[] results = new OrelUserBulkResultDto[orelUserDtos.size()];
+        List<Integer> valid = OrelUserRequests.rejectInvalid(validator, orelUserDtos, results);
+        saveValidOrelUsers(orelUserDtos, valid, results);
+        return List.of(results);
+    }
+
+    /**
+     * Save many OrelUsers that were already validated, see {@link #validateOrelUser(OrelUserDto)}.
+     * Duplicates and chunks are handled the same way as {@link #createOrelUsers(List)}.
+     *
+     * @param orelUserDtos - Valid OrelUsers to create.
+     * @return - One result per item, in the given order.
+     */
+    public List<OrelUserBulkResultDto> createValidatedOrelUsers(List<OrelUserDto> orelUserDtos) {
+
+        OrelUserBulkResultDto[] results = new OrelUserBulkResultDto[orelUserDtos.size()];
+        List<Integer> valid = new ArrayList<>(orelUserDtos.size());
+        for (int i = 0; i < orelUserDtos.size(); i++) {
+            valid.add(i);
+        }
+        saveValidOrelUsers(orelUserDtos, valid, results);
+        return List.of(results);
+    }
+
+    /**
+     * Save the valid items of a bulk create and fill in their results.
+     *
+     * @param orelUserDtos - All items of the bulk create.
+     * @param valid        - Positions of the valid items.
+     * @param results      - Results by position, filled in for every valid item.
+     */
+    private void saveValidOrelUsers(List<OrelUserDto> orelUserDtos, List<Integer> valid,
+                                    OrelUserBulkResultDto[] results) {
+
+        List<Integer> accepted = OrelUserRequests.rejectRepeated(orelUserDtos, valid, results);
+        Set<String> existing = OrelUserTemplate.findExistingPhoneNos(OrelUserRequests.phoneNosOf(orelUserDtos, accepted)
+                .stream()
+                .filter(phoneNoBloomFilter::mightContain)
+                .toList());
+        List<Integer> toSave = OrelUserRequests.rejectExisting(orelUserDtos, accepted, existing, results);
+
+        for (List<Integer> chunk : OrelUserRequests.chunks(toSave)) {
+            saveChunk(orelUserDtos, chunk, results);
+        }
+    }
+
+    /**
+     * Save one chunk of a bulk create in one transaction and fill in its results. When the unique
+     * constraint rejects the chunk, its numbers that are now stored are reported as duplicates and
+     * the rest of the chunk is saved again with new entities.
+     *
+     * @param orelUserDtos - All items of the bulk create.
+     * @param chunk        - Positions of the items of the chunk.
+     * @param results      - Results by position, filled in for every item of the chunk.
+     */
+    private void saveChunk(List<OrelUserDto> orelUserDtos, List<Integer> chunk, OrelUserBulkResultDto[] results) {
+
+        List<Department> departments = new ArrayList<>(chunk.size());
+        for (Integer i : chunk) {
+            departments.add(departmentMapper.convertDepartmentDetailDtoToEntity(orelUserDtos.get(i)));
+        }
+        try {
+            orelUserDepartmentTemplate.saveAllOrelUserDepartmentDetails(departments);
+            OrelUserRequests.chunkResults(orelUserDtos, chunk, true, results);
+        } catch (DataIntegrityViolationException ex) {
+            Set<String> stored = OrelUserTemplate.findExistingPhoneNos(OrelUserRequests.phoneNosOf(orelUserDtos, chunk));
+            if (stored.isEmpty()) {
+                OrelUserRequests.chunkResults(orelUserDtos, chunk, false, results);
+                return;
+            }
+            List<Integer> rest = OrelUserRequests.rejectExisting(orelUserDtos, chunk, stored, results);
+            if (!rest.isEmpty()) {
+                saveChunk(orelUserDtos, rest, results);
+            }
+        } catch (DataAccessException ex) {
+            OrelUserRequests.chunkResults(orelUserDtos, chunk, false, results);
+        }
+    }
+
+    /**
+     * Validate one bulk item the same way a single create request body is validated.
+     *
+     * @param orelUserDto - The OrelUser to validate.
+     * @return - Validation messages joined, or null when valid.
+     */
+    public String validateOrelUser(OrelUserDto orelUserDto) {
+        return OrelUserRequests.validate(validator, orelUserDto);
+    }
+
+    /**
+     * Validate if a phone number already exists. Numbers the phone number filter has never seen
+     * are new without asking the database.
      *
      * @param phoneNo - The phone number to be validated.
      */
     private void existsPhoneNoValidation(String phoneNo) {
-        if (OrelUserTemplate.findByPhoneNo(phoneNo) != null) {
+        if (!phoneNoBloomFilter.mightContain(phoneNo)) {
+            return;
+        }
+        if (OrelUserTemplate.findDtoByPhoneNo(phoneNo) != null) {
             throw new RuntimeException("Phone no already exists!");
         }
+        phoneNoBloomFilter.recordFalsePositive();
     }
 
     /**
-     * update OrelUser
+     * update OrelUser. The user is loaded fresh rather than from a cache, since the mappers change
+     * the loaded entity in place. With write-behind enabled the update is validated, acknowledged
+     * once it is queued on disk, and written to the database with the next batch.
      *
      * @param orelUserDto - Contains OrelUser data.
      * @return - The updated OrelUser DTO.
      */
     public OrelUserDto updateOrelUser(OrelUserDto orelUserDto) {
-        existsOrelUserValidation(orelUserDto.getPhoneNo());
+        if (writeBehindQueue != null) {
+            String invalid = validateOrelUser(orelUserDto);
+            if (invalid != null) {
+                throw new PropertyValidationException("OrelUser", invalid);
+            }
+            existsOrelUserValidation(orelUserDto.getPhoneNo());
+            writeBehindQueue.enqueue(orelUserDto);
+            return orelUserDto;
+        }
         OrelUser savedOrelUser = OrelUserTemplate.findByPhoneNo(orelUserDto.getPhoneNo());
+        if (savedOrelUser == null) {
+            throw new NotFoundException("OrelUser not found!");
+        }
         OrelUser updatedOrelUser = orelUserMapper.convertToUpdateEntity(orelUserDto, savedOrelUser);
         Department updateDepartmentDetails = departmentMapper.convertUpdateDepartmentDetailDtoToEntity(orelUserDto, savedOrelUser.getDepartment(), savedOrelUser);
         updatedOrelUser.setDepartment(updateDepartmentDetails);
@@ -88,34 +258,49 @@ public class OrelUserService {
      * @param phoneNo - The phone number to validate the OrelUser.
      */
     private void existsOrelUserValidation(String phoneNo) {
-        if (OrelUserTemplate.findByPhoneNo(phoneNo) == null) {
+        if (OrelUserTemplate.findDtoByPhoneNo(phoneNo) == null) {
             throw new NotFoundException("OrelUser not found!");
         }
     }
 
     /**
-     * Retrieve a OrelUserDto by phone number.
+     * Retrieve a OrelUserDto by phone number. Numbers recently found missing are rejected without
+     * a query, and concurrent lookups of the same number share one query. The phone number filter
+     * is not consulted: it only sees inserts made through this instance, so a user created through
+     * another instance would be reported missing.
      *
      * @param phoneNo - The phone number to identify the OrelUser.
      * @return OrelUserDto - The DTO representing the retrieved OrelUser.
      */
+    @Transactional(readOnly = true)
     public OrelUserDto getOrelUserByPhoneNo(String phoneNo) {
 
-        OrelUser orelUser = OrelUserTemplate.findByPhoneNo(phoneNo);
-        if (orelUser == null) {
-            existsOrelUserValidation(phoneNo);
-            return null;
+        OrelUserDto queued = writeBehindQueue != null ? writeBehindQueue.find(phoneNo) : null;
+        if (queued != null) {
+            return queued;
+        }
+        if (phoneNoNegativeCache.isMissing(phoneNo)) {
+            throw new NotFoundException("OrelUser not found!");
         }
-        return orelUserMapper.convertToDto(orelUser);
+        OrelUserDto orelUserDto = phoneNoLookups.execute(phoneNo, () -> OrelUserTemplate.findDtoByPhoneNo(phoneNo));
+        if (orelUserDto == null) {
+            phoneNoNegativeCache.markMissing(phoneNo);
+            throw new NotFoundException("OrelUser not found!");
+        }
+        return orelUserDto;
     }
 
     /**
-     * Delete a OrelUser record by phone number.
+     * Delete a OrelUser record by phone number. Queued updates are written first, so none is
+     * left to be written to a later user with the same number.
      *
      * @param phoneNo - The phone number to identify the OrelUser to delete.
      */
     public void deleteOrelUser(String phoneNo) {
 
+        if (writeBehindQueue != null) {
+            writeBehindQueue.flush();
+        }
         OrelUser user = OrelUserTemplate.findByPhoneNo(phoneNo);
         Department department = orelUserDepartmentTemplate.findByUserId(user.getId());
         if (department != null) {
@@ -125,16 +310,69 @@ public class OrelUserService {
 
     }
 
+    /**
+     * Resolve many OrelUsers by phone number and id in one call, with batched IN queries that
+     * fetch departments in the same statement. Phone numbers recently found missing are reported
+     * missing without a query; the phone number filter is not consulted, since it only sees
+     * inserts made through this instance. Keys that are not found are listed, not thrown.
+     * Both queries run on the calling thread, in its transaction, so a lookup holds one connection.
+     *
+     * @param lookup - Phone numbers and ids, at most {@link SystemConstants#MAX_LOOKUP_SIZE} in total.
+     * @return - Found OrelUsers by key and the missing keys.
+     */
+    @Transactional(readOnly = true)
+    public OrelUserLookupResultDto lookupOrelUsers(OrelUserLookupDto lookup) {
+
+        Set<String> phoneNos = OrelUserRequests.lookupPhoneNos(lookup);
+        Set<Long> ids = OrelUserRequests.lookupIds(lookup);
+        OrelUserRequests.checkLookupSize(phoneNos, ids);
+
+        List<String> candidates = phoneNos.stream()
+                .filter(phoneNo -> !phoneNoNegativeCache.isMissing(phoneNo))
+                .toList();
+        List<OrelUser> foundByPhoneNo = candidates.isEmpty() ? List.of() : OrelUserTemplate.findByPhoneNos(candidates);
+        List<OrelUser> foundById = ids.isEmpty() ? List.of() : OrelUserTemplate.findByIds(ids);
+
+        Map<String, OrelUserDto> byPhoneNo = new LinkedHashMap<>();
+        for (OrelUser orelUser : foundByPhoneNo) {
+            byPhoneNo.put(orelUser.getPhoneNo(), overlay(orelUserMapper.convertToDto(orelUser)));
+        }
+        Map<Long, OrelUserDto> byId = new LinkedHashMap<>();
+        for (OrelUser orelUser : foundById) {
+            byId.put(orelUser.getId(), overlay(orelUserMapper.convertToDto(orelUser)));
+        }
+        return OrelUserRequests.lookupResult(phoneNos, ids, byPhoneNo, byId);
+    }
+
     /**
      * Retrieve a OrelUserDto by its unique ID.
      *
      * @param id - The ID of the OrelUser to retrieve.
      * @return OrelUserDto - The DTO representing the retrieved OrelUser.
      */
+    @Transactional(readOnly = true)
     public OrelUserDto getOrelUserById(Long id) {
         validateId(id);
-        OrelUser orelUser = OrelUserTemplate.findById(id);
-        return orelUserMapper.convertToDto(orelUser);
+        OrelUserDto orelUserDto = OrelUserTemplate.findDtoById(id);
+        if (orelUserDto == null) {
+            throw new NotFoundException("OrelUser not found!");
+        }
+        return overlay(orelUserDto);
+    }
+
+    /**
+     * Replace a user read from the database with its queued update, if write-behind is enabled
+     * and there is one.
+     *
+     * @param orelUserDto - The user as read.
+     * @return - The queued update, or the user as read.
+     */
+    private OrelUserDto overlay(OrelUserDto orelUserDto) {
+        return writeBehindQueue != null ? writeBehindQueue.overlay(orelUserDto) : orelUserDto;
+    }
+
+    private List<OrelUserDto> overlay(List<OrelUserDto> orelUserDtos) {
+        return writeBehindQueue != null ? orelUserDtos.stream().map(writeBehindQueue::overlay).toList() : orelUserDtos;
     }
 
     /**
@@ -150,12 +388,72 @@ public class OrelUserService {
     }
 
     /**
-     * Retrieve all users.
+     * Retrieve one page of users, ordered by id.
      *
-     * @return - List of OrelUserDto objects.
+     * @param page - Zero based page number.
+     * @param size - Page size, at most {@link SystemConstants#MAX_PAGE_SIZE}.
+     * @return - Page of OrelUserDto objects.
      */
-    public List<OrelUserDto> getOrelUserList() {
-        List<OrelUser> orelUserList = OrelUserTemplate.findAll();
-        return orelUserMapper.convertToOrelUserDtoList(orelUserList);
+    @Transactional(readOnly = true)
+    public RestResponsePage<OrelUserDto> getOrelUserList(int page, int size) {
+        OrelUserRequests.checkPage(page, size);
+        Pageable pageable = PageRequest.of(page, size, Sort.by("id"));
+        Page<OrelUserDto> orelUserPage = OrelUserTemplate.findAllDtos(pageable);
+        return new RestResponsePage<>(overlay(orelUserPage.getContent()), pageable, orelUserPage.getTotalElements());
+    }
+
+    /**
+     * Retrieve the users following a continuation token, ordered by id. The Snowflake ids are
+     * time ordered, so this walks users in creation order at the same cost for any depth.
+     *
+     * @param after - Continuation token of the previous page, null for the first page.
+     * @param limit - Page size, at most {@link SystemConstants#MAX_PAGE_SIZE}.
+     * @return - Page of OrelUserDto objects with the token of the next page.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<OrelUserDto> getOrelUserListAfter(String after, int limit) {
+        OrelUserRequests.checkLimit(limit);
+        long afterId = OrelUserRequests.afterId(after);
+        List<OrelUser> orelUserList = OrelUserTemplate.findAfter(afterId, limit + 1);
+        String next = null;
+        if (orelUserList.size() > limit) {
+            orelUserList = orelUserList.subList(0, limit);
+            next = CursorPage.encodeToken(orelUserList.get(limit - 1).getId());
+        }
+        return new CursorPage<>(overlay(orelUserMapper.convertToOrelUserDtoList(orelUserList)), next);
+    }
+
+    /**
+     * Pass every user to the consumer as soon as it is read and mapped, without loading the
+     * whole table.
+     *
+     * @param consumer - Called once per user, in id order.
+     */
+    @Transactional(readOnly = true)
+    public void streamOrelUserList(Consumer<OrelUserDto> consumer) {
+        OrelUserTemplate.streamAll(orelUser -> consumer.accept(overlay(orelUserMapper.convertToDto(orelUser))));
+    }
+
+    /**
+     * Retrieve one page of the users created in a time window, following a continuation token.
+     *
+     * @param from  - Start of the window, inclusive.
+     * @param to    - End of the window, exclusive.
+     * @param after - Continuation token of the previous page, null for the first page.
+     * @param limit - Page size, at most {@link SystemConstants#MAX_PAGE_SIZE}.
+     * @return - Page of OrelUserDto objects ordered by creation, with the token of the next page.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<OrelUserDto> getOrelUserListCreatedBetween(Instant from, Instant to, String after, int limit) {
+        OrelUserRequests.checkWindow(from, to);
+        OrelUserRequests.checkLimit(limit);
+        long afterId = OrelUserRequests.afterId(after);
+        List<OrelUser> orelUserList = OrelUserTemplate.findCreatedBetween(from, to, afterId, limit + 1);
+        String next = null;
+        if (orelUserList.size() > limit) {
+            orelUserList = orelUserList.subList(0, limit);
+            next = CursorPage.encodeToken(orelUserList.get(limit - 1).getId());
+        }
+        return new CursorPage<>(overlay(orelUserMapper.convertToOrelUserDtoList(orelUserList)), next);
     }
 }
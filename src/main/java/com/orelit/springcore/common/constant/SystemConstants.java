@@ -16,4 +16,18 @@ public class SystemConstants {
     public static final String NAME_REGEX = "^[^-0-9_!¡?÷?¿/\\\\+=@#$%ˆ&*(){}|~<>;:[\\\\]]{2,}$";
 
     public static final String NUMBER_REGEX = "^[-+]?[0-9]*\\.?[0-9]+$";
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    public static final int MAX_BULK_SIZE = 10000;
+
+    public static final int BULK_CHUNK_SIZE = 500;
+
+    public static final int MAX_LOOKUP_SIZE = 1000;
+
+    public static final int LOOKUP_IN_BATCH_SIZE = 500;
+
+    public static final String REACTIVE_PROFILE = "reactive";
 }
@@ -0,0 +1,51 @@
+package com.orelit.springcore.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Progress of an OrelUser CSV import.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CsvImportStatusDto {
+
+    /**
+     * State of an import.
+     */
+    public enum State {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private String jobId;
+
+    private State state;
+
+    private long rowsRead;
+
+    private long rowsCreated;
+
+    private long rowsRejected;
+
+    /**
+     * Rejected rows, only the first application.csv-import.max-errors are kept.
+     */
+    private List<CsvRowErrorDto> errors;
+
+    private String message;
+
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+}
@@ -0,0 +1,23 @@
+package com.orelit.springcore.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A CSV row that was not imported.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CsvRowErrorDto {
+
+    private long row;
+
+    private String phoneNo;
+
+    private String message;
+
+}
@@ -0,0 +1,35 @@
+package com.orelit.springcore.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Result of one item of a bulk OrelUser create, in the same position as the item in the request.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrelUserBulkResultDto {
+
+    /**
+     * Outcome of a bulk item.
+     */
+    public enum Status {
+        CREATED,
+        INVALID,
+        DUPLICATE,
+        FAILED
+    }
+
+    private int index;
+
+    private String phoneNo;
+
+    private Status status;
+
+    private String message;
+
+}
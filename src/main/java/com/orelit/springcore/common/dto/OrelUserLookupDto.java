@@ -0,0 +1,23 @@
+package com.orelit.springcore.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Phone numbers and ids of OrelUsers to look up in one call.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrelUserLookupDto {
+
+    private List<String> phoneNos;
+
+    private List<Long> ids;
+
+}
@@ -0,0 +1,29 @@
+package com.orelit.springcore.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * OrelUsers found by a lookup, keyed by the phone number or id they were asked for, and the keys
+ * that were not found.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrelUserLookupResultDto {
+
+    private Map<String, OrelUserDto> byPhoneNo;
+
+    private Map<Long, OrelUserDto> byId;
+
+    private List<String> missingPhoneNos;
+
+    private List<Long> missingIds;
+
+}
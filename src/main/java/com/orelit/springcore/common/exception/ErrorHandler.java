@@ -127,7 +127,7 @@ public class ErrorHandler {
     @ExceptionHandler({NotFoundException.class})
     public ResponseEntity<ErrorMessageDto> handleNotFoundException(
             NotFoundException ex) {
-        log.warn("Request not found [404] - %s".formatted(ex.getLocalizedMessage()), ex);
+        log.warn("Request not found [404] - %s".formatted(ex.getLocalizedMessage()));
         return ErrorMessageUtil.createResponse(ex.getLocalizedMessage(), HttpStatus.NOT_FOUND, ex);
     }
 
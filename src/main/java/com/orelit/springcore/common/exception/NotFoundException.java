@@ -2,11 +2,12 @@ package com.orelit.springcore.common.exception;
 
 /**
  * An exception that indicates a requested resource was not found.
+ * It is an expected outcome answered with 404, so no stack trace is captured.
  */
 public class NotFoundException extends RuntimeException {
-    public NotFoundException(final String message) {super(message);}
+    public NotFoundException(final String message) {super(message, null, false, false);}
 
-    public NotFoundException(final String message, final Throwable cause){super(message,cause);}
+    public NotFoundException(final String message, final Throwable cause){super(message, cause, false, false);}
 
     /**
      * Creates {@link NotFoundException}
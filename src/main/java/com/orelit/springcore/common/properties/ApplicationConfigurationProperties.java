@@ -1,9 +1,15 @@
 package com.orelit.springcore.common.properties;
 
+import com.orelit.springcore.persistence.snowflake.SnowflakeOptions;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Application specific configuration properties.
  */
@@ -15,4 +21,220 @@ public class ApplicationConfigurationProperties {
     private String display;
 
     private String timeZone;
+
+    private IdGenerator idGenerator = new IdGenerator();
+
+    private PhoneNoFilter phoneNoFilter = new PhoneNoFilter();
+
+    private PhoneNoLookup phoneNoLookup = new PhoneNoLookup();
+
+    private CsvImport csvImport = new CsvImport();
+
+    private Replicas replicas = new Replicas();
+
+    private Sharding sharding = new Sharding();
+
+    private WriteBehind writeBehind = new WriteBehind();
+
+    /**
+     * Snowflake id generator settings. The defaults keep the classic Snowflake behaviour, spin on
+     * an exhausted millisecond and fail on any backward clock step; application.yml opts into
+     * parking and a small clock tolerance.
+     */
+    @Getter
+    @Setter
+    public static class IdGenerator {
+
+        private SnowflakeOptions.WaitStrategy waitStrategy = SnowflakeOptions.WaitStrategy.SPIN;
+
+        private long maxClockBackwardMillis;
+
+        private int stripes = 1;
+
+        private Lease lease = new Lease();
+    }
+
+    /**
+     * Snowflake node id lease settings.
+     */
+    @Getter
+    @Setter
+    public static class Lease {
+
+        private boolean enabled;
+
+        private Duration ttl = Duration.ofSeconds(30);
+
+        private Duration heartbeatInterval = Duration.ofSeconds(10);
+    }
+
+    /**
+     * Phone number Bloom filter settings.
+     */
+    @Getter
+    @Setter
+    public static class PhoneNoFilter {
+
+        private long expectedInsertions = 1_000_000;
+
+        private double falsePositiveRate = 0.01;
+    }
+
+    /**
+     * Phone number lookup settings.
+     */
+    @Getter
+    @Setter
+    public static class PhoneNoLookup {
+
+        private Duration negativeTtl = Duration.ofSeconds(30);
+
+        private long negativeMaxSize = 100_000;
+    }
+
+    /**
+     * OrelUser CSV import settings.
+     */
+    @Getter
+    @Setter
+    public static class CsvImport {
+
+        /**
+         * CSV file to import on startup, see OrelUserCsvImportRunner.
+         */
+        private String file;
+
+        private int chunkSize = 500;
+
+        private int validatorThreads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Chunks waiting between two stages, bounds memory and slows the parser down to the writer.
+         */
+        private int queueCapacity = 4;
+
+        private int maxErrors = 1000;
+
+        private Duration jobRetention = Duration.ofHours(1);
+    }
+
+    /**
+     * Read replica settings, see ReplicaDataSourceConfiguration. Read-only transactions go to an
+     * available replica, everything else to spring.datasource.
+     */
+    @Getter
+    @Setter
+    public static class Replicas {
+
+        private boolean enabled;
+
+        private List<ReplicaNode> nodes = new ArrayList<>();
+
+        /**
+         * Replicas further behind the primary than this are skipped until they catch up.
+         */
+        private Duration maxLag = Duration.ofSeconds(5);
+
+        private Duration checkInterval = Duration.ofSeconds(2);
+
+        private int maximumPoolSize = 10;
+    }
+
+    /**
+     * Connection settings of one read replica. Username and password default to spring.datasource.
+     */
+    @Getter
+    @Setter
+    public static class ReplicaNode {
+
+        private String name;
+
+        private String url;
+
+        private String username;
+
+        private String password;
+    }
+
+    /**
+     * Sharding settings, see ShardingConfiguration. Users and their departments are spread over
+     * the shards; spring.datasource keeps the tables that are not sharded, like the Snowflake node
+     * leases.
+     */
+    @Getter
+    @Setter
+    public static class Sharding {
+
+        private boolean enabled;
+
+        private List<ShardNode> shards = new ArrayList<>();
+
+        /**
+         * Points per shard on the consistent hash ring, more points spread keys more evenly.
+         */
+        private int virtualNodes = 128;
+
+        private int maximumPoolSize = 10;
+
+        /**
+         * Phone number to user id entries of the shard directory kept in memory.
+         */
+        private long directoryCacheSize = 100_000;
+    }
+
+    /**
+     * Connection settings of one shard. Username and password default to spring.datasource.
+     */
+    @Getter
+    @Setter
+    public static class ShardNode {
+
+        private String name;
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        /**
+         * Only users created from this time on are placed on the shard, so adding a shard does not
+         * move existing users. Unset for the shards the data started on.
+         */
+        private Instant since;
+    }
+
+    /**
+     * Write-behind settings of user updates, see WriteBehindConfiguration.
+     */
+    @Getter
+    @Setter
+    public static class WriteBehind {
+
+        private boolean enabled;
+
+        /**
+         * Absolute path of the directory of the update journal, on a local disk that survives
+         * restarts. Required when enabled.
+         */
+        private String directory;
+
+        private Duration flushInterval = Duration.ofMillis(200);
+
+        /**
+         * Updates written per transaction.
+         */
+        private int maxBatchSize = 500;
+
+        /**
+         * Updates wait while the oldest queued update is older than this, and fail once they
+         * waited as long.
+         */
+        private Duration maxLag = Duration.ofSeconds(5);
+
+        /**
+         * Updates of new phone numbers wait while this many phone numbers are queued.
+         */
+        private int maxPending = 10_000;
+    }
 }
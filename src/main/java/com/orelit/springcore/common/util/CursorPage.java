@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.common.util;
+
+import com.orelit.springcore.common.exception.PropertyValidationException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * One page of a keyset (seek) paginated list. The next token is opaque to clients, they pass it
+ * back unchanged to get the following page. It is null on the last page.
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+
+  private List<T> content;
+
+  private String next;
+
+  /**
+   * Encode the last id of a page as a continuation token.
+   *
+   * @param id - Last id of the page.
+   * @return URL safe token.
+   */
+  public static String encodeToken(long id) {
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(ByteBuffer.allocate(Long.BYTES).putLong(id).array());
+  }
+
+  /**
+   * Decode a continuation token back to the last id of the previous page.
+   *
+   * @param field - Request parameter the token came from, reported on error.
+   * @param token - Token from {@link #encodeToken(long)}.
+   * @return Last id of the previous page.
+   */
+  public static long decodeToken(String field, String token) {
+    byte[] bytes;
+    try {
+      bytes = Base64.getUrlDecoder().decode(token);
+    } catch (IllegalArgumentException ex) {
+      throw new PropertyValidationException(field, "Invalid continuation token!");
+    }
+    if (bytes.length != Long.BYTES) {
+      throw new PropertyValidationException(field, "Invalid continuation token!");
+    }
+    return ByteBuffer.wrap(bytes).getLong();
+  }
+}
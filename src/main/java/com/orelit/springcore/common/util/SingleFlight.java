@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.common.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key. The first caller runs the call, callers arriving
+ * while it runs wait for and share its result or exception. Nothing is kept once the call ends.
+ *
+ * @param <K> Key type
+ * @param <V> Result type
+ */
+public class SingleFlight<K, V> {
+
+  private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * Run the call for the key, or join the call already running for it.
+   *
+   * @param key  Key of the call
+   * @param call Call to run, may return null
+   * @return Result of the call.
+   */
+  public V execute(K key, Supplier<V> call) {
+    CompletableFuture<V> future = new CompletableFuture<>();
+    CompletableFuture<V> running = inFlight.putIfAbsent(key, future);
+    if (running != null) {
+      return join(running);
+    }
+    try {
+      V result = call.get();
+      future.complete(result);
+      return result;
+    } catch (RuntimeException | Error ex) {
+      future.completeExceptionally(ex);
+      throw ex;
+    } finally {
+      inFlight.remove(key, future);
+    }
+  }
+
+  /**
+   * Number of calls currently running.
+   *
+   * @return running calls.
+   */
+  public int getInFlightCount() {
+    return inFlight.size();
+  }
+
+  private static <V> V join(CompletableFuture<V> running) {
+    try {
+      return running.join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      if (ex.getCause() instanceof Error error) {
+        throw error;
+      }
+      throw ex;
+    }
+  }
+}
@@ -23,6 +23,8 @@ import java.time.format.DateTimeFormatter;
 @EnableConfigurationProperties(ApplicationConfigurationProperties.class)
 public class SystemUtils {
 
+  private static final DateTimeFormatter CSV_DATE_FORMATTER = DateTimeFormatter.ofPattern(dateFormatForCsv());
+
   private static ApplicationConfigurationProperties properties;
 
   public SystemUtils(ApplicationConfigurationProperties properties) {
@@ -47,6 +49,15 @@ public class SystemUtils {
     return "dd MM yyyy";
   }
 
+  /**
+   * Formatter for {@link #dateFormatForCsv()}, created once and shared, it is thread safe.
+   *
+   * @return DateTimeFormatter.
+   */
+  public static DateTimeFormatter csvDateFormatter() {
+    return CSV_DATE_FORMATTER;
+  }
+
   /**
    * LocalDate convert to string.
    *
@@ -54,7 +65,7 @@ public class SystemUtils {
    * @return String value.
    */
   public static String localDateConvertToString(LocalDateTime localDateTime) {
-    return localDateTime.format(DateTimeFormatter.ofPattern(dateFormatForCsv()));
+    return localDateTime.format(CSV_DATE_FORMATTER);
   }
 
   /**
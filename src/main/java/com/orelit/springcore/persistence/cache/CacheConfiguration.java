@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Enables the in-process Caffeine caches. Size, TTL and statistics of each cache are set by
+ * spring.cache.caffeine.spec, hit and miss counts are published as the cache.gets metric.
+ * Puts and evictions made in a transaction are applied after it commits.
+ */
+@Configuration
+@EnableCaching
+@EnableConfigurationProperties(CacheProperties.class)
+public class CacheConfiguration {
+
+  /**
+   * Phone number to OrelUserDto, in front of OrelUserTemplate.findDtoByPhoneNo. Only DTOs are
+   * cached; entities are managed and mutable, so they are loaded fresh for every update.
+   */
+  public static final String ORELUSER_DTO_BY_PHONE_NO = "orelUserDtoByPhoneNo";
+
+  /**
+   * Phone numbers recently found missing, see {@link PhoneNoNegativeCache}.
+   */
+  public static final String PHONE_NO_MISSING = "phoneNoMissing";
+
+  /**
+   * The Caffeine caches of spring.cache, made transaction aware. A cache eviction made while the
+   * write is not yet committed would let a concurrent read cache the old row again, so evictions
+   * wait for the commit; outside a transaction they are applied at once.
+   *
+   * @param cacheProperties spring.cache settings.
+   * @return Cache manager.
+   */
+  @Bean
+  public CacheManager cacheManager(CacheProperties cacheProperties) {
+    CaffeineCacheManager caffeineCacheManager = new CaffeineCacheManager();
+    if (cacheProperties.getCaffeine().getSpec() != null) {
+      caffeineCacheManager.setCacheSpecification(cacheProperties.getCaffeine().getSpec());
+    }
+    if (!cacheProperties.getCacheNames().isEmpty()) {
+      caffeineCacheManager.setCacheNames(cacheProperties.getCacheNames());
+    }
+    return new TransactionAwareCacheManagerProxy(caffeineCacheManager);
+  }
+
+  /**
+   * Report hits, misses and evictions of the phone number negative cache as the cache.* meters.
+   *
+   * @param phoneNoNegativeCache Phone number negative cache.
+   * @return Binder for the negative cache meters.
+   */
+  @Bean
+  public MeterBinder phoneNoNegativeCacheMetrics(PhoneNoNegativeCache phoneNoNegativeCache) {
+    return registry -> CaffeineCacheMetrics.monitor(registry, phoneNoNegativeCache.getCache(),
+        PHONE_NO_MISSING);
+  }
+
+  /**
+   * Report how often the phone number filter saved a database lookup, how often it was wrong,
+   * and the false positive rate expected for its current size.
+   *
+   * @param phoneNoBloomFilter Phone number filter.
+   * @return Binder for the filter meters.
+   */
+  @Bean
+  public MeterBinder phoneNoFilterMetrics(PhoneNoBloomFilter phoneNoBloomFilter) {
+    return registry -> {
+      FunctionCounter.builder("phone_no.filter.skipped", phoneNoBloomFilter,
+              PhoneNoBloomFilter::getSkippedCount)
+          .description("Uniqueness checks answered by the filter without the database")
+          .register(registry);
+      FunctionCounter.builder("phone_no.filter.false_positive", phoneNoBloomFilter,
+              PhoneNoBloomFilter::getFalsePositiveCount)
+          .description("Numbers the filter reported as possibly stored that were not")
+          .register(registry);
+      Gauge.builder("phone_no.filter.expected_fpp", phoneNoBloomFilter,
+              PhoneNoBloomFilter::getExpectedFalsePositiveRate)
+          .description("False positive rate expected for the current number of elements")
+          .register(registry);
+      Gauge.builder("phone_no.filter.elements", phoneNoBloomFilter,
+              PhoneNoBloomFilter::getElementCount)
+          .description("Phone numbers in the filter")
+          .register(registry);
+    };
+  }
+}
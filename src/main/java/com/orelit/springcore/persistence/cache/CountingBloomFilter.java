@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe counting Bloom filter of strings. Each slot is a 4-bit counter, 16 are packed in a
+ * long, so elements can be removed as well as added. A counter that reaches 15 saturates and is
+ * never decremented again, which can only keep a removed element positive.
+ * Removing an element that was never added can cause false negatives, callers must only remove
+ * what they added.
+ */
+public class CountingBloomFilter {
+
+  private static final int COUNTER_BITS = 4;
+  private static final int COUNTERS_PER_WORD = Long.SIZE / COUNTER_BITS;
+  private static final long MAX_COUNT = (1L << COUNTER_BITS) - 1;
+
+  private final long slots;
+  private final int hashes;
+  private final AtomicLongArray counters;
+  private final LongAdder elements = new LongAdder();
+
+  /**
+   * Create a filter sized for the expected number of elements and false positive rate.
+   *
+   * @param expectedElements  Number of elements the filter is sized for
+   * @param falsePositiveRate Target false positive rate at the expected number of elements
+   */
+  public CountingBloomFilter(long expectedElements, double falsePositiveRate) {
+    if (expectedElements < 1) {
+      throw new IllegalArgumentException("Expected elements must be positive");
+    }
+    if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+      throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+    }
+    double ln2 = Math.log(2);
+    long words = (long) Math.ceil(-expectedElements * Math.log(falsePositiveRate)
+        / (ln2 * ln2) / COUNTERS_PER_WORD);
+    if (words > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Filter too large");
+    }
+    this.slots = words * COUNTERS_PER_WORD;
+    this.hashes = Math.max(1, (int) Math.round((double) slots / expectedElements * ln2));
+    this.counters = new AtomicLongArray((int) words);
+  }
+
+  /**
+   * Add an element.
+   *
+   * @param element Element
+   */
+  public void put(String element) {
+    long h1 = hash(element);
+    long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+    for (int i = 0; i < hashes; i++) {
+      increment(Math.floorMod(h1 + i * h2, slots));
+    }
+    elements.increment();
+  }
+
+  /**
+   * Remove an element added with {@link #put(String)}.
+   *
+   * @param element Element
+   */
+  public void remove(String element) {
+    long h1 = hash(element);
+    long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+    for (int i = 0; i < hashes; i++) {
+      decrement(Math.floorMod(h1 + i * h2, slots));
+    }
+    elements.decrement();
+  }
+
+  /**
+   * Check whether an element may have been added.
+   *
+   * @param element Element
+   * @return false if the element was definitely not added.
+   */
+  public boolean mightContain(String element) {
+    long h1 = hash(element);
+    long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+    for (int i = 0; i < hashes; i++) {
+      if (count(Math.floorMod(h1 + i * h2, slots)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * False positive rate expected for the number of elements currently in the filter.
+   *
+   * @return expected false positive rate.
+   */
+  public double expectedFalsePositiveRate() {
+    long count = Math.max(0, elements.sum());
+    return Math.pow(1 - Math.exp(-(double) hashes * count / slots), hashes);
+  }
+
+  public long getElementCount() {
+    return Math.max(0, elements.sum());
+  }
+
+  public long getSlots() {
+    return slots;
+  }
+
+  public int getHashes() {
+    return hashes;
+  }
+
+  private long count(long slot) {
+    int shift = (int) (slot % COUNTERS_PER_WORD) * COUNTER_BITS;
+    return (counters.get((int) (slot / COUNTERS_PER_WORD)) >>> shift) & MAX_COUNT;
+  }
+
+  private void increment(long slot) {
+    int word = (int) (slot / COUNTERS_PER_WORD);
+    int shift = (int) (slot % COUNTERS_PER_WORD) * COUNTER_BITS;
+    long current;
+    do {
+      current = counters.get(word);
+      if (((current >>> shift) & MAX_COUNT) == MAX_COUNT) {
+        return;
+      }
+    } while (!counters.compareAndSet(word, current, current + (1L << shift)));
+  }
+
+  private void decrement(long slot) {
+    int word = (int) (slot / COUNTERS_PER_WORD);
+    int shift = (int) (slot % COUNTERS_PER_WORD) * COUNTER_BITS;
+    long current;
+    do {
+      current = counters.get(word);
+      long count = (current >>> shift) & MAX_COUNT;
+      if (count == 0 || count == MAX_COUNT) {
+        return;
+      }
+    } while (!counters.compareAndSet(word, current, current - (1L << shift)));
+  }
+
+  private static long hash(String element) {
+    long hash = 0xCBF29CE484222325L;
+    for (byte b : element.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b;
+      hash *= 0x100000001B3L;
+    }
+    return mix(hash);
+  }
+
+  private static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xFF51AFD7ED558CCDL;
+    value ^= value >>> 33;
+    value *= 0xC4CEB9FE1A85EC53L;
+    value ^= value >>> 33;
+    return value;
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.cache;
+
+import com.orelit.springcore.common.properties.ApplicationConfigurationProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Counting Bloom filter of the phone numbers in orel_user, so the uniqueness check on create can
+ * skip the database for numbers never seen. It is filled from the table at startup; afterwards
+ * a number is added once its insert succeeded and removed once its delete did, so updates and
+ * failed writes leave the counters alone. Until it is built every
+ * number is reported as possibly present, and removals are ignored so a number cannot be taken
+ * out before the scan added it.
+ * The filter only sees writes of this instance, the unique constraint on phone_no stays the
+ * guard against duplicates created through other instances.
+ */
+@Slf4j
+@Component
+public class PhoneNoBloomFilter {
+
+  private final CountingBloomFilter filter;
+
+  private final LongAdder skipped = new LongAdder();
+
+  private final LongAdder falsePositives = new LongAdder();
+
+  private volatile boolean ready;
+
+  public PhoneNoBloomFilter(ApplicationConfigurationProperties properties) {
+    ApplicationConfigurationProperties.PhoneNoFilter phoneNoFilter = properties.getPhoneNoFilter();
+    this.filter = new CountingBloomFilter(phoneNoFilter.getExpectedInsertions(),
+        phoneNoFilter.getFalsePositiveRate());
+  }
+
+  /**
+   * Fill the filter from the phone numbers already stored.
+   *
+   * @param source Passes every stored phone number to the given consumer.
+   */
+  public void build(Consumer<Consumer<String>> source) {
+    long start = System.currentTimeMillis();
+    source.accept(this::put);
+    ready = true;
+    log.info("Phone number filter built with {} numbers in {} ms, expected false positive rate {}",
+        filter.getElementCount(), System.currentTimeMillis() - start,
+        filter.expectedFalsePositiveRate());
+  }
+
+  /**
+   * Record a phone number being stored.
+   *
+   * @param phoneNo Phone number, ignored if null.
+   */
+  public void put(String phoneNo) {
+    if (phoneNo != null) {
+      filter.put(phoneNo);
+    }
+  }
+
+  /**
+   * Record a stored phone number being deleted.
+   *
+   * @param phoneNo Phone number, ignored if null.
+   */
+  public void remove(String phoneNo) {
+    if (phoneNo != null && ready) {
+      filter.remove(phoneNo);
+    }
+  }
+
+  /**
+   * Check whether a phone number may be stored. A false result is counted as a skipped lookup.
+   *
+   * @param phoneNo Phone number
+   * @return false if the number is definitely not stored.
+   */
+  public boolean mightContain(String phoneNo) {
+    if (!ready || filter.mightContain(phoneNo)) {
+      return true;
+    }
+    skipped.increment();
+    return false;
+  }
+
+  /**
+   * Record that a number reported as possibly stored was not found in the database.
+   */
+  public void recordFalsePositive() {
+    if (ready) {
+      falsePositives.increment();
+    }
+  }
+
+  public boolean isReady() {
+    return ready;
+  }
+
+  public long getSkippedCount() {
+    return skipped.sum();
+  }
+
+  public long getFalsePositiveCount() {
+    return falsePositives.sum();
+  }
+
+  public double getExpectedFalsePositiveRate() {
+    return filter.expectedFalsePositiveRate();
+  }
+
+  public long getElementCount() {
+    return filter.getElementCount();
+  }
+}
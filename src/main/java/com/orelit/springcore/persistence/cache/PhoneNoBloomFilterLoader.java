@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.cache;
+
+import com.orelit.springcore.persistence.repository.OrelUserTemplate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds the {@link PhoneNoBloomFilter} once the application is ready. Requests served while it
+ * is built fall back to the database.
+ */
+@Slf4j
+@Component
+public class PhoneNoBloomFilterLoader {
+
+  private final PhoneNoBloomFilter phoneNoBloomFilter;
+
+  private final OrelUserTemplate orelUserTemplate;
+
+  public PhoneNoBloomFilterLoader(PhoneNoBloomFilter phoneNoBloomFilter,
+                                  OrelUserTemplate orelUserTemplate) {
+    this.phoneNoBloomFilter = phoneNoBloomFilter;
+    this.orelUserTemplate = orelUserTemplate;
+  }
+
+  /**
+   * Fill the filter from orel_user.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    try {
+      phoneNoBloomFilter.build(orelUserTemplate::forEachPhoneNo);
+    } catch (RuntimeException ex) {
+      log.warn("Could not build the phone number filter, uniqueness checks use the database", ex);
+    }
+  }
+}
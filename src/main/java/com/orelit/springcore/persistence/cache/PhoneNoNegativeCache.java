@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.orelit.springcore.common.properties.ApplicationConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Short lived cache of phone numbers recently looked up and not found, so repeated lookups of
+ * numbers that do not exist stop reaching the database. Entries are invalidated when the number
+ * is stored through this instance, otherwise they expire after
+ * application.phone-no-lookup.negative-ttl.
+ *
+ * <p>With read replicas a lookup may run on a replica that has not seen a recent write yet, so
+ * numbers stored or deleted through this instance are remembered for application.replicas.max-lag
+ * and lookups of them are not cached, neither as missing here nor as found by the phone number
+ * caches of OrelUserTemplate.
+ */
+@Component
+public class PhoneNoNegativeCache {
+
+  private final Cache<String, Boolean> missing;
+
+  private final Cache<String, Boolean> recentlyChanged;
+
+  public PhoneNoNegativeCache(ApplicationConfigurationProperties properties) {
+    ApplicationConfigurationProperties.PhoneNoLookup phoneNoLookup = properties.getPhoneNoLookup();
+    this.missing = Caffeine.newBuilder()
+        .maximumSize(phoneNoLookup.getNegativeMaxSize())
+        .expireAfterWrite(phoneNoLookup.getNegativeTtl())
+        .recordStats()
+        .build();
+    ApplicationConfigurationProperties.Replicas replicas = properties.getReplicas();
+    Duration staleWindow = replicas.isEnabled() ? replicas.getMaxLag() : Duration.ZERO;
+    this.recentlyChanged = staleWindow.isZero() ? null : Caffeine.newBuilder()
+        .maximumSize(phoneNoLookup.getNegativeMaxSize())
+        .expireAfterWrite(staleWindow)
+        .build();
+  }
+
+  /**
+   * Check whether the number was recently found missing.
+   *
+   * @param phoneNo Phone number
+   * @return true if the number is known not to exist.
+   */
+  public boolean isMissing(String phoneNo) {
+    return missing.getIfPresent(phoneNo) != null;
+  }
+
+  /**
+   * Remember that the number was not found.
+   *
+   * @param phoneNo Phone number
+   */
+  public void markMissing(String phoneNo) {
+    if (!isRecentlyChanged(phoneNo)) {
+      missing.put(phoneNo, Boolean.TRUE);
+    }
+  }
+
+  /**
+   * Forget the number, called when it is stored or deleted.
+   *
+   * @param phoneNo Phone number, ignored if null.
+   */
+  public void invalidate(String phoneNo) {
+    if (phoneNo != null) {
+      missing.invalidate(phoneNo);
+      if (recentlyChanged != null) {
+        recentlyChanged.put(phoneNo, Boolean.TRUE);
+      }
+    }
+  }
+
+  /**
+   * Check whether the number was stored or deleted recently enough for a replica to miss it.
+   *
+   * @param phoneNo Phone number
+   * @return true if a lookup of the number must not be cached.
+   */
+  public boolean isRecentlyChanged(String phoneNo) {
+    return recentlyChanged != null && recentlyChanged.getIfPresent(phoneNo) != null;
+  }
+
+  Cache<String, Boolean> getCache() {
+    return missing;
+  }
+}
@@ -3,55 +3,48 @@ package com.orelit.springcore.persistence.converter;
 import com.orelit.springcore.common.dto.OrelUserDto;
 import com.orelit.springcore.persistence.entity.Department;
 import com.orelit.springcore.persistence.entity.OrelUser;
-import org.modelmapper.ModelMapper;
-import org.springframework.stereotype.Component;
+import org.mapstruct.Context;
+import org.mapstruct.InjectionStrategy;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingConstants;
+import org.mapstruct.MappingTarget;
+import org.mapstruct.ReportingPolicy;
 
 /**
  * DepartmentMapper
  * Author: udithan
  * Date: 03-Oct-23
  */
-@Component
-public class DepartmentMapper {
-    private ModelMapper modelMapper;
-
-    public DepartmentMapper(ModelMapper modelMapper) {
-
-        this.modelMapper = modelMapper;
-    }
-
+@Mapper(componentModel = MappingConstants.ComponentModel.SPRING,
+        injectionStrategy = InjectionStrategy.CONSTRUCTOR,
+        unmappedTargetPolicy = ReportingPolicy.ERROR,
+        uses = OrelUserMapper.class)
+public interface DepartmentMapper {
 
     /**
      * Convert Orel User DTO to an entity save user data and department data.
+     * The user details become the department's new OrelUser, saved with it by cascade.
      *
-     * @param OrelUserDto - Contains the user details.
+     * @param orelUserDto - Contains the user details.
      * @return - Department Object.
      */
-    public Department convertDepartmentDetailDtoToEntity(OrelUserDto OrelUserDto) {
-
-        Department department = modelMapper.map(OrelUserDto, Department.class);
-        department.setDep_name(OrelUserDto.getDep_name());
-        department.setDep_email(OrelUserDto.getDep_email());
-        department.setDep_contact_no(OrelUserDto.getDep_contact_no());
-        return department;
-
-    }
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "orelUser", source = "orelUserDto")
+    Department convertDepartmentDetailDtoToEntity(OrelUserDto orelUserDto);
 
     /**
      *
      * Convert user data and department data to an entity.
      *
-     * @param OrelUserDto -Contains only User details.
+     * @param orelUserDto -Contains only User details.
      * @param department  -Contains only Department details.
      * @param orelUser    -Contains User details.
      * @return - Department Object.
      */
-    public Department convertUpdateDepartmentDetailDtoToEntity(OrelUserDto OrelUserDto, Department department, OrelUser orelUser) {
-
-        department.setDep_name(OrelUserDto.getDep_name());
-        department.setDep_email(OrelUserDto.getDep_email());
-        department.setDep_contact_no(OrelUserDto.getDep_contact_no());
-        return department;
-
-    }
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "orelUser", ignore = true)
+    Department convertUpdateDepartmentDetailDtoToEntity(OrelUserDto orelUserDto,
+                                                        @MappingTarget Department department,
+                                                        @Context OrelUser orelUser);
 }
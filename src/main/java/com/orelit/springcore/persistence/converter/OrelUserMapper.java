@@ -3,24 +3,23 @@ package com.orelit.springcore.persistence.converter;
 
 import com.orelit.springcore.common.dto.OrelUserDto;
 import com.orelit.springcore.persistence.entity.OrelUser;
-import org.modelmapper.ModelMapper;
-import org.springframework.stereotype.Component;
+import org.mapstruct.InjectionStrategy;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingConstants;
+import org.mapstruct.MappingTarget;
+import org.mapstruct.ReportingPolicy;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
- * Mapper class for converting between OrelUser and OrelUserDto objects using ModelMapper.
+ * Mapper for converting between OrelUser and OrelUserDto objects.
+ * The implementation is generated by MapStruct at compile time, so no reflection is used at runtime.
  */
-@Component
-public class OrelUserMapper {
-
-    private final ModelMapper modelMapper;
-
-    public OrelUserMapper(ModelMapper modelMapper) {
-
-        this.modelMapper = modelMapper;
-    }
+@Mapper(componentModel = MappingConstants.ComponentModel.SPRING,
+        injectionStrategy = InjectionStrategy.CONSTRUCTOR,
+        unmappedTargetPolicy = ReportingPolicy.ERROR)
+public interface OrelUserMapper {
 
     /**
      * Convert a OrelUserDto to a OrelUser entity.
@@ -28,44 +27,37 @@ public class OrelUserMapper {
      * @param orelUserDto - OrelUser details from front.
      * @return - Converted OrelUser Entity.
      */
-    public OrelUser convertToEntity(OrelUserDto orelUserDto) {
-
-        return modelMapper.map(orelUserDto, OrelUser.class);
-    }
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "createdAt", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
+    @Mapping(target = "createdBy", ignore = true)
+    @Mapping(target = "department", ignore = true)
+    OrelUser convertToEntity(OrelUserDto orelUserDto);
 
     /**
      * Convert a OrelUser entity to a OrelUserDto.
      *
-     * @param orelUser - Converted OrelUser DTO.
-     * @return
+     * @param orelUser - OrelUser entity, with its department if it has one.
+     * @return - Converted OrelUser DTO.
      */
-    public OrelUserDto convertToDto(OrelUser orelUser) {
-        OrelUserDto orelUserDto = modelMapper.map(orelUser, OrelUserDto.class);
-        if (orelUser.getDepartment() != null) {
-            orelUserDto.setDep_name(orelUser.getDepartment().getDep_name());
-            orelUserDto.setDep_contact_no(orelUser.getDepartment().getDep_contact_no());
-            orelUserDto.setDep_email(orelUser.getDepartment().getDep_email());
-        }
-
-        return orelUserDto;
-    }
+    @Mapping(target = "dep_name", source = "department.dep_name")
+    @Mapping(target = "dep_contact_no", source = "department.dep_contact_no")
+    @Mapping(target = "dep_email", source = "department.dep_email")
+    OrelUserDto convertToDto(OrelUser orelUser);
 
     /**
      * Update an existing OrelUser entity with data from a OrelUserDto.
      *
-     * @param oldOrelUser - OrelUser Entity to update.
      * @param orelUserDto - OrelUser DTO from the front.
-     * @return
+     * @param oldOrelUser - OrelUser Entity to update.
+     * @return - The updated OrelUser Entity.
      */
-    public OrelUser convertToUpdateEntity( OrelUserDto orelUserDto,OrelUser oldOrelUser) {
-
-        oldOrelUser.setFirstName(orelUserDto.getFirstName());
-        oldOrelUser.setMiddleName(orelUserDto.getMiddleName());
-        oldOrelUser.setPhoneNo(orelUserDto.getPhoneNo());
-        oldOrelUser.setLanguage(orelUserDto.getLanguage());
-        oldOrelUser.setEmail(orelUserDto.getEmail());
-        return oldOrelUser;
-    }
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "createdAt", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
+    @Mapping(target = "createdBy", ignore = true)
+    @Mapping(target = "department", ignore = true)
+    OrelUser convertToUpdateEntity(OrelUserDto orelUserDto, @MappingTarget OrelUser oldOrelUser);
 
     /**
      * Convert a list of OrelUser entities to a list of OrelUserDto objects.
@@ -73,12 +65,6 @@ public class OrelUserMapper {
      * @param orelUserList - List of OrelUser entities.
      * @return - List of OrelUserDto objects.
      */
-    public List<OrelUserDto> convertToOrelUserDtoList(List<OrelUser> orelUserList) {
-        return orelUserList.stream().map(OrelUser -> {
-            OrelUserDto orelUserDto = convertToDto(OrelUser);
-            return orelUserDto;
-        }).collect(Collectors.toList());
-    }
+    List<OrelUserDto> convertToOrelUserDtoList(List<OrelUser> orelUserList);
 
 }
-
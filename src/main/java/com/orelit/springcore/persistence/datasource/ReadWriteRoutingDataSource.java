@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.datasource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Sends connections of read-only transactions to an available replica of the {@link ReplicaPool}
+ * and every other connection to the primary. A replica refusing a connection is skipped and the
+ * primary is used instead.
+ *
+ * <p>The read-only flag of a transaction is only known after its connection is requested, so
+ * this must be used through a {@link LazyConnectionDataSourceProxy}, which asks for the connection
+ * when the first statement runs.
+ */
+public class ReadWriteRoutingDataSource extends AbstractDataSource {
+
+  private final DataSource primary;
+
+  private final ReplicaPool replicaPool;
+
+  public ReadWriteRoutingDataSource(DataSource primary, ReplicaPool replicaPool) {
+    this.primary = primary;
+    this.replicaPool = replicaPool;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      return primary.getConnection();
+    }
+    ReplicaPool.Replica replica = replicaPool.select();
+    if (replica == null) {
+      return primary.getConnection();
+    }
+    try {
+      return replica.getDataSource().getConnection();
+    } catch (SQLException ex) {
+      replicaPool.markUnavailable(replica, ex);
+      replicaPool.recordFallback();
+      return primary.getConnection();
+    }
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return primary.getConnection(username, password);
+  }
+}
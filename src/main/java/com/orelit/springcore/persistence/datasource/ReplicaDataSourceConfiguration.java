@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.datasource;
+
+import com.orelit.springcore.common.constant.SystemConstants;
+import com.orelit.springcore.common.properties.ApplicationConfigurationProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Routes read-only transactions, like the @Transactional(readOnly = true) reads of
+ * OrelUserService, to the replicas in application.replicas.nodes and everything else to the
+ * spring.datasource primary. Enabled by application.replicas.enabled; the reactive profile serves
+ * its reads over R2DBC and keeps the single DataSource of ReactiveDataSourceConfiguration.
+ */
+@Configuration
+@Profile("!" + SystemConstants.REACTIVE_PROFILE)
+@ConditionalOnProperty(prefix = "application.replicas", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class ReplicaDataSourceConfiguration {
+
+  /**
+   * Primary DataSource from the spring.datasource properties.
+   *
+   * @param properties spring.datasource properties.
+   * @return Hikari DataSource of the primary.
+   */
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+    return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  /**
+   * Replica connection pools with their health checks. Replica pools are read-only, and give up
+   * on a connection after one check interval so reads fall back to the primary quickly.
+   *
+   * @param primaryDataSource    Primary DataSource, for the heartbeat.
+   * @param dataSourceProperties spring.datasource properties, for the driver and credentials.
+   * @param properties           Application properties.
+   * @return Replica pool.
+   */
+  @Bean
+  public ReplicaPool replicaPool(HikariDataSource primaryDataSource,
+                                 DataSourceProperties dataSourceProperties,
+                                 ApplicationConfigurationProperties properties) {
+    ApplicationConfigurationProperties.Replicas settings = properties.getReplicas();
+    List<ReplicaPool.Replica> replicas = new ArrayList<>();
+    Set<String> names = new HashSet<>();
+    for (ApplicationConfigurationProperties.ReplicaNode node : settings.getNodes()) {
+      String name = node.getName() != null ? node.getName() : "replica-" + (replicas.size() + 1);
+      if (!names.add(name)) {
+        throw new IllegalArgumentException("Replica name " + name + " is used twice");
+      }
+      HikariDataSource dataSource = DataSourceBuilder.create()
+          .type(HikariDataSource.class)
+          .driverClassName(dataSourceProperties.determineDriverClassName())
+          .url(node.getUrl())
+          .username(node.getUsername() != null ? node.getUsername()
+              : dataSourceProperties.determineUsername())
+          .password(node.getPassword() != null ? node.getPassword()
+              : dataSourceProperties.determinePassword())
+          .build();
+      dataSource.setPoolName(name);
+      dataSource.setReadOnly(true);
+      dataSource.setMaximumPoolSize(settings.getMaximumPoolSize());
+      dataSource.setConnectionTimeout(Math.max(250, settings.getCheckInterval().toMillis()));
+      replicas.add(new ReplicaPool.Replica(name, dataSource));
+    }
+    return new ReplicaPool(primaryDataSource, replicas, settings.getMaxLag(),
+        settings.getCheckInterval());
+  }
+
+  /**
+   * DataSource used by JPA and JdbcTemplate, routing each transaction when its first statement
+   * runs.
+   *
+   * @param primaryDataSource Primary DataSource.
+   * @param replicaPool       Replica pool.
+   * @return Routing DataSource.
+   */
+  @Bean
+  @Primary
+  public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaPool replicaPool) {
+    return new LazyConnectionDataSourceProxy(
+        new ReadWriteRoutingDataSource(primaryDataSource, replicaPool));
+  }
+
+  /**
+   * Report the lag and availability of each replica and the reads that fell back to the primary.
+   *
+   * @param replicaPool Replica pool.
+   * @return Binder for the replica meters.
+   */
+  @Bean
+  public MeterBinder replicaMetrics(ReplicaPool replicaPool) {
+    return registry -> {
+      for (ReplicaPool.Replica replica : replicaPool.getReplicas()) {
+        Gauge.builder("datasource.replica.lag", replica, ReplicaPool.Replica::getLagMillis)
+            .description("Replication lag in milliseconds measured by the last check, -1 if unknown")
+            .tag("replica", replica.getName())
+            .register(registry);
+        Gauge.builder("datasource.replica.available", replica,
+                r -> r.isAvailable() ? 1 : 0)
+            .description("Whether read-only transactions are sent to the replica")
+            .tag("replica", replica.getName())
+            .register(registry);
+      }
+      FunctionCounter.builder("datasource.replica.fallback", replicaPool,
+              ReplicaPool::getFallbackCount)
+          .description("Read-only transactions served by the primary because no replica was available")
+          .register(registry);
+    };
+  }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read replicas of the primary database, with their health and replication lag. The lag is
+ * measured with a heartbeat row: every check writes the primary's database time to the
+ * replica_heartbeat table, and each replica compares the replicated time with its own database
+ * time. Instances share the row, so their clocks never enter the lag. A replica that
+ * cannot be queried, has no heartbeat yet or is more than the max lag behind is skipped until a
+ * later check finds it healthy again; when every replica is skipped reads fall back to the
+ * primary.
+ */
+@Slf4j
+public class ReplicaPool implements InitializingBean, DisposableBean {
+
+  private static final int HEARTBEAT_ID = 1;
+
+  private static final String NOW = "current_timestamp(3)";
+
+  private final JdbcTemplate primary;
+
+  private final List<Replica> replicas;
+
+  private final long maxLagMillis;
+
+  private final long checkIntervalMillis;
+
+  private final AtomicInteger next = new AtomicInteger();
+
+  private final LongAdder fallbacks = new LongAdder();
+
+  private ScheduledExecutorService scheduler;
+
+  public ReplicaPool(DataSource primary, List<Replica> replicas, Duration maxLag,
+                     Duration checkInterval) {
+    if (replicas.isEmpty()) {
+      throw new IllegalArgumentException("At least one replica is required");
+    }
+    if (checkInterval.compareTo(maxLag) >= 0) {
+      throw new IllegalArgumentException("Replica check interval must be shorter than the max lag");
+    }
+    this.primary = new JdbcTemplate(primary);
+    this.replicas = List.copyOf(replicas);
+    this.maxLagMillis = maxLag.toMillis();
+    this.checkIntervalMillis = checkInterval.toMillis();
+  }
+
+  /**
+   * Create the heartbeat table, check every replica once and start the periodic checks.
+   */
+  @Override
+  public synchronized void afterPropertiesSet() {
+    createTableIfMissing();
+    check();
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "replica-check");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(this::check, checkIntervalMillis, checkIntervalMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Create the heartbeat table on the primary if it does not exist yet. Replicas get it by
+   * replication.
+   */
+  public void createTableIfMissing() {
+    primary.execute("create table if not exists replica_heartbeat ("
+        + "id int not null primary key, "
+        + "beat_at timestamp(3) not null)");
+  }
+
+  /**
+   * Write a heartbeat to the primary, then measure the lag of every replica.
+   */
+  public synchronized void check() {
+    try {
+      if (primary.update("update replica_heartbeat set beat_at = " + NOW + " where id = ?",
+          HEARTBEAT_ID) == 0) {
+        primary.update("insert into replica_heartbeat (id, beat_at) values (?, " + NOW + ")",
+            HEARTBEAT_ID);
+      }
+    } catch (RuntimeException ex) {
+      log.warn("Could not write the replica heartbeat to the primary", ex);
+    }
+    for (Replica replica : replicas) {
+      try {
+        List<Long> lags = replica.jdbcTemplate.queryForList(
+            "select timestampdiff(microsecond, beat_at, " + NOW + ") from replica_heartbeat"
+                + " where id = ?", Long.class, HEARTBEAT_ID);
+        if (lags.isEmpty()) {
+          replica.update(-1, false, "has no heartbeat yet");
+        } else {
+          long lag = Math.max(0, lags.get(0) / 1000);
+          replica.update(lag, lag <= maxLagMillis, "is " + lag + " ms behind the primary");
+        }
+      } catch (RuntimeException ex) {
+        replica.update(-1, false, "cannot be queried: " + ex.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Pick the next available replica, round robin.
+   *
+   * @return Replica to read from, null to read from the primary.
+   */
+  public Replica select() {
+    int start = next.getAndIncrement();
+    for (int i = 0; i < replicas.size(); i++) {
+      Replica replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+      if (replica.available) {
+        return replica;
+      }
+    }
+    fallbacks.increment();
+    return null;
+  }
+
+  /**
+   * Skip a replica that refused a connection until the next check finds it healthy.
+   *
+   * @param replica Replica.
+   * @param ex      Why the connection failed.
+   */
+  public void markUnavailable(Replica replica, Exception ex) {
+    replica.update(replica.lagMillis, false, "refused a connection: " + ex.getMessage());
+  }
+
+  /**
+   * Record a read that went to the primary after a replica refused a connection.
+   */
+  void recordFallback() {
+    fallbacks.increment();
+  }
+
+  public List<Replica> getReplicas() {
+    return replicas;
+  }
+
+  /**
+   * Number of read-only transactions served by the primary because no replica was available.
+   *
+   * @return count of fallbacks.
+   */
+  public long getFallbackCount() {
+    return fallbacks.sum();
+  }
+
+  /**
+   * Stop the checks and close the replica connection pools.
+   */
+  @Override
+  public synchronized void destroy() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+    for (Replica replica : replicas) {
+      if (replica.dataSource instanceof Closeable closeable) {
+        try {
+          closeable.close();
+        } catch (IOException ex) {
+          log.warn("Could not close replica {}", replica.name, ex);
+        }
+      }
+    }
+  }
+
+  /**
+   * One read replica with its last measured state.
+   */
+  public static class Replica {
+
+    private final String name;
+
+    private final DataSource dataSource;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile boolean available;
+
+    private volatile long lagMillis = -1;
+
+    private boolean checked;
+
+    public Replica(String name, DataSource dataSource) {
+      this.name = name;
+      this.dataSource = dataSource;
+      this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    private synchronized void update(long lagMillis, boolean available, String reason) {
+      if (!available && (this.available || !checked)) {
+        log.warn("Replica {} is skipped, it {}", name, reason);
+      } else if (available && !this.available) {
+        log.info("Replica {} is available, it {}", name, reason);
+      }
+      this.lagMillis = lagMillis;
+      this.available = available;
+      checked = true;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public DataSource getDataSource() {
+      return dataSource;
+    }
+
+    public boolean isAvailable() {
+      return available;
+    }
+
+    /**
+     * Replication lag measured by the last check.
+     *
+     * @return lag in milliseconds, -1 if unknown.
+     */
+    public long getLagMillis() {
+      return lagMillis;
+    }
+  }
+}
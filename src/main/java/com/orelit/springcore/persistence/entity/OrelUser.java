@@ -11,7 +11,7 @@ import lombok.NoArgsConstructor;
 @Table(name = "orel_user")
 public class OrelUser extends BaseEntity {
 
-    @Column(name = "phone_no")
+    @Column(name = "phone_no", unique = true)
     private String phoneNo;
 
     @Column(name = "language", nullable = false)
@@ -0,0 +1,26 @@
+package com.orelit.springcore.persistence.repository;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Defines methods for leasing Snowflake node ids through the snowflake_node_lease table.
+ * Lease ends are computed and compared with the database clock, so instances with skewed clocks
+ * agree on when a lease expired; ttls are milliseconds.
+ */
+public interface NodeLeaseTemplate {
+
+    void createTableIfMissing();
+
+    Set<Integer> findNodeIds();
+
+    List<Integer> findExpiredNodeIds();
+
+    boolean insert(int nodeId, String owner, long ttlMillis);
+
+    boolean claimExpired(int nodeId, String owner, long ttlMillis);
+
+    boolean renew(int nodeId, String owner, long ttlMillis);
+
+    void release(int nodeId, String owner);
+}
@@ -2,6 +2,8 @@ package com.orelit.springcore.persistence.repository;
 
 import com.orelit.springcore.persistence.entity.Department;
 
+import java.util.List;
+
 /**
  * OrelUserDepartmentTemplate
  * Author: udithan
@@ -17,6 +19,8 @@ public interface OrelUserDepartmentTemplate {
 
     void saveOrelUserDepartmentDetails(Department department);
 
+    void saveAllOrelUserDepartmentDetails(List<Department> departments);
+
     void delete(Department department);
 
     Department findByUserId(Long id);
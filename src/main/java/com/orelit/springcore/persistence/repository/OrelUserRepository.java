@@ -1,18 +1,79 @@
 package com.orelit.springcore.persistence.repository;
 
 
+import com.orelit.springcore.common.dto.OrelUserDto;
 import com.orelit.springcore.persistence.entity.OrelUser;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for managing OrelUser entities using Spring Data JPA.
+ * Read only lookups project straight into OrelUserDto, so no entity is hydrated or managed.
+ * OrelUser.department is the inverse side of a one-to-one and is always loaded eagerly, so every
+ * read fetches it with a join through an entity graph instead of one extra query per user.
  */
 @Repository
 public interface OrelUserRepository extends JpaRepository<OrelUser, Long> {
 
+  String DTO_PROJECTION = "select new com.orelit.springcore.common.dto.OrelUserDto("
+      + "u.phoneNo, u.language, u.firstName, u.middleName, u.email, "
+      + "d.dep_name, d.dep_contact_no, d.dep_email) "
+      + "from OrelUser u left join u.department d";
+
+  @Query(DTO_PROJECTION + " where u.phoneNo = :phoneNo")
+  Optional<OrelUserDto> findDtoByPhoneNo(@Param("phoneNo") String phoneNo);
+
+  @Query(DTO_PROJECTION + " where u.id = :id")
+  Optional<OrelUserDto> findDtoById(@Param("id") Long id);
+
+  @Query(value = DTO_PROJECTION, countQuery = "select count(u) from OrelUser u")
+  Page<OrelUserDto> findAllDtos(Pageable pageable);
+
+  @Query("select u.phoneNo from OrelUser u where u.phoneNo in :phoneNos")
+  List<String> findPhoneNosIn(@Param("phoneNos") Collection<String> phoneNos);
+
+  @EntityGraph(attributePaths = "department")
   Optional<OrelUser> findByPhoneNo(String phoneNo);
 
+  @EntityGraph(attributePaths = "department")
+  List<OrelUser> findByPhoneNoIn(Collection<String> phoneNos);
+
+  @EntityGraph(attributePaths = "department")
+  List<OrelUser> findByIdIn(Collection<Long> ids);
+
+  @Override
+  @EntityGraph(attributePaths = "department")
+  Optional<OrelUser> findById(Long id);
+
+  @Override
+  @EntityGraph(attributePaths = "department")
+  List<OrelUser> findAll();
+
+  @Override
+  @EntityGraph(attributePaths = "department")
+  Page<OrelUser> findAll(Pageable pageable);
+
+  @EntityGraph(attributePaths = "department")
+  List<OrelUser> findByIdGreaterThanEqualAndIdLessThanOrderByIdAsc(Long fromId, Long toId, Pageable pageable);
+
+  @EntityGraph(attributePaths = "department")
+  List<OrelUser> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+  @EntityGraph(attributePaths = "department")
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+  Stream<OrelUser> streamAllByOrderByIdAsc();
+
 }
@@ -1,10 +1,18 @@
 package com.orelit.springcore.persistence.repository;
 
 
+import com.orelit.springcore.common.dto.OrelUserDto;
 import com.orelit.springcore.persistence.entity.OrelUser;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Defines methods for saving and querying OrelUser data.
@@ -20,6 +28,28 @@ public interface OrelUserTemplate {
 
     List<OrelUser> findAll();
 
+    OrelUserDto findDtoByPhoneNo(String phoneNo);
+
+    OrelUserDto findDtoById(Long id);
+
+    Page<OrelUserDto> findAllDtos(Pageable pageable);
+
+    Set<String> findExistingPhoneNos(Collection<String> phoneNos);
+
+    List<OrelUser> findByPhoneNos(Collection<String> phoneNos);
+
+    List<OrelUser> findByIds(Collection<Long> ids);
+
+    List<OrelUser> findAfter(Long afterId, int limit);
+
+    void streamAll(Consumer<OrelUser> consumer);
+
+    void forEachPhoneNo(Consumer<String> consumer);
+
+    void forEachWithDepartment(RowCallbackHandler handler);
+
+    List<OrelUser> findCreatedBetween(Instant from, Instant to, Long afterId, int limit);
+
     void delete(OrelUser orelUser);
 }
 
@@ -0,0 +1,135 @@
+package com.orelit.springcore.persistence.repository.impl;
+
+import com.orelit.springcore.persistence.repository.NodeLeaseTemplate;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Implementation of the NodeLeaseTemplate interface on plain JDBC. Node ids are leased before the
+ * entity manager factory starts, so this cannot go through a JPA repository.
+ */
+@Service
+public class NodeLeaseTemplateImpl implements NodeLeaseTemplate {
+
+    private static final String NOW = "current_timestamp(3)";
+
+    private static final String NOW_PLUS_TTL = "timestampadd(microsecond, ?, " + NOW + ")";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NodeLeaseTemplateImpl(JdbcTemplate jdbcTemplate) {
+
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Create the lease table if it does not exist yet.
+     */
+    @Override
+    public void createTableIfMissing() {
+
+        jdbcTemplate.execute("create table if not exists snowflake_node_lease ("
+                + "node_id int not null primary key, "
+                + "owner varchar(255) not null, "
+                + "leased_until timestamp(3) not null)");
+    }
+
+    /**
+     * Get every node id that has a lease row, expired or not.
+     *
+     * @return Node ids.
+     */
+    @Override
+    public Set<Integer> findNodeIds() {
+
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "select node_id from snowflake_node_lease", Integer.class));
+    }
+
+    /**
+     * Get node ids whose lease ran out by the database clock.
+     *
+     * @return Expired node ids.
+     */
+    @Override
+    public List<Integer> findExpiredNodeIds() {
+
+        return jdbcTemplate.queryForList(
+                "select node_id from snowflake_node_lease where leased_until < " + NOW, Integer.class);
+    }
+
+    /**
+     * Lease a node id that was never leased before.
+     *
+     * @param nodeId    - Node id to lease.
+     * @param owner     - Owner of the lease.
+     * @param ttlMillis - Length of the lease from now.
+     * @return true if the lease was created, false if the node id already has a lease row.
+     */
+    @Override
+    public boolean insert(int nodeId, String owner, long ttlMillis) {
+
+        try {
+            return jdbcTemplate.update(
+                    "insert into snowflake_node_lease (node_id, owner, leased_until) values (?, ?, "
+                            + NOW_PLUS_TTL + ")",
+                    nodeId, owner, ttlMillis * 1000) == 1;
+        } catch (DuplicateKeyException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Take over an expired lease.
+     *
+     * @param nodeId    - Node id to lease.
+     * @param owner     - New owner of the lease.
+     * @param ttlMillis - Length of the lease from now.
+     * @return true if the lease was taken over.
+     */
+    @Override
+    public boolean claimExpired(int nodeId, String owner, long ttlMillis) {
+
+        return jdbcTemplate.update(
+                "update snowflake_node_lease set owner = ?, leased_until = " + NOW_PLUS_TTL
+                        + " where node_id = ? and leased_until < " + NOW,
+                owner, ttlMillis * 1000, nodeId) == 1;
+    }
+
+    /**
+     * Extend a lease that is still held by the owner.
+     *
+     * @param nodeId    - Leased node id.
+     * @param owner     - Owner of the lease.
+     * @param ttlMillis - Length of the lease from now.
+     * @return false if the lease now belongs to someone else.
+     */
+    @Override
+    public boolean renew(int nodeId, String owner, long ttlMillis) {
+
+        return jdbcTemplate.update(
+                "update snowflake_node_lease set leased_until = " + NOW_PLUS_TTL
+                        + " where node_id = ? and owner = ?",
+                ttlMillis * 1000, nodeId, owner) == 1;
+    }
+
+    /**
+     * End a lease right away so another node can take the node id.
+     *
+     * @param nodeId - Leased node id.
+     * @param owner  - Owner of the lease.
+     */
+    @Override
+    public void release(int nodeId, String owner) {
+
+        jdbcTemplate.update(
+                "update snowflake_node_lease set leased_until = " + NOW_PLUS_TTL
+                        + " where node_id = ? and owner = ?",
+                -1000, nodeId, owner);
+    }
+}
@@ -1,10 +1,15 @@
 package com.orelit.springcore.persistence.repository.impl;
 
+import com.orelit.springcore.persistence.cache.PhoneNoBloomFilter;
+import com.orelit.springcore.persistence.cache.PhoneNoNegativeCache;
 import com.orelit.springcore.persistence.entity.Department;
 import com.orelit.springcore.persistence.repository.OrelUserDepartmentRepository;
 import com.orelit.springcore.persistence.repository.OrelUserDepartmentTemplate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -17,18 +22,28 @@ import java.util.Optional;
  * Implementation of the OrelUserDepartmentTemplate interface that provides methods for saving and querying OrelUser and department entities.
  */
 @Service
+@ConditionalOnProperty(prefix = "application.sharding", name = "enabled", havingValue = "false",
+        matchIfMissing = true)
 public class OrelUserDepartmentImpl implements OrelUserDepartmentTemplate {
 
     private OrelUserDepartmentRepository orelUserDepartmentRepository;
 
-    public OrelUserDepartmentImpl(OrelUserDepartmentRepository orelUserDepartmentRepository) {
+    private final PhoneNoBloomFilter phoneNoBloomFilter;
+
+    private final PhoneNoNegativeCache phoneNoNegativeCache;
+
+    public OrelUserDepartmentImpl(OrelUserDepartmentRepository orelUserDepartmentRepository,
+                                  PhoneNoBloomFilter phoneNoBloomFilter,
+                                  PhoneNoNegativeCache phoneNoNegativeCache) {
 
         this.orelUserDepartmentRepository = orelUserDepartmentRepository;
+        this.phoneNoBloomFilter = phoneNoBloomFilter;
+        this.phoneNoNegativeCache = phoneNoNegativeCache;
     }
 
 
     /**
-     * Save orel user department data.
+     * Save orel user department data. The department's user is saved with it by cascade.
      *
      * @param department - Contains department data.
      */
@@ -36,7 +51,27 @@ public class OrelUserDepartmentImpl implements OrelUserDepartmentTemplate {
     @Override
     public void saveOrelUserDepartmentDetails(Department department) {
 
+        String phoneNo = phoneNoOf(department);
         orelUserDepartmentRepository.save(department);
+        phoneNoBloomFilter.put(phoneNo);
+        phoneNoNegativeCache.invalidate(phoneNo);
+    }
+
+    /**
+     * Save department data of many users in one transaction. Ids are assigned up front by the
+     * Snowflake generator, so the inserts are flushed as JDBC batches.
+     *
+     * @param departments - Departments, each with its user.
+     */
+    @Override
+    @Transactional
+    public void saveAllOrelUserDepartmentDetails(List<Department> departments) {
+
+        orelUserDepartmentRepository.saveAll(departments);
+        departments.forEach(department -> {
+            phoneNoBloomFilter.put(phoneNoOf(department));
+            phoneNoNegativeCache.invalidate(phoneNoOf(department));
+        });
     }
 
     /**
@@ -63,4 +98,8 @@ public class OrelUserDepartmentImpl implements OrelUserDepartmentTemplate {
         Optional<Department> departmentOptional = orelUserDepartmentRepository.findByOrelUserId(userId);
         return departmentOptional.orElse(null);
     }
+
+    private static String phoneNoOf(Department department) {
+        return department.getOrelUser() != null ? department.getOrelUser().getPhoneNo() : null;
+    }
 }
@@ -1,22 +1,51 @@
 package com.orelit.springcore.persistence.repository.impl;
 
 
+import com.orelit.springcore.common.constant.SystemConstants;
+import com.orelit.springcore.common.dto.OrelUserDto;
 import com.orelit.springcore.common.exception.NotFoundException;
+import com.orelit.springcore.persistence.cache.CacheConfiguration;
+import com.orelit.springcore.persistence.cache.PhoneNoBloomFilter;
+import com.orelit.springcore.persistence.cache.PhoneNoNegativeCache;
 import com.orelit.springcore.persistence.converter.OrelUserMapper;
 import com.orelit.springcore.persistence.entity.OrelUser;
 import com.orelit.springcore.persistence.repository.OrelUserRepository;
 import com.orelit.springcore.persistence.repository.OrelUserTemplate;
+import com.orelit.springcore.persistence.snowflake.Snowflake;
+import jakarta.persistence.EntityManager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 
 /**
  * Implementation of the OrelUserTemplate interface that provides methods for saving and querying OrelUser entities.
  */
 @Service
+@ConditionalOnProperty(prefix = "application.sharding", name = "enabled", havingValue = "false",
+        matchIfMissing = true)
 public class OrelUserTemplateImpl implements OrelUserTemplate {
 
 
@@ -24,29 +53,57 @@ public class OrelUserTemplateImpl implements OrelUserTemplate {
 
     private final OrelUserMapper orelUserMapper;
 
+    private final EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final PhoneNoBloomFilter phoneNoBloomFilter;
+
+    private final PhoneNoNegativeCache phoneNoNegativeCache;
+
     @Autowired
     public OrelUserTemplateImpl(OrelUserRepository orelUserRepository,
-                                OrelUserMapper orelUserMapper) {
+                                OrelUserMapper orelUserMapper,
+                                EntityManager entityManager,
+                                JdbcTemplate jdbcTemplate,
+                                PhoneNoBloomFilter phoneNoBloomFilter,
+                                PhoneNoNegativeCache phoneNoNegativeCache) {
 
         this.orelUserRepository = orelUserRepository;
         this.orelUserMapper = orelUserMapper;
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.phoneNoBloomFilter = phoneNoBloomFilter;
+        this.phoneNoNegativeCache = phoneNoNegativeCache;
 
     }
 
     /**
-     * Saves a orelUser entity.
+     * Saves a orelUser entity. The cached DTO of its phone number is evicted once the save is
+     * committed, so a read racing the save cannot cache the old values again. The phone number
+     * filter is only told about a user inserted by the save, once the write succeeded.
      *
      * @param orelUser The orelUser entity to be saved.
      * @return The saved orelUser entity.
      */
     @Override
+    @CacheEvict(cacheNames = CacheConfiguration.ORELUSER_DTO_BY_PHONE_NO, key = "#orelUser.phoneNo",
+            condition = "#orelUser.phoneNo != null")
     public OrelUser save(OrelUser orelUser) {
 
-        return orelUserRepository.save(orelUser);
+        boolean insert = orelUser.getId() == null;
+        OrelUser saved = orelUserRepository.save(orelUser);
+        if (insert) {
+            phoneNoBloomFilter.put(saved.getPhoneNo());
+        }
+        phoneNoNegativeCache.invalidate(orelUser.getPhoneNo());
+        return saved;
     }
 
     /**
-     * Finds a OrelUser entity by its phone number.
+     * Finds a OrelUser entity by its phone number. Not cached: the entity is managed and mutable,
+     * and callers change it to save it, so every call loads a fresh copy. Reads that only need the
+     * values go through the cached {@link #findDtoByPhoneNo(String)}.
      *
      * @param phoneNo The phone number of the OrelUser to find.
      * @return The OrelUser entity if found, or null if not found.
@@ -83,13 +140,213 @@ public class OrelUserTemplateImpl implements OrelUserTemplate {
     }
 
     /**
-     * Delete user
+     * Finds a user by its phone number as a DTO, without loading entities. Found users are cached,
+     * misses and numbers changed too recently for every replica to have seen it are not.
+     *
+     * @param phoneNo The phone number of the OrelUser to find.
+     * @return The OrelUserDto if found, or null if not found.
+     */
+    @Override
+    @Cacheable(cacheNames = CacheConfiguration.ORELUSER_DTO_BY_PHONE_NO,
+            unless = "#result == null || #root.target.isRecentlyChanged(#phoneNo)")
+    public OrelUserDto findDtoByPhoneNo(String phoneNo) {
+
+        return orelUserRepository.findDtoByPhoneNo(phoneNo).orElse(null);
+    }
+
+    /**
+     * Check whether the number was stored or deleted too recently for every replica to have seen
+     * it, so a lookup of it must not be cached.
+     *
+     * @param phoneNo The phone number.
+     * @return true if lookups of the number are not cached.
+     */
+    public boolean isRecentlyChanged(String phoneNo) {
+
+        return phoneNoNegativeCache.isRecentlyChanged(phoneNo);
+    }
+
+    /**
+     * Find which of the given phone numbers are already stored, with one IN query.
+     *
+     * @param phoneNos - Phone numbers to check.
+     * @return Stored phone numbers, empty when none are given.
+     */
+    @Override
+    public Set<String> findExistingPhoneNos(Collection<String> phoneNos) {
+
+        if (phoneNos.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(orelUserRepository.findPhoneNosIn(phoneNos));
+    }
+
+    /**
+     * Find users with their departments by phone number, with one IN query per
+     * {@link SystemConstants#LOOKUP_IN_BATCH_SIZE} numbers. Read-only even when called outside
+     * a transaction, like from the task executor of OrelUserService.lookupOrelUsers.
+     *
+     * @param phoneNos - Phone numbers to find.
+     * @return Users found, in no particular order.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<OrelUser> findByPhoneNos(Collection<String> phoneNos) {
+
+        return findInBatches(phoneNos, orelUserRepository::findByPhoneNoIn);
+    }
+
+    /**
+     * Find users with their departments by id, with one IN query per
+     * {@link SystemConstants#LOOKUP_IN_BATCH_SIZE} ids.
+     *
+     * @param ids - Ids to find.
+     * @return Users found, in no particular order.
+     */
+    @Override
+    public List<OrelUser> findByIds(Collection<Long> ids) {
+
+        return findInBatches(ids, orelUserRepository::findByIdIn);
+    }
+
+    private static <K> List<OrelUser> findInBatches(Collection<K> keys, Function<List<K>, List<OrelUser>> query) {
+
+        List<K> keyList = new ArrayList<>(keys);
+        List<OrelUser> orelUsers = new ArrayList<>(keyList.size());
+        for (int from = 0; from < keyList.size(); from += SystemConstants.LOOKUP_IN_BATCH_SIZE) {
+            orelUsers.addAll(query.apply(keyList.subList(from,
+                    Math.min(from + SystemConstants.LOOKUP_IN_BATCH_SIZE, keyList.size()))));
+        }
+        return orelUsers;
+    }
+
+    /**
+     * Find a user by id as a DTO, without loading entities.
+     *
+     * @param id - Long id
+     * @return The OrelUserDto if found, or null if not found.
+     */
+    @Override
+    public OrelUserDto findDtoById(Long id) {
+
+        return orelUserRepository.findDtoById(id).orElse(null);
+    }
+
+    /**
+     * Get one page of users with department details as DTOs, without loading entities.
+     *
+     * @param pageable - Page number, size and sort.
+     * @return Page of OrelUserDto.
+     */
+    @Override
+    public Page<OrelUserDto> findAllDtos(Pageable pageable) {
+
+        return orelUserRepository.findAllDtos(pageable);
+    }
+
+    /**
+     * Get the users following an id, as an index seek on the primary key. Unlike an offset page
+     * the cost does not grow with the depth of the page.
+     *
+     * @param afterId - Users with a greater id are returned.
+     * @param limit   - Maximum number of users.
+     * @return Users ordered by id.
+     */
+    @Override
+    public List<OrelUser> findAfter(Long afterId, int limit) {
+
+        return orelUserRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.ofSize(limit));
+    }
+
+    /**
+     * Pass every user to the consumer in id order, reading rows through a database cursor.
+     * Each user is detached once consumed so the persistence context stays small.
+     *
+     * @param consumer - Called once per user.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<OrelUser> consumer) {
+
+        try (Stream<OrelUser> orelUsers = orelUserRepository.streamAllByOrderByIdAsc()) {
+            orelUsers.forEach(orelUser -> {
+                consumer.accept(orelUser);
+                if (orelUser.getDepartment() != null) {
+                    entityManager.detach(orelUser.getDepartment());
+                }
+                entityManager.detach(orelUser);
+            });
+        }
+    }
+
+    /**
+     * Pass every stored phone number to the consumer, reading only the phone_no column.
+     *
+     * @param consumer - Called once per user.
+     */
+    @Override
+    public void forEachPhoneNo(Consumer<String> consumer) {
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("SELECT phone_no FROM orel_user");
+            statement.setFetchSize(1000);
+            return statement;
+        }, (RowCallbackHandler) resultSet -> consumer.accept(resultSet.getString(1)));
+    }
+
+    /**
+     * Pass every user joined with its department to the handler, ordered by id, reading from a
+     * forward-only cursor so rows are not held in memory. Columns in order: phone_no, language,
+     * first_name, middle_name, email, dep_name, dep_contact_no, dep_email, id, created_at,
+     * updated_at.
+     *
+     * @param handler - Called once per row.
+     */
+    @Override
+    public void forEachWithDepartment(RowCallbackHandler handler) {
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT u.phone_no, u.language, u.first_name, u.middle_name, u.email, "
+                            + "d.dep_name, d.dep_contact_no, d.dep_email, u.id, u.created_at, u.updated_at "
+                            + "FROM orel_user u LEFT JOIN department d ON d.user_id = u.id ORDER BY u.id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(1000);
+            return statement;
+        }, handler);
+    }
+
+    /**
+     * Get users created in a time window, as a primary key range scan over the Snowflake ids.
+     * Ids are buffered per thread for up to the generator's max block age, so creation times are
+     * as precise as that.
+     *
+     * @param from    - Start of the window, inclusive.
+     * @param to      - End of the window, exclusive.
+     * @param afterId - Users with a greater id are returned, -1 for the start of the window.
+     * @param limit   - Maximum number of users.
+     * @return Users ordered by id.
+     */
+    @Override
+    public List<OrelUser> findCreatedBetween(Instant from, Instant to, Long afterId, int limit) {
+
+        return orelUserRepository.findByIdGreaterThanEqualAndIdLessThanOrderByIdAsc(
+                Math.max(Snowflake.firstIdAt(from), afterId + 1), Snowflake.firstIdAt(to),
+                PageRequest.ofSize(limit));
+    }
+
+    /**
+     * Delete user. The cached DTO of its phone number is evicted once the delete is committed.
      *
      * @param orelUser- contains details of the user
      */
     @Override
+    @CacheEvict(cacheNames = CacheConfiguration.ORELUSER_DTO_BY_PHONE_NO, key = "#orelUser.phoneNo",
+            condition = "#orelUser.phoneNo != null")
     public void delete(OrelUser orelUser) {
 
         orelUserRepository.delete(orelUser);
+        phoneNoBloomFilter.remove(orelUser.getPhoneNo());
+        phoneNoNegativeCache.invalidate(orelUser.getPhoneNo());
     }
 }
@@ -0,0 +1,104 @@
+package com.orelit.springcore.persistence.repository.impl;
+
+import com.orelit.springcore.persistence.cache.PhoneNoBloomFilter;
+import com.orelit.springcore.persistence.cache.PhoneNoNegativeCache;
+import com.orelit.springcore.persistence.entity.Department;
+import com.orelit.springcore.persistence.entity.OrelUser;
+import com.orelit.springcore.persistence.repository.OrelUserDepartmentTemplate;
+import com.orelit.springcore.persistence.repository.OrelUserTemplate;
+import com.orelit.springcore.persistence.sharding.PhoneNoShardDirectory;
+import com.orelit.springcore.persistence.sharding.Shards;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Implementation of the OrelUserDepartmentTemplate interface over the shards of
+ * ShardingConfiguration, replacing OrelUserDepartmentImpl when application.sharding.enabled is
+ * set. A department is stored on the shard of its user.
+ */
+@Service
+@ConditionalOnProperty(prefix = "application.sharding", name = "enabled", havingValue = "true")
+public class ShardedOrelUserDepartmentImpl implements OrelUserDepartmentTemplate {
+
+    private final Shards shards;
+
+    private final PhoneNoShardDirectory phoneNoShardDirectory;
+
+    private final OrelUserTemplate orelUserTemplate;
+
+    private final PhoneNoBloomFilter phoneNoBloomFilter;
+
+    private final PhoneNoNegativeCache phoneNoNegativeCache;
+
+    public ShardedOrelUserDepartmentImpl(Shards shards,
+                                         PhoneNoShardDirectory phoneNoShardDirectory,
+                                         OrelUserTemplate orelUserTemplate,
+                                         PhoneNoBloomFilter phoneNoBloomFilter,
+                                         PhoneNoNegativeCache phoneNoNegativeCache) {
+
+        this.shards = shards;
+        this.phoneNoShardDirectory = phoneNoShardDirectory;
+        this.orelUserTemplate = orelUserTemplate;
+        this.phoneNoBloomFilter = phoneNoBloomFilter;
+        this.phoneNoNegativeCache = phoneNoNegativeCache;
+    }
+
+    /**
+     * Save orel user department data with its new user.
+     *
+     * @param department - Contains department data.
+     */
+    @Override
+    public void saveOrelUserDepartmentDetails(Department department) {
+
+        saveAllOrelUserDepartmentDetails(List.of(department));
+    }
+
+    /**
+     * Save department data of many new users. Users are grouped by shard and each shard is
+     * written in one transaction; when a shard fails, the users already written to other shards
+     * are deleted again, so the call still saves all or nothing.
+     *
+     * @param departments - Departments, each with its user.
+     */
+    @Override
+    public void saveAllOrelUserDepartmentDetails(List<Department> departments) {
+
+        if (departments.stream().anyMatch(department -> department.getOrelUser() == null)) {
+            throw new IllegalArgumentException("A department is stored on the shard of its user");
+        }
+        List<OrelUser> orelUsers = departments.stream().map(Department::getOrelUser).toList();
+        ShardedOrelUserRows.insertAll(shards, phoneNoShardDirectory, orelUsers, departments);
+        orelUsers.forEach(orelUser -> {
+            phoneNoBloomFilter.put(orelUser.getPhoneNo());
+            phoneNoNegativeCache.invalidate(orelUser.getPhoneNo());
+        });
+    }
+
+    /**
+     * Delete department data from the shard of its user.
+     *
+     * @param department -Contains department data.
+     */
+    @Override
+    public void delete(Department department) {
+
+        shards.forId(department.getOrelUser().getId()).getJdbcTemplate()
+                .update("DELETE FROM department WHERE id = ?", department.getId());
+    }
+
+    /**
+     * Get saved department data to delete
+     *
+     * @param userId - Find department which related to the founded user by phone no.
+     * @return The department with its user, or null if the user has none.
+     */
+    @Override
+    public Department findByUserId(Long userId) {
+
+        List<OrelUser> found = orelUserTemplate.findByIds(List.of(userId));
+        return found.isEmpty() ? null : found.get(0).getDepartment();
+    }
+}
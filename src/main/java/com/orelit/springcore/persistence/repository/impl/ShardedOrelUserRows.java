@@ -0,0 +1,218 @@
+package com.orelit.springcore.persistence.repository.impl;
+
+import com.orelit.springcore.common.dto.OrelUserDto;
+import com.orelit.springcore.persistence.entity.Department;
+import com.orelit.springcore.persistence.entity.OrelUser;
+import com.orelit.springcore.persistence.sharding.PhoneNoShardDirectory;
+import com.orelit.springcore.persistence.sharding.Shards;
+import com.orelit.springcore.persistence.snowflake.Snowflake;
+import com.orelit.springcore.persistence.snowflake.SnowflakeIdGenerator;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SQL and row mapping shared by ShardedOrelUserTemplateImpl and ShardedOrelUserDepartmentImpl.
+ * The tables on each shard have the same columns as the ones Hibernate creates on the
+ * spring.datasource database.
+ */
+final class ShardedOrelUserRows {
+
+    static final String SELECT_USER = "SELECT u.id, u.created_at, u.updated_at, u.created_by, u.phone_no, "
+            + "u.language, u.first_name, u.middle_name, u.email, "
+            + "d.id AS dep_id, d.dep_name, d.dep_contact_no, d.dep_email "
+            + "FROM orel_user u LEFT JOIN department d ON d.user_id = u.id ";
+
+    private ShardedOrelUserRows() {
+    }
+
+    /**
+     * Create the user and department tables on every shard if they do not exist yet.
+     *
+     * @param shards - Shards.
+     */
+    static void createTablesIfMissing(Shards shards) {
+
+        for (Shards.Shard shard : shards.all()) {
+            shard.getJdbcTemplate().execute("CREATE TABLE IF NOT EXISTS orel_user ("
+                    + "id BIGINT NOT NULL PRIMARY KEY, created_at DATE, updated_at DATE, created_by VARCHAR(255), "
+                    + "phone_no VARCHAR(255) UNIQUE, language VARCHAR(255) NOT NULL, first_name VARCHAR(255), "
+                    + "middle_name VARCHAR(255), email VARCHAR(255))");
+            shard.getJdbcTemplate().execute("CREATE TABLE IF NOT EXISTS department ("
+                    + "id BIGINT NOT NULL PRIMARY KEY, dep_name VARCHAR(255), dep_contact_no VARCHAR(255), "
+                    + "dep_email VARCHAR(255), user_id BIGINT UNIQUE, "
+                    + "FOREIGN KEY (user_id) REFERENCES orel_user (id))");
+        }
+    }
+
+    /**
+     * Insert new users with their departments. Ids that are not set yet are taken from the
+     * Snowflake. Phone numbers are claimed in the shard directory first, then users and
+     * departments are inserted with one transaction per shard. When a shard fails, the users
+     * inserted on other shards and the claimed phone numbers are removed again.
+     *
+     * @param shards      - Shards.
+     * @param directory   - Phone number directory.
+     * @param orelUsers   - New users.
+     * @param departments - Departments of the new users, each with its user set.
+     * @throws DuplicateKeyException if a phone number is stored or given twice.
+     */
+    static void insertAll(Shards shards, PhoneNoShardDirectory directory,
+                          List<OrelUser> orelUsers, List<Department> departments) {
+
+        Snowflake snowflake = SnowflakeIdGenerator.getSnowflake();
+        Map<String, Long> phoneNos = new LinkedHashMap<>();
+        Map<Integer, List<OrelUser>> usersByShard = new LinkedHashMap<>();
+        for (OrelUser orelUser : orelUsers) {
+            if (orelUser.getId() == null) {
+                orelUser.setId(snowflake.nextId());
+            }
+            if (orelUser.getPhoneNo() != null
+                    && phoneNos.put(orelUser.getPhoneNo(), orelUser.getId()) != null) {
+                throw new DuplicateKeyException("Phone no " + orelUser.getPhoneNo() + " is given twice");
+            }
+            usersByShard.computeIfAbsent(shards.getRouter().shardForId(orelUser.getId()),
+                    index -> new ArrayList<>()).add(orelUser);
+        }
+        Map<Integer, List<Department>> departmentsByShard = new LinkedHashMap<>();
+        for (Department department : departments) {
+            if (department.getOrelUser() == null) {
+                throw new IllegalArgumentException("A department is stored on the shard of its user");
+            }
+            if (department.getId() == null) {
+                department.setId(snowflake.nextId());
+            }
+            departmentsByShard.computeIfAbsent(shards.getRouter().shardForId(department.getOrelUser().getId()),
+                    index -> new ArrayList<>()).add(department);
+        }
+
+        directory.insertAll(phoneNos);
+        List<Integer> inserted = new ArrayList<>();
+        try {
+            for (Map.Entry<Integer, List<OrelUser>> shardUsers : usersByShard.entrySet()) {
+                Shards.Shard shard = shards.get(shardUsers.getKey());
+                shard.inTransaction(status -> {
+                    insertUsers(shard.getJdbcTemplate(), shardUsers.getValue());
+                    insertDepartments(shard.getJdbcTemplate(),
+                            departmentsByShard.getOrDefault(shardUsers.getKey(), List.of()));
+                    return null;
+                });
+                inserted.add(shardUsers.getKey());
+            }
+        } catch (RuntimeException ex) {
+            try {
+                for (Integer index : inserted) {
+                    deleteUsers(shards.get(index), usersByShard.get(index).stream().map(OrelUser::getId).toList());
+                }
+                phoneNos.forEach(directory::delete);
+            } catch (RuntimeException undo) {
+                ex.addSuppressed(undo);
+            }
+            throw ex;
+        }
+    }
+
+    private static void insertUsers(JdbcTemplate jdbcTemplate, List<OrelUser> orelUsers) {
+
+        jdbcTemplate.batchUpdate("INSERT INTO orel_user (id, created_at, updated_at, created_by, phone_no, "
+                        + "language, first_name, middle_name, email) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                orelUsers.stream().map(orelUser -> new Object[]{orelUser.getId(),
+                        date(orelUser.getCreatedAt()), date(orelUser.getUpdatedAt()), orelUser.getCreatedBy(),
+                        orelUser.getPhoneNo(), orelUser.getLanguage(), orelUser.getFirstName(),
+                        orelUser.getMiddleName(), orelUser.getEmail()}).toList());
+    }
+
+    static void insertDepartments(JdbcTemplate jdbcTemplate, List<Department> departments) {
+
+        if (departments.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO department (id, dep_name, dep_contact_no, dep_email, user_id) "
+                        + "VALUES (?, ?, ?, ?, ?)",
+                departments.stream().map(department -> new Object[]{department.getId(),
+                        department.getDep_name(), department.getDep_contact_no(), department.getDep_email(),
+                        department.getOrelUser().getId()}).toList());
+    }
+
+    /**
+     * Delete users and their departments from a shard in one transaction.
+     *
+     * @param shard - Shard of the users.
+     * @param ids   - User ids.
+     */
+    static void deleteUsers(Shards.Shard shard, List<Long> ids) {
+
+        List<Object[]> rows = ids.stream().map(id -> new Object[]{id}).toList();
+        shard.inTransaction(status -> {
+            shard.getJdbcTemplate().batchUpdate("DELETE FROM department WHERE user_id = ?", rows);
+            return shard.getJdbcTemplate().batchUpdate("DELETE FROM orel_user WHERE id = ?", rows);
+        });
+    }
+
+    private static Date date(LocalDate date) {
+
+        return date != null ? Date.valueOf(date) : null;
+    }
+
+    /**
+     * Map a row of {@link #SELECT_USER} to a user with its department.
+     *
+     * @param resultSet - Result set on the row.
+     * @param rowNum    - Row number.
+     * @return The user.
+     * @throws SQLException if a column cannot be read.
+     */
+    static OrelUser toOrelUser(ResultSet resultSet, int rowNum) throws SQLException {
+
+        OrelUser orelUser = new OrelUser(resultSet.getLong("id"));
+        orelUser.setCreatedAt(resultSet.getObject("created_at", LocalDate.class));
+        orelUser.setUpdatedAt(resultSet.getObject("updated_at", LocalDate.class));
+        orelUser.setCreatedBy(resultSet.getString("created_by"));
+        orelUser.setPhoneNo(resultSet.getString("phone_no"));
+        orelUser.setLanguage(resultSet.getString("language"));
+        orelUser.setFirstName(resultSet.getString("first_name"));
+        orelUser.setMiddleName(resultSet.getString("middle_name"));
+        orelUser.setEmail(resultSet.getString("email"));
+        long departmentId = resultSet.getLong("dep_id");
+        if (!resultSet.wasNull()) {
+            Department department = new Department();
+            department.setId(departmentId);
+            department.setDep_name(resultSet.getString("dep_name"));
+            department.setDep_contact_no(resultSet.getString("dep_contact_no"));
+            department.setDep_email(resultSet.getString("dep_email"));
+            department.setOrelUser(orelUser);
+            orelUser.setDepartment(department);
+        }
+        return orelUser;
+    }
+
+    /**
+     * Map a row of {@link #SELECT_USER} to a DTO.
+     *
+     * @param resultSet - Result set on the row.
+     * @param rowNum    - Row number.
+     * @return The OrelUserDto.
+     * @throws SQLException if a column cannot be read.
+     */
+    static OrelUserDto toDto(ResultSet resultSet, int rowNum) throws SQLException {
+
+        return OrelUserDto.builder()
+                .phoneNo(resultSet.getString("phone_no"))
+                .language(resultSet.getString("language"))
+                .firstName(resultSet.getString("first_name"))
+                .middleName(resultSet.getString("middle_name"))
+                .email(resultSet.getString("email"))
+                .dep_name(resultSet.getString("dep_name"))
+                .dep_contact_no(resultSet.getString("dep_contact_no"))
+                .dep_email(resultSet.getString("dep_email"))
+                .build();
+    }
+}
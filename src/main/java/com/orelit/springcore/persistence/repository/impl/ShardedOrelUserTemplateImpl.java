@@ -0,0 +1,539 @@
+package com.orelit.springcore.persistence.repository.impl;
+
+
+import com.orelit.springcore.common.constant.SystemConstants;
+import com.orelit.springcore.common.dto.OrelUserDto;
+import com.orelit.springcore.persistence.cache.CacheConfiguration;
+import com.orelit.springcore.persistence.cache.PhoneNoBloomFilter;
+import com.orelit.springcore.persistence.cache.PhoneNoNegativeCache;
+import com.orelit.springcore.persistence.entity.Department;
+import com.orelit.springcore.persistence.entity.OrelUser;
+import com.orelit.springcore.persistence.repository.OrelUserTemplate;
+import com.orelit.springcore.persistence.sharding.PhoneNoShardDirectory;
+import com.orelit.springcore.persistence.sharding.Shards;
+import com.orelit.springcore.persistence.snowflake.Snowflake;
+import com.orelit.springcore.persistence.snowflake.SnowflakeIdGenerator;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+
+/**
+ * Implementation of the OrelUserTemplate interface over the shards of ShardingConfiguration,
+ * replacing OrelUserTemplateImpl when application.sharding.enabled is set. A user and its
+ * department live on the shard of the user's Snowflake id, so id lookups go to one shard, and
+ * phone number lookups read the user id from the PhoneNoShardDirectory first. Queries over all
+ * users run on every shard at the same time and are merged by id.
+ */
+@Service
+@ConditionalOnProperty(prefix = "application.sharding", name = "enabled", havingValue = "true")
+public class ShardedOrelUserTemplateImpl implements OrelUserTemplate, InitializingBean {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final Shards shards;
+
+    private final PhoneNoShardDirectory phoneNoShardDirectory;
+
+    private final PhoneNoBloomFilter phoneNoBloomFilter;
+
+    private final PhoneNoNegativeCache phoneNoNegativeCache;
+
+    public ShardedOrelUserTemplateImpl(Shards shards,
+                                       PhoneNoShardDirectory phoneNoShardDirectory,
+                                       PhoneNoBloomFilter phoneNoBloomFilter,
+                                       PhoneNoNegativeCache phoneNoNegativeCache) {
+
+        this.shards = shards;
+        this.phoneNoShardDirectory = phoneNoShardDirectory;
+        this.phoneNoBloomFilter = phoneNoBloomFilter;
+        this.phoneNoNegativeCache = phoneNoNegativeCache;
+    }
+
+    /**
+     * Create the user and department tables on every shard.
+     */
+    @Override
+    public void afterPropertiesSet() {
+
+        ShardedOrelUserRows.createTablesIfMissing(shards);
+    }
+
+    /**
+     * Saves a orelUser. A user without id is inserted with its department; an existing user is
+     * updated on its shard in one transaction, with its department inserted or updated. The phone
+     * number of an existing user is not changed, so only an inserted user is added to the phone
+     * number filter, once the insert succeeded. The cached DTO of its phone number is evicted once
+     * the surrounding transaction commits.
+     *
+     * @param orelUser The orelUser to be saved.
+     * @return The saved orelUser.
+     */
+    @Override
+    @CacheEvict(cacheNames = CacheConfiguration.ORELUSER_DTO_BY_PHONE_NO, key = "#orelUser.phoneNo",
+            condition = "#orelUser.phoneNo != null")
+    public OrelUser save(OrelUser orelUser) {
+
+        Department department = orelUser.getDepartment();
+        if (department != null && department.getOrelUser() == null) {
+            department.setOrelUser(orelUser);
+        }
+        if (orelUser.getId() == null) {
+            ShardedOrelUserRows.insertAll(shards, phoneNoShardDirectory, List.of(orelUser),
+                    department != null ? List.of(department) : List.of());
+            phoneNoBloomFilter.put(orelUser.getPhoneNo());
+        } else {
+            Shards.Shard shard = shards.forId(orelUser.getId());
+            shard.inTransaction(status -> {
+                shard.getJdbcTemplate().update("UPDATE orel_user SET updated_at = ?, language = ?, first_name = ?, "
+                                + "middle_name = ?, email = ? WHERE id = ?",
+                        orelUser.getUpdatedAt(), orelUser.getLanguage(), orelUser.getFirstName(),
+                        orelUser.getMiddleName(), orelUser.getEmail(), orelUser.getId());
+                if (department == null) {
+                    return null;
+                }
+                if (department.getId() == null) {
+                    department.setId(SnowflakeIdGenerator.getSnowflake().nextId());
+                    ShardedOrelUserRows.insertDepartments(shard.getJdbcTemplate(), List.of(department));
+                } else {
+                    shard.getJdbcTemplate().update("UPDATE department SET dep_name = ?, dep_contact_no = ?, "
+                                    + "dep_email = ? WHERE id = ?",
+                            department.getDep_name(), department.getDep_contact_no(), department.getDep_email(),
+                            department.getId());
+                }
+                return null;
+            });
+        }
+        phoneNoNegativeCache.invalidate(orelUser.getPhoneNo());
+        return orelUser;
+    }
+
+    /**
+     * Finds a OrelUser by its phone number, on the shard the directory points to. Not cached,
+     * callers change the entity to save it; see {@link #findDtoByPhoneNo(String)}.
+     *
+     * @param phoneNo The phone number of the OrelUser to find.
+     * @return The OrelUser if found, or null if not found.
+     */
+    @Override
+    public OrelUser findByPhoneNo(String phoneNo) {
+
+        return findOneByPhoneNo(phoneNo, ShardedOrelUserRows::toOrelUser);
+    }
+
+    /**
+     * Finds a user by its phone number as a DTO. Found users are cached, misses and numbers
+     * changed too recently are not.
+     *
+     * @param phoneNo The phone number of the OrelUser to find.
+     * @return The OrelUserDto if found, or null if not found.
+     */
+    @Override
+    @Cacheable(cacheNames = CacheConfiguration.ORELUSER_DTO_BY_PHONE_NO,
+            unless = "#result == null || #root.target.isRecentlyChanged(#phoneNo)")
+    public OrelUserDto findDtoByPhoneNo(String phoneNo) {
+
+        return findOneByPhoneNo(phoneNo, ShardedOrelUserRows::toDto);
+    }
+
+    /**
+     * Look the user id up in the directory and read the user from its shard. A remembered
+     * directory entry whose user is gone is read again once.
+     */
+    private <T> T findOneByPhoneNo(String phoneNo, RowMapper<T> rowMapper) {
+
+        Long id = phoneNoShardDirectory.find(phoneNo);
+        T found = id != null ? findOne(id, phoneNo, rowMapper) : null;
+        if (id != null && found == null) {
+            Long reloaded = phoneNoShardDirectory.reload(phoneNo);
+            found = reloaded != null && !reloaded.equals(id) ? findOne(reloaded, phoneNo, rowMapper) : null;
+        }
+        return found;
+    }
+
+    private <T> T findOne(long id, String phoneNo, RowMapper<T> rowMapper) {
+
+        List<T> found = shards.forId(id).getJdbcTemplate()
+                .query(ShardedOrelUserRows.SELECT_USER + "WHERE u.id = ? AND u.phone_no = ?", rowMapper, id, phoneNo);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * Check whether the number was stored or deleted too recently for its lookups to be cached.
+     *
+     * @param phoneNo The phone number.
+     * @return true if lookups of the number are not cached.
+     */
+    public boolean isRecentlyChanged(String phoneNo) {
+
+        return phoneNoNegativeCache.isRecentlyChanged(phoneNo);
+    }
+
+    /**
+     * Find By user ID(Long), on the user's shard.
+     *
+     * @param id - Long id
+     * @return The OrelUser.
+     * @throws NoSuchElementException if there is no user with the id.
+     */
+    @Override
+    public OrelUser findById(Long id) {
+
+        List<OrelUser> found = shards.forId(id).getJdbcTemplate()
+                .query(ShardedOrelUserRows.SELECT_USER + "WHERE u.id = ?", ShardedOrelUserRows::toOrelUser, id);
+        if (found.isEmpty()) {
+            throw new NoSuchElementException("No value present");
+        }
+        return found.get(0);
+    }
+
+    /**
+     * Find a user by id as a DTO, on the user's shard.
+     *
+     * @param id - Long id
+     * @return The OrelUserDto if found, or null if not found.
+     */
+    @Override
+    public OrelUserDto findDtoById(Long id) {
+
+        List<OrelUserDto> found = shards.forId(id).getJdbcTemplate()
+                .query(ShardedOrelUserRows.SELECT_USER + "WHERE u.id = ?", ShardedOrelUserRows::toDto, id);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * Get all users with department details from every shard, ordered by id.
+     *
+     * @return Users ordered by id.
+     */
+    @Override
+    public List<OrelUser> findAll() {
+
+        return mergeById(shards.scatter(shard -> shard.getJdbcTemplate()
+                .query(ShardedOrelUserRows.SELECT_USER + "ORDER BY u.id", ShardedOrelUserRows::toOrelUser)));
+    }
+
+    /**
+     * Get one page of users with department details as DTOs. Every shard returns its first
+     * offset + size users and the page is cut from the merged lists, so deep pages cost more than
+     * on one database; prefer {@link #findAfter(Long, int)}. Only sorting by id is supported.
+     *
+     * @param pageable - Page number, size and sort.
+     * @return Page of OrelUserDto.
+     * @throws IllegalArgumentException if the page is sorted by anything but id.
+     */
+    @Override
+    public Page<OrelUserDto> findAllDtos(Pageable pageable) {
+
+        Sort.Order order = pageable.getSort().getOrderFor("id");
+        if (pageable.getSort().stream().count() > (order != null ? 1 : 0)) {
+            throw new IllegalArgumentException("Sharded users can only be sorted by id");
+        }
+        boolean descending = order != null && order.isDescending();
+        String sql = ShardedOrelUserRows.SELECT_USER + (descending ? "ORDER BY u.id DESC" : "ORDER BY u.id")
+                + (pageable.isPaged() ? " LIMIT " + (pageable.getOffset() + pageable.getPageSize()) : "");
+        Comparator<OrelUser> byId = Comparator.comparing(OrelUser::getId);
+        List<OrelUser> merged = shards.scatter(shard -> shard.getJdbcTemplate()
+                        .query(sql, ShardedOrelUserRows::toOrelUser)).stream()
+                .flatMap(List::stream)
+                .sorted(descending ? byId.reversed() : byId)
+                .toList();
+        List<OrelUser> page = pageable.isPaged()
+                ? merged.subList((int) Math.min(pageable.getOffset(), merged.size()), merged.size())
+                : merged;
+        if (pageable.isPaged() && page.size() > pageable.getPageSize()) {
+            page = page.subList(0, pageable.getPageSize());
+        }
+        long total = shards.scatter(shard -> shard.getJdbcTemplate()
+                .queryForObject("SELECT COUNT(*) FROM orel_user", Long.class)).stream()
+                .mapToLong(Long::longValue)
+                .sum();
+        return new PageImpl<>(page.stream().map(ShardedOrelUserTemplateImpl::toDto).toList(), pageable, total);
+    }
+
+    private static OrelUserDto toDto(OrelUser orelUser) {
+
+        Department department = orelUser.getDepartment();
+        return OrelUserDto.builder()
+                .phoneNo(orelUser.getPhoneNo())
+                .language(orelUser.getLanguage())
+                .firstName(orelUser.getFirstName())
+                .middleName(orelUser.getMiddleName())
+                .email(orelUser.getEmail())
+                .dep_name(department != null ? department.getDep_name() : null)
+                .dep_contact_no(department != null ? department.getDep_contact_no() : null)
+                .dep_email(department != null ? department.getDep_email() : null)
+                .build();
+    }
+
+    /**
+     * Find which of the given phone numbers are stored, through the directory and one IN query
+     * per shard holding the users.
+     *
+     * @param phoneNos - Phone numbers to check.
+     * @return Stored phone numbers, empty when none are given.
+     */
+    @Override
+    public Set<String> findExistingPhoneNos(Collection<String> phoneNos) {
+
+        return findByPhoneNos(phoneNos).stream().map(OrelUser::getPhoneNo).collect(Collectors.toSet());
+    }
+
+    /**
+     * Find users with their departments by phone number. User ids come from the directory, then
+     * users are read like {@link #findByIds(Collection)}.
+     *
+     * @param phoneNos - Phone numbers to find.
+     * @return Users found, in no particular order.
+     */
+    @Override
+    public List<OrelUser> findByPhoneNos(Collection<String> phoneNos) {
+
+        if (phoneNos.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Long> ids = phoneNoShardDirectory.findAll(phoneNos);
+        List<OrelUser> orelUsers = new ArrayList<>(findByIds(ids.values()).stream()
+                .filter(orelUser -> orelUser.getId().equals(ids.get(orelUser.getPhoneNo())))
+                .toList());
+        Set<String> found = orelUsers.stream().map(OrelUser::getPhoneNo).collect(Collectors.toCollection(HashSet::new));
+        for (Map.Entry<String, Long> entry : ids.entrySet()) {
+            if (!found.contains(entry.getKey())) {
+                Long reloaded = phoneNoShardDirectory.reload(entry.getKey());
+                OrelUser orelUser = reloaded != null && !reloaded.equals(entry.getValue())
+                        ? findOne(reloaded, entry.getKey(), ShardedOrelUserRows::toOrelUser) : null;
+                if (orelUser != null) {
+                    orelUsers.add(orelUser);
+                }
+            }
+        }
+        return orelUsers;
+    }
+
+    /**
+     * Find users with their departments by id, with one IN query per shard and
+     * {@link SystemConstants#LOOKUP_IN_BATCH_SIZE} ids, the shards queried at the same time.
+     *
+     * @param ids - Ids to find.
+     * @return Users found, in no particular order.
+     */
+    @Override
+    public List<OrelUser> findByIds(Collection<Long> ids) {
+
+        Map<Integer, List<Long>> idsByShard = new HashMap<>();
+        ids.stream().distinct().forEach(id -> idsByShard
+                .computeIfAbsent(shards.getRouter().shardForId(id), index -> new ArrayList<>()).add(id));
+        return shards.scatter(idsByShard, (shard, shardIds) -> {
+            List<OrelUser> orelUsers = new ArrayList<>(shardIds.size());
+            for (int from = 0; from < shardIds.size(); from += SystemConstants.LOOKUP_IN_BATCH_SIZE) {
+                orelUsers.addAll(shard.getNamedParameterJdbcTemplate().query(
+                        ShardedOrelUserRows.SELECT_USER + "WHERE u.id IN (:ids)",
+                        Map.of("ids", shardIds.subList(from,
+                                Math.min(from + SystemConstants.LOOKUP_IN_BATCH_SIZE, shardIds.size()))),
+                        ShardedOrelUserRows::toOrelUser));
+            }
+            return orelUsers;
+        }).stream().flatMap(List::stream).toList();
+    }
+
+    /**
+     * Get the users following an id. Every shard seeks its first limit users after the id and
+     * the merged lists are cut to the limit.
+     *
+     * @param afterId - Users with a greater id are returned.
+     * @param limit   - Maximum number of users.
+     * @return Users ordered by id.
+     */
+    @Override
+    public List<OrelUser> findAfter(Long afterId, int limit) {
+
+        List<OrelUser> merged = mergeById(shards.scatter(shard -> shard.getJdbcTemplate()
+                .query(ShardedOrelUserRows.SELECT_USER + "WHERE u.id > ? ORDER BY u.id LIMIT ?",
+                        ShardedOrelUserRows::toOrelUser, afterId, limit)));
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+
+    /**
+     * Pass every user to the consumer in id order. A cursor is open on every shard and the user
+     * with the lowest id among their current rows is passed next, so no shard is held in memory.
+     *
+     * @param consumer - Called once per user.
+     */
+    @Override
+    public void streamAll(Consumer<OrelUser> consumer) {
+
+        mergeCursorsById(ShardedOrelUserRows.SELECT_USER + "ORDER BY u.id",
+                resultSet -> consumer.accept(ShardedOrelUserRows.toOrelUser(resultSet, 0)));
+    }
+
+    /**
+     * Pass every stored phone number to the consumer, one shard after the other, reading only
+     * the phone_no column.
+     *
+     * @param consumer - Called once per user.
+     */
+    @Override
+    public void forEachPhoneNo(Consumer<String> consumer) {
+
+        for (Shards.Shard shard : shards.all()) {
+            shard.getJdbcTemplate().query(connection -> {
+                PreparedStatement statement = connection.prepareStatement("SELECT phone_no FROM orel_user");
+                statement.setFetchSize(FETCH_SIZE);
+                return statement;
+            }, (RowCallbackHandler) resultSet -> consumer.accept(resultSet.getString(1)));
+        }
+    }
+
+    /**
+     * Pass every user joined with its department to the handler, ordered by id, merging a cursor
+     * per shard like {@link #streamAll(Consumer)}. Columns in order: phone_no, language,
+     * first_name, middle_name, email, dep_name, dep_contact_no, dep_email, id, created_at,
+     * updated_at.
+     *
+     * @param handler - Called once per row.
+     */
+    @Override
+    public void forEachWithDepartment(RowCallbackHandler handler) {
+
+        mergeCursorsById("SELECT u.phone_no, u.language, u.first_name, u.middle_name, u.email, "
+                + "d.dep_name, d.dep_contact_no, d.dep_email, u.id, u.created_at, u.updated_at "
+                + "FROM orel_user u LEFT JOIN department d ON d.user_id = u.id ORDER BY u.id", handler);
+    }
+
+    private void mergeCursorsById(String sql, RowCallbackHandler handler) {
+
+        List<Connection> connections = new ArrayList<>();
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(Comparator.comparingLong(Cursor::getId));
+        try {
+            for (Shards.Shard shard : shards.all()) {
+                Connection connection = shard.getDataSource().getConnection();
+                connections.add(connection);
+                PreparedStatement statement = connection.prepareStatement(sql,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(FETCH_SIZE);
+                Cursor cursor = new Cursor(statement.executeQuery());
+                if (cursor.next()) {
+                    cursors.add(cursor);
+                }
+            }
+            while (!cursors.isEmpty()) {
+                Cursor cursor = cursors.poll();
+                handler.processRow(cursor.resultSet);
+                if (cursor.next()) {
+                    cursors.add(cursor);
+                }
+            }
+        } catch (SQLException ex) {
+            DataAccessException translated = shards.get(0).getJdbcTemplate().getExceptionTranslator()
+                    .translate("Merging shards", sql, ex);
+            throw translated != null ? translated : new IllegalStateException(ex);
+        } finally {
+            connections.forEach(JdbcUtils::closeConnection);
+        }
+    }
+
+    /**
+     * Result set of one shard with the id of its current row.
+     */
+    private static final class Cursor {
+
+        private final ResultSet resultSet;
+
+        private long id;
+
+        private Cursor(ResultSet resultSet) {
+
+            this.resultSet = resultSet;
+        }
+
+        private boolean next() throws SQLException {
+
+            if (!resultSet.next()) {
+                return false;
+            }
+            id = resultSet.getLong("id");
+            return true;
+        }
+
+        private long getId() {
+
+            return id;
+        }
+    }
+
+    /**
+     * Get users created in a time window, as a primary key range scan over the Snowflake ids on
+     * every shard.
+     *
+     * @param from    - Start of the window, inclusive.
+     * @param to      - End of the window, exclusive.
+     * @param afterId - Users with a greater id are returned, -1 for the start of the window.
+     * @param limit   - Maximum number of users.
+     * @return Users ordered by id.
+     */
+    @Override
+    public List<OrelUser> findCreatedBetween(Instant from, Instant to, Long afterId, int limit) {
+
+        long fromId = Math.max(Snowflake.firstIdAt(from), afterId + 1);
+        long toId = Snowflake.firstIdAt(to);
+        List<OrelUser> merged = mergeById(shards.scatter(shard -> shard.getJdbcTemplate()
+                .query(ShardedOrelUserRows.SELECT_USER + "WHERE u.id >= ? AND u.id < ? ORDER BY u.id LIMIT ?",
+                        ShardedOrelUserRows::toOrelUser, fromId, toId, limit)));
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+
+    private static List<OrelUser> mergeById(List<List<OrelUser>> perShard) {
+
+        return perShard.stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(OrelUser::getId))
+                .toList();
+    }
+
+    /**
+     * Delete user with its department from its shard, then its directory entry. The cached DTO of
+     * its phone number is evicted once the surrounding transaction commits.
+     *
+     * @param orelUser- contains details of the user
+     */
+    @Override
+    @CacheEvict(cacheNames = CacheConfiguration.ORELUSER_DTO_BY_PHONE_NO, key = "#orelUser.phoneNo",
+            condition = "#orelUser.phoneNo != null")
+    public void delete(OrelUser orelUser) {
+
+        ShardedOrelUserRows.deleteUsers(shards.forId(orelUser.getId()), List.of(orelUser.getId()));
+        if (orelUser.getPhoneNo() != null) {
+            phoneNoShardDirectory.delete(orelUser.getPhoneNo(), orelUser.getId());
+        }
+        phoneNoBloomFilter.remove(orelUser.getPhoneNo());
+        phoneNoNegativeCache.invalidate(orelUser.getPhoneNo());
+    }
+}
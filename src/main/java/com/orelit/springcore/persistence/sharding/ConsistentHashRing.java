@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Consistent hash ring over shards. Every shard owns a number of points on a 64-bit ring, placed
+ * by hashing its name, and a key belongs to the shard owning the first point at or after the
+ * key's hash. Adding a shard only takes over the keys of the points it lands in front of, about
+ * one in n of the keys.
+ */
+public class ConsistentHashRing {
+
+  private final long[] points;
+
+  private final int[] owners;
+
+  /**
+   * Build the ring.
+   *
+   * @param shards        Shard indexes on this ring.
+   * @param names         Shard names by index, the points of a shard depend only on its name.
+   * @param virtualNodes  Points per shard.
+   */
+  public ConsistentHashRing(List<Integer> shards, List<String> names, int virtualNodes) {
+    if (shards.isEmpty() || virtualNodes < 1) {
+      throw new IllegalArgumentException("A ring needs at least one shard and one point per shard");
+    }
+    long[][] entries = new long[shards.size() * virtualNodes][];
+    int n = 0;
+    for (int shard : shards) {
+      for (int v = 0; v < virtualNodes; v++) {
+        entries[n++] = new long[]{hash(names.get(shard) + "#" + v), shard};
+      }
+    }
+    Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+    this.points = new long[entries.length];
+    this.owners = new int[entries.length];
+    for (int i = 0; i < entries.length; i++) {
+      points[i] = entries[i][0];
+      owners[i] = (int) entries[i][1];
+    }
+  }
+
+  /**
+   * Find the shard owning a hash.
+   *
+   * @param hash Hash of the key, see {@link #hash(String)} and {@link #mix(long)}.
+   * @return Shard index.
+   */
+  public int shardFor(long hash) {
+    int i = Arrays.binarySearch(points, hash);
+    if (i < 0) {
+      i = -i - 1;
+    }
+    return owners[i == points.length ? 0 : i];
+  }
+
+  /**
+   * Hash a string, FNV-1a over its UTF-8 bytes followed by {@link #mix(long)}.
+   *
+   * @param key Key
+   * @return 64-bit hash.
+   */
+  public static long hash(String key) {
+    long h = 0xcbf29ce484222325L;
+    for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+      h ^= b & 0xff;
+      h *= 0x100000001b3L;
+    }
+    return mix(h);
+  }
+
+  /**
+   * Spread the bits of a long over the whole range, the MurmurHash3 finalizer.
+   *
+   * @param key Key
+   * @return 64-bit hash.
+   */
+  public static long mix(long key) {
+    long h = key;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.sharding;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.orelit.springcore.common.constant.SystemConstants;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Directory from phone number to user id, the key the user's shard is derived from. Entries are
+ * spread over the shards by a consistent hash of the phone number, see {@link ShardRouter}. New
+ * entries go to the shard of the newest generation, where the phone_no primary key keeps them
+ * unique; entries added before a shard was added stay on the shard of their generation, so
+ * {@link #insertAll(Map)} also checks the older generations before it commits.
+ *
+ * <p>Entries never change while they exist, so found entries are remembered in memory. A
+ * remembered entry can outlive its user when another instance deletes it; callers that do not
+ * find the user on its shard read the entry again with {@link #reload(String)}.
+ */
+public class PhoneNoShardDirectory {
+
+  private final Shards shards;
+
+  private final Cache<String, Long> userIds;
+
+  public PhoneNoShardDirectory(Shards shards, long cacheSize) {
+    this.shards = shards;
+    this.userIds = Caffeine.newBuilder().maximumSize(cacheSize).build();
+  }
+
+  /**
+   * Create the directory table on every shard if it does not exist yet.
+   */
+  public void createTableIfMissing() {
+    for (Shards.Shard shard : shards.all()) {
+      shard.getJdbcTemplate().execute("create table if not exists orel_user_phone_directory ("
+          + "phone_no varchar(255) not null primary key, "
+          + "user_id bigint not null)");
+    }
+  }
+
+  /**
+   * Find the user id of a phone number, from memory if it was found before.
+   *
+   * @param phoneNo Phone number.
+   * @return User id, null if the phone number is not stored.
+   */
+  public Long find(String phoneNo) {
+    Long userId = userIds.getIfPresent(phoneNo);
+    return userId != null ? userId : reload(phoneNo);
+  }
+
+  /**
+   * Read the entry of a phone number from the shards again.
+   *
+   * @param phoneNo Phone number.
+   * @return User id, null if the phone number is not stored.
+   */
+  public Long reload(String phoneNo) {
+    userIds.invalidate(phoneNo);
+    for (int index : shards.getRouter().directoryShardsForPhoneNo(phoneNo)) {
+      List<Long> found = shards.get(index).getJdbcTemplate().queryForList(
+          "select user_id from orel_user_phone_directory where phone_no = ?", Long.class, phoneNo);
+      if (!found.isEmpty()) {
+        userIds.put(phoneNo, found.get(0));
+        return found.get(0);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Find the user ids of many phone numbers, with one IN query per shard and
+   * {@link SystemConstants#LOOKUP_IN_BATCH_SIZE} numbers.
+   *
+   * @param phoneNos Phone numbers.
+   * @return User id by phone number, for the stored phone numbers only.
+   */
+  public Map<String, Long> findAll(Collection<String> phoneNos) {
+    Map<String, Long> found = new HashMap<>(userIds.getAllPresent(phoneNos));
+    List<String> remaining = phoneNos.stream().filter(phoneNo -> !found.containsKey(phoneNo))
+        .distinct().toList();
+    for (int generation = 0; !remaining.isEmpty(); generation++) {
+      Map<Integer, List<String>> byShard = new HashMap<>();
+      for (String phoneNo : remaining) {
+        List<Integer> candidates = shards.getRouter().directoryShardsForPhoneNo(phoneNo);
+        if (generation < candidates.size()) {
+          byShard.computeIfAbsent(candidates.get(generation), index -> new ArrayList<>()).add(phoneNo);
+        }
+      }
+      if (byShard.isEmpty()) {
+        break;
+      }
+      for (Map<String, Long> entries : shards.scatter(byShard, PhoneNoShardDirectory::findIn)) {
+        found.putAll(entries);
+        userIds.putAll(entries);
+      }
+      remaining = remaining.stream().filter(phoneNo -> !found.containsKey(phoneNo)).toList();
+    }
+    return found;
+  }
+
+  private static Map<String, Long> findIn(Shards.Shard shard, List<String> phoneNos) {
+    Map<String, Long> found = new HashMap<>();
+    for (int from = 0; from < phoneNos.size(); from += SystemConstants.LOOKUP_IN_BATCH_SIZE) {
+      shard.getNamedParameterJdbcTemplate().query(
+          "select phone_no, user_id from orel_user_phone_directory where phone_no in (:phoneNos)",
+          Map.of("phoneNos", phoneNos.subList(from,
+              Math.min(from + SystemConstants.LOOKUP_IN_BATCH_SIZE, phoneNos.size()))),
+          resultSet -> {
+            found.put(resultSet.getString(1), resultSet.getLong(2));
+          });
+    }
+    return found;
+  }
+
+  /**
+   * Add entries, with one batch per shard. Either every entry is added or none: when a shard
+   * fails, entries already added to other shards are removed again. Entries are claimed on the
+   * shard of the newest generation; before that transaction commits, the shards of the older
+   * generations are searched for the same numbers. Older generations never get new entries, so a
+   * number found there cannot be claimed concurrently.
+   *
+   * @param entries User id by phone number.
+   * @throws DuplicateKeyException if a phone number is already stored.
+   */
+  public void insertAll(Map<String, Long> entries) {
+    Map<Integer, Map<String, Long>> byShard = new LinkedHashMap<>();
+    entries.forEach((phoneNo, userId) -> byShard.computeIfAbsent(
+        shards.getRouter().directoryShardForPhoneNo(phoneNo), index -> new LinkedHashMap<>())
+        .put(phoneNo, userId));
+    List<Map<String, Long>> inserted = new ArrayList<>();
+    try {
+      for (Map.Entry<Integer, Map<String, Long>> shardEntries : byShard.entrySet()) {
+        List<Object[]> rows = shardEntries.getValue().entrySet().stream()
+            .map(entry -> new Object[]{entry.getKey(), entry.getValue()})
+            .toList();
+        Shards.Shard shard = shards.get(shardEntries.getKey());
+        shard.inTransaction(status -> {
+          shard.getJdbcTemplate()
+              .batchUpdate("insert into orel_user_phone_directory (phone_no, user_id) values (?, ?)", rows);
+          rejectStoredInOlderGenerations(shardEntries.getKey(), shardEntries.getValue().keySet());
+          return null;
+        });
+        inserted.add(shardEntries.getValue());
+      }
+    } catch (RuntimeException ex) {
+      inserted.forEach(shardEntries -> shardEntries.forEach(this::delete));
+      throw ex;
+    }
+    userIds.putAll(entries);
+  }
+
+  private void rejectStoredInOlderGenerations(int shard, Collection<String> phoneNos) {
+    Map<Integer, List<String>> byShard = new HashMap<>();
+    for (String phoneNo : phoneNos) {
+      for (int index : shards.getRouter().directoryShardsForPhoneNo(phoneNo)) {
+        if (index != shard) {
+          byShard.computeIfAbsent(index, key -> new ArrayList<>()).add(phoneNo);
+        }
+      }
+    }
+    if (byShard.isEmpty()) {
+      return;
+    }
+    for (Map<String, Long> found : shards.scatter(byShard, PhoneNoShardDirectory::findIn)) {
+      if (!found.isEmpty()) {
+        throw new DuplicateKeyException("Phone no " + found.keySet().iterator().next() + " is already stored");
+      }
+    }
+  }
+
+  /**
+   * Remove the entry of a phone number if it still points to the user.
+   *
+   * @param phoneNo Phone number.
+   * @param userId  User id.
+   */
+  public void delete(String phoneNo, Long userId) {
+    for (int index : shards.getRouter().directoryShardsForPhoneNo(phoneNo)) {
+      shards.get(index).getJdbcTemplate().update(
+          "delete from orel_user_phone_directory where phone_no = ? and user_id = ?", phoneNo, userId);
+    }
+    userIds.invalidate(phoneNo);
+  }
+}
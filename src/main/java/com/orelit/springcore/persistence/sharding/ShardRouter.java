@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.sharding;
+
+import com.orelit.springcore.persistence.snowflake.Snowflake;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decides which shard holds a user and which shard holds the directory entry of a phone number.
+ *
+ * <p>A user lives on the shard picked by the node and timestamp bits of its Snowflake id, so an
+ * id lookup needs no directory. The sequence bits are left out, which keeps ids issued by one
+ * node in the same millisecond, like a bulk insert, on one shard.
+ *
+ * <p>Shards added later carry a since time. Each since time starts a new generation of the ring
+ * with the shards known at that time, and an id is routed by the generation of its timestamp, so
+ * users never move when a shard is added. Directory entries are placed by the newest generation
+ * and looked up in every generation, newest first.
+ */
+public class ShardRouter {
+
+  private final List<Generation> generations;
+
+  private final int shardCount;
+
+  /**
+   * Build the router.
+   *
+   * @param names        Shard names, in shard index order.
+   * @param since        Since time of each shard, null for the shards the data started on.
+   * @param virtualNodes Points per shard on each ring.
+   */
+  public ShardRouter(List<String> names, List<Instant> since, int virtualNodes) {
+    if (names.size() != since.size()) {
+      throw new IllegalArgumentException("Every shard needs a since time or null");
+    }
+    if (new LinkedHashSet<>(names).size() != names.size()) {
+      throw new IllegalArgumentException("Shard names must be unique");
+    }
+    List<Long> starts = new ArrayList<>();
+    starts.add(Long.MIN_VALUE);
+    since.stream().filter(time -> time != null).map(Instant::toEpochMilli).distinct()
+        .sorted().forEach(starts::add);
+    List<Generation> built = new ArrayList<>();
+    for (long start : starts) {
+      List<Integer> members = new ArrayList<>();
+      for (int shard = 0; shard < names.size(); shard++) {
+        if (since.get(shard) == null || since.get(shard).toEpochMilli() <= start) {
+          members.add(shard);
+        }
+      }
+      if (members.isEmpty()) {
+        throw new IllegalArgumentException("At least one shard must have no since time");
+      }
+      built.add(new Generation(start, new ConsistentHashRing(members, names, virtualNodes)));
+    }
+    built.sort(Comparator.comparingLong(Generation::start).reversed());
+    this.generations = List.copyOf(built);
+    this.shardCount = names.size();
+  }
+
+  /**
+   * Find the shard holding a user.
+   *
+   * @param id User id.
+   * @return Shard index.
+   */
+  public int shardForId(long id) {
+    long time = Snowflake.timeOf(id).toEpochMilli();
+    long key = ConsistentHashRing.mix(Snowflake.nodeOf(id) * 0x9e3779b97f4a7c15L ^ time);
+    for (Generation generation : generations) {
+      if (generation.start() <= time) {
+        return generation.ring().shardFor(key);
+      }
+    }
+    throw new IllegalStateException("No shard generation covers id " + id);
+  }
+
+  /**
+   * Find the shard a new directory entry of the phone number is written to.
+   *
+   * @param phoneNo Phone number.
+   * @return Shard index.
+   */
+  public int directoryShardForPhoneNo(String phoneNo) {
+    return generations.get(0).ring().shardFor(ConsistentHashRing.hash(phoneNo));
+  }
+
+  /**
+   * Find every shard that may hold the directory entry of the phone number.
+   *
+   * @param phoneNo Phone number.
+   * @return Shard indexes, the shard of the newest generation first.
+   */
+  public List<Integer> directoryShardsForPhoneNo(String phoneNo) {
+    long hash = ConsistentHashRing.hash(phoneNo);
+    Set<Integer> shards = new LinkedHashSet<>();
+    for (Generation generation : generations) {
+      shards.add(generation.ring().shardFor(hash));
+    }
+    return List.copyOf(shards);
+  }
+
+  public int getShardCount() {
+    return shardCount;
+  }
+
+  private record Generation(long start, ConsistentHashRing ring) {
+  }
+}
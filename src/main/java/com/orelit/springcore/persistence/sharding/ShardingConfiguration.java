@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.sharding;
+
+import com.orelit.springcore.common.constant.SystemConstants;
+import com.orelit.springcore.common.properties.ApplicationConfigurationProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Spreads users and their departments over the shards in application.sharding.shards, see
+ * ShardedOrelUserTemplateImpl. Enabled by application.sharding.enabled. The read replicas of
+ * ReplicaDataSourceConfiguration and the R2DBC reads of the reactive profile only know the
+ * spring.datasource database, so neither can be combined with sharding.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.sharding", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class ShardingConfiguration {
+
+  /**
+   * Shard connection pools, the router over them and the executor of scatter-gather queries.
+   *
+   * @param dataSourceProperties spring.datasource properties, for the driver and credentials.
+   * @param properties           Application properties.
+   * @param environment          Environment, to refuse the reactive profile.
+   * @param taskExecutor         Runs the queries of a scatter-gather.
+   * @return Shards.
+   */
+  @Bean
+  public Shards shards(DataSourceProperties dataSourceProperties,
+                       ApplicationConfigurationProperties properties,
+                       Environment environment,
+                       @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+                       Executor taskExecutor) {
+    if (properties.getReplicas().isEnabled()) {
+      throw new IllegalStateException("application.sharding and application.replicas cannot both be enabled");
+    }
+    if (environment.acceptsProfiles(Profiles.of(SystemConstants.REACTIVE_PROFILE))) {
+      throw new IllegalStateException("application.sharding is not supported by the reactive profile");
+    }
+    ApplicationConfigurationProperties.Sharding settings = properties.getSharding();
+    if (settings.getShards().isEmpty()) {
+      throw new IllegalArgumentException("application.sharding.shards is empty");
+    }
+    List<String> names = new ArrayList<>();
+    List<Instant> since = new ArrayList<>();
+    List<Shards.Shard> shards = new ArrayList<>();
+    for (ApplicationConfigurationProperties.ShardNode node : settings.getShards()) {
+      String name = node.getName() != null ? node.getName() : "shard-" + (shards.size() + 1);
+      HikariDataSource dataSource = DataSourceBuilder.create()
+          .type(HikariDataSource.class)
+          .driverClassName(dataSourceProperties.determineDriverClassName())
+          .url(node.getUrl())
+          .username(node.getUsername() != null ? node.getUsername()
+              : dataSourceProperties.determineUsername())
+          .password(node.getPassword() != null ? node.getPassword()
+              : dataSourceProperties.determinePassword())
+          .build();
+      dataSource.setPoolName(name);
+      dataSource.setMaximumPoolSize(settings.getMaximumPoolSize());
+      names.add(name);
+      since.add(node.getSince());
+      shards.add(new Shards.Shard(shards.size(), name, dataSource));
+    }
+    return new Shards(shards, new ShardRouter(names, since, settings.getVirtualNodes()), taskExecutor);
+  }
+
+  /**
+   * Directory from phone number to user id, with its table created on every shard.
+   *
+   * @param shards     Shards.
+   * @param properties Application properties.
+   * @return Directory.
+   */
+  @Bean
+  public PhoneNoShardDirectory phoneNoShardDirectory(Shards shards,
+                                                     ApplicationConfigurationProperties properties) {
+    PhoneNoShardDirectory directory = new PhoneNoShardDirectory(shards,
+        properties.getSharding().getDirectoryCacheSize());
+    directory.createTableIfMissing();
+    return directory;
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * The shards with their connection pools, and the router deciding which of them holds a key.
+ * Each shard has its own JDBC transactions; nothing spans two shards.
+ */
+@Slf4j
+public class Shards implements DisposableBean {
+
+  private final List<Shard> shards;
+
+  private final ShardRouter router;
+
+  private final Executor executor;
+
+  /**
+   * Create the shards.
+   *
+   * @param shards   Shards, in shard index order.
+   * @param router   Router over the same shards.
+   * @param executor Runs the queries of a scatter-gather, one task per shard.
+   */
+  public Shards(List<Shard> shards, ShardRouter router, Executor executor) {
+    if (shards.size() != router.getShardCount()) {
+      throw new IllegalArgumentException("Router and shards do not match");
+    }
+    this.shards = List.copyOf(shards);
+    this.router = router;
+    this.executor = executor;
+  }
+
+  public Shard get(int index) {
+    return shards.get(index);
+  }
+
+  public List<Shard> all() {
+    return shards;
+  }
+
+  public ShardRouter getRouter() {
+    return router;
+  }
+
+  /**
+   * Get the shard holding a user.
+   *
+   * @param id User id.
+   * @return Shard.
+   */
+  public Shard forId(long id) {
+    return shards.get(router.shardForId(id));
+  }
+
+  /**
+   * Run a query on every shard at the same time and collect the results.
+   *
+   * @param query Query of one shard.
+   * @return Results of every shard, in shard order.
+   */
+  public <T> List<T> scatter(Function<Shard, T> query) {
+    return scatter(shards, query);
+  }
+
+  /**
+   * Run a query on some shards at the same time and collect the results.
+   *
+   * @param targets Shards to query.
+   * @param query   Query of one shard.
+   * @return Results of the shards, in the order of the targets.
+   */
+  public <T> List<T> scatter(List<Shard> targets, Function<Shard, T> query) {
+    if (targets.size() == 1) {
+      return List.of(query.apply(targets.get(0)));
+    }
+    List<CompletableFuture<T>> futures = new ArrayList<>(targets.size());
+    for (Shard shard : targets) {
+      futures.add(CompletableFuture.supplyAsync(() -> query.apply(shard), executor));
+    }
+    List<T> results = new ArrayList<>(targets.size());
+    for (CompletableFuture<T> future : futures) {
+      try {
+        results.add(future.join());
+      } catch (CompletionException ex) {
+        if (ex.getCause() instanceof RuntimeException cause) {
+          throw cause;
+        }
+        throw ex;
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Run a query per shard for keys grouped by shard, at the same time.
+   *
+   * @param keysByShard Keys by shard index.
+   * @param query       Query of one shard and its keys.
+   * @return Results of the queried shards.
+   */
+  public <K, T> List<T> scatter(Map<Integer, List<K>> keysByShard, ShardQuery<K, T> query) {
+    return scatter(keysByShard.keySet().stream().map(shards::get).toList(),
+        shard -> query.apply(shard, keysByShard.get(shard.getIndex())));
+  }
+
+  /**
+   * Close the shard connection pools.
+   */
+  @Override
+  public void destroy() {
+    for (Shard shard : shards) {
+      if (shard.dataSource instanceof Closeable closeable) {
+        try {
+          closeable.close();
+        } catch (IOException ex) {
+          log.warn("Could not close shard {}", shard.name, ex);
+        }
+      }
+    }
+  }
+
+  /**
+   * Query of one shard for some keys.
+   *
+   * @param <K> Key type.
+   * @param <T> Result type.
+   */
+  @FunctionalInterface
+  public interface ShardQuery<K, T> {
+
+    T apply(Shard shard, List<K> keys);
+  }
+
+  /**
+   * One shard.
+   */
+  public static class Shard {
+
+    private final int index;
+
+    private final String name;
+
+    private final DataSource dataSource;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public Shard(int index, String name, DataSource dataSource) {
+      this.index = index;
+      this.name = name;
+      this.dataSource = dataSource;
+      this.jdbcTemplate = new JdbcTemplate(dataSource);
+      this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+      this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    /**
+     * Run work in a transaction of this shard.
+     *
+     * @param action Work.
+     * @return Result of the work.
+     */
+    public <T> T inTransaction(TransactionCallback<T> action) {
+      return transactionTemplate.execute(action);
+    }
+
+    public int getIndex() {
+      return index;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public DataSource getDataSource() {
+      return dataSource;
+    }
+
+    public JdbcTemplate getJdbcTemplate() {
+      return jdbcTemplate;
+    }
+
+    public NamedParameterJdbcTemplate getNamedParameterJdbcTemplate() {
+      return namedParameterJdbcTemplate;
+    }
+  }
+}
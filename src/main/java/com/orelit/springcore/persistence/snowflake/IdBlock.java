@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.snowflake;
+
+/**
+ * A contiguous block of ids reserved from a {@link Snowflake}. A block is a cursor and is meant
+ * to be consumed by a single thread.
+ */
+public class IdBlock {
+
+  private final Snowflake source;
+  private final long firstId;
+  private final int size;
+  private final long reservedAt;
+
+  private int position;
+
+  /**
+   * Create a block of ids.
+   *
+   * @param firstId First id of the block
+   * @param size    Number of ids in the block
+   */
+  public IdBlock(long firstId, int size) {
+    this(null, firstId, size);
+  }
+
+  IdBlock(Snowflake source, long firstId, int size) {
+    this.source = source;
+    this.firstId = firstId;
+    this.size = size;
+    this.reservedAt = System.currentTimeMillis();
+  }
+
+  /**
+   * Check whether the block still has unused ids.
+   *
+   * @return true if {@link #next()} can be called.
+   */
+  public boolean hasNext() {
+    return position < size;
+  }
+
+  /**
+   * Take the next id of the block.
+   *
+   * @return long id.
+   */
+  public long next() {
+    if (position >= size) {
+      throw new IllegalStateException("Id block exhausted");
+    }
+    return firstId + position++;
+  }
+
+  /**
+   * Snowflake the block was reserved from, if known.
+   *
+   * @return source Snowflake or null.
+   */
+  public Snowflake getSource() {
+    return source;
+  }
+
+  public long getFirstId() {
+    return firstId;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Wall clock time the block was reserved at, in epoch milliseconds.
+   *
+   * @return reservation time.
+   */
+  public long getReservedAt() {
+    return reservedAt;
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.snowflake;
+
+import com.orelit.springcore.common.properties.ApplicationConfigurationProperties;
+import com.orelit.springcore.persistence.repository.NodeLeaseTemplate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Leases this node's Snowflake node id from the snowflake_node_lease table, so instances sharing
+ * a host never pick the same node id. The lease is renewed on a heartbeat; when it is lost a new
+ * node id is leased and a new Snowflake is installed into {@link SnowflakeIdGenerator}.
+ *
+ * <p>Lease ends are kept in the database clock. Locally the Snowflake is fenced to the ttl counted
+ * from before each lease or renew statement was sent, which is never later than the end the
+ * database recorded; once that passes without a successful renew the Snowflake stops issuing ids,
+ * so it is stopped before another instance can take the node id over.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "application.id-generator.lease", name = "enabled", havingValue = "true")
+public class NodeIdLeaseManager implements DisposableBean {
+
+  private final NodeLeaseTemplate nodeLeaseTemplate;
+
+  private final long ttlMillis;
+
+  private final long ttlNanos;
+
+  private final long heartbeatMillis;
+
+  private final String owner;
+
+  private final LongAdder lost = new LongAdder();
+
+  private SnowflakeOptions options;
+
+  private ScheduledExecutorService scheduler;
+
+  private Snowflake snowflake;
+
+  private volatile int nodeId = -1;
+
+  public NodeIdLeaseManager(NodeLeaseTemplate nodeLeaseTemplate,
+                            ApplicationConfigurationProperties properties) {
+    ApplicationConfigurationProperties.Lease lease = properties.getIdGenerator().getLease();
+    if (lease.getHeartbeatInterval().compareTo(lease.getTtl()) >= 0) {
+      throw new IllegalArgumentException("Lease heartbeat interval must be shorter than the ttl");
+    }
+    this.nodeLeaseTemplate = nodeLeaseTemplate;
+    this.ttlMillis = lease.getTtl().toMillis();
+    this.ttlNanos = lease.getTtl().toNanos();
+    this.heartbeatMillis = lease.getHeartbeatInterval().toMillis();
+    this.owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+  }
+
+  /**
+   * Lease a node id, start the heartbeat and create the Snowflake for the leased node id.
+   *
+   * @param options Options for every Snowflake created by this manager.
+   * @return Snowflake using the leased node id.
+   */
+  public synchronized Snowflake start(SnowflakeOptions options) {
+    this.options = options;
+    nodeLeaseTemplate.createTableIfMissing();
+    Snowflake snowflake = acquire();
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "snowflake-node-lease");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis,
+        TimeUnit.MILLISECONDS);
+    return snowflake;
+  }
+
+  /**
+   * Currently leased node id.
+   *
+   * @return node id, -1 before the first lease.
+   */
+  public int getNodeId() {
+    return nodeId;
+  }
+
+  /**
+   * Number of times the lease was lost and a new node id had to be leased.
+   *
+   * @return count of lost leases.
+   */
+  public long getLostCount() {
+    return lost.sum();
+  }
+
+  /**
+   * Renew the lease, or lease a new node id if it was taken over.
+   */
+  public synchronized void heartbeat() {
+    try {
+      long started = System.nanoTime();
+      if (nodeLeaseTemplate.renew(nodeId, owner, ttlMillis)) {
+        snowflake.leaseUntil(started + ttlNanos);
+        return;
+      }
+      lost.increment();
+      log.warn("Lease of Snowflake node id {} was lost, leasing a new node id", nodeId);
+      snowflake.leaseUntil(started);
+      SnowflakeIdGenerator.setSnowflake(acquire());
+    } catch (RuntimeException ex) {
+      log.warn("Could not renew lease of Snowflake node id {}, ids stop when it expires", nodeId,
+          ex);
+    }
+  }
+
+  /**
+   * Lease the free or expired node id closest to the MAC based node id of this host.
+   *
+   * @return Snowflake using the leased node id.
+   */
+  private Snowflake acquire() {
+    Set<Integer> leased = nodeLeaseTemplate.findNodeIds();
+    Set<Integer> expired = new HashSet<>(nodeLeaseTemplate.findExpiredNodeIds());
+    long preferred = Snowflake.createNodeId();
+
+    for (long i = 0; i <= Snowflake.MAX_NODE_ID; i++) {
+      int candidate = (int) ((preferred + i) & Snowflake.MAX_NODE_ID);
+      long started = System.nanoTime();
+      boolean acquired;
+      if (!leased.contains(candidate)) {
+        acquired = nodeLeaseTemplate.insert(candidate, owner, ttlMillis);
+      } else if (expired.contains(candidate)) {
+        acquired = nodeLeaseTemplate.claimExpired(candidate, owner, ttlMillis);
+      } else {
+        acquired = false;
+      }
+      if (acquired) {
+        nodeId = candidate;
+        log.info("Leased Snowflake node id {} as {}", candidate, owner);
+        snowflake = new Snowflake(candidate, options);
+        snowflake.leaseUntil(started + ttlNanos);
+        return snowflake;
+      }
+    }
+    throw new IllegalStateException("No Snowflake node id is free to lease");
+  }
+
+  /**
+   * Stop the heartbeat and give the node id back.
+   */
+  @Override
+  public synchronized void destroy() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+    if (nodeId >= 0) {
+      snowflake.leaseUntil(System.nanoTime());
+      nodeLeaseTemplate.release(nodeId, owner);
+    }
+  }
+}
@@ -10,14 +10,24 @@ package com.orelit.springcore.persistence.snowflake;
 
 import java.net.NetworkInterface;
 import java.security.SecureRandom;
+import java.time.Clock;
 import java.time.Instant;
 import java.util.Enumeration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Distributed Sequence Generator. Inspired by Twitter snowflake:
  * https://github.com/twitter/snowflake/tree/snowflake-2010.
  * This class should be used as a Singleton. Make sure that you create and reuse a Single instance
  * of Snowflake per node in your distributed system cluster.
+ * The last timestamp and the sequence are packed into a single long, so ids are handed out with a
+ * compare-and-set instead of a monitor.
+ * In striped mode the high sequence bits select a lane and every thread sticks to one lane, each
+ * lane keeping its own state on its own cache line. Ids stay unique because lanes never share
+ * sequence numbers, and stay roughly time ordered because the timestamp is still the high part.
  * reference
  * https://github.com/callicoder/java-snowflake/blob/master/src/main/java/com/callicoder/snowflake/Snowflake.java
  */
@@ -27,17 +37,43 @@ public class Snowflake {
   private static final int NODE_ID_BITS = 10;
   private static final int SEQUENCE_BITS = 12;
 
-  private static final long MAX_NODE_ID = (1L << NODE_ID_BITS) - 1;
+  static final long MAX_NODE_ID = (1L << NODE_ID_BITS) - 1;
   private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
 
   //Custom Epoc = 00:00:00 01/01/2011. NEVER CHANGE THIS
   private static final long DEFAULT_CUSTOM_EPOCH = 1293840000000L;
 
+  private static final long PARK_NANOS = 100_000L;
+
+  private static final int MAX_STRIPES = 256;
+
+  // Longs between two lane states, keeps every lane on its own cache line.
+  private static final int LANE_PADDING = 16;
+
   private final long node;
   private final long customEpoch;
+  private final boolean park;
+  private final long maxClockBackwardMillis;
+  private final Clock clock;
+  private final int stripes;
+  private final int laneSequenceBits;
+  private final long maxLaneSequence;
+
+  /**
+   * Packed state of each lane: {@code lastTimestamp << SEQUENCE_BITS | laneSequence}, at index
+   * {@code lane * LANE_PADDING}.
+   */
+  private final AtomicLongArray states;
+
+  private final AtomicInteger nextLane = new AtomicInteger();
+  private final ThreadLocal<Integer> threadLane;
 
-  private volatile long lastTimestamp = -1L;
-  private volatile long sequence = 0L;
+  private final LongAdder sequenceExhausted = new LongAdder();
+  private final LongAdder clockBackward = new LongAdder();
+
+  // System.nanoTime() at which the node id lease ends, only checked once leased is set.
+  private volatile long leaseDeadlineNanos;
+  private volatile boolean leased;
 
   /**
    * Create Snowflake with a nodeId and custom epoch.
@@ -46,12 +82,7 @@ public class Snowflake {
    * @param customEpoch customEpoch
    */
   public Snowflake(long node, long customEpoch) {
-    if (node < 0 || node > MAX_NODE_ID) {
-      throw new IllegalArgumentException(
-          String.format("NodeId must be between %d and %d", 0, MAX_NODE_ID));
-    }
-    this.node = node;
-    this.customEpoch = customEpoch;
+    this(node, customEpoch, SnowflakeOptions.builder().build());
   }
 
   /**
@@ -67,8 +98,52 @@ public class Snowflake {
    * Let Snowflake generate a nodeId.
    */
   public Snowflake() {
-    this.node = createNodeId();
-    this.customEpoch = DEFAULT_CUSTOM_EPOCH;
+    this(SnowflakeOptions.builder().build());
+  }
+
+  /**
+   * Create Snowflake with a nodeId and generator options.
+   *
+   * @param node    nodeId
+   * @param options options
+   */
+  public Snowflake(long node, SnowflakeOptions options) {
+    this(node, DEFAULT_CUSTOM_EPOCH, options);
+  }
+
+  /**
+   * Let Snowflake generate a nodeId, with generator options.
+   *
+   * @param options options
+   */
+  public Snowflake(SnowflakeOptions options) {
+    this(createNodeId(), DEFAULT_CUSTOM_EPOCH, options);
+  }
+
+  private Snowflake(long node, long customEpoch, SnowflakeOptions options) {
+    if (node < 0 || node > MAX_NODE_ID) {
+      throw new IllegalArgumentException(
+          String.format("NodeId must be between %d and %d", 0, MAX_NODE_ID));
+    }
+    if (options.getMaxClockBackwardMillis() < 0) {
+      throw new IllegalArgumentException("Max clock backward millis must not be negative");
+    }
+    int stripeCount = options.getStripes();
+    if (stripeCount < 1 || stripeCount > MAX_STRIPES || Integer.bitCount(stripeCount) != 1) {
+      throw new IllegalArgumentException(
+          String.format("Stripes must be a power of two between %d and %d", 1, MAX_STRIPES));
+    }
+    this.node = node;
+    this.customEpoch = customEpoch;
+    this.park = options.getWaitStrategy() == SnowflakeOptions.WaitStrategy.PARK;
+    this.maxClockBackwardMillis = options.getMaxClockBackwardMillis();
+    this.clock = options.getClock();
+    this.stripes = stripeCount;
+    this.laneSequenceBits = SEQUENCE_BITS - Integer.numberOfTrailingZeros(stripeCount);
+    this.maxLaneSequence = (1L << laneSequenceBits) - 1;
+    this.states = new AtomicLongArray(stripeCount * LANE_PADDING);
+    this.threadLane = stripeCount == 1
+        ? null : ThreadLocal.withInitial(() -> nextLane.getAndIncrement() & (stripes - 1));
   }
 
   /**
@@ -76,31 +151,204 @@ public class Snowflake {
    *
    * @return long id.
    */
-  public synchronized long nextId() {
-    long currentTimestamp = timestamp();
+  public long nextId() {
+    checkLease();
+    int lane = lane();
+    return toId(lane, claim(lane, 1));
+  }
 
-    if (currentTimestamp < lastTimestamp) {
-      throw new IllegalStateException("Invalid System Clock!");
+  /**
+   * Reserve a contiguous block of ids with a single state update. The ids of a block share one
+   * timestamp, so a block never holds more ids than are left in the current millisecond (of the
+   * calling thread's lane in striped mode) and may be smaller than requested.
+   *
+   * @param count Number of ids wanted.
+   * @return Block of at least one and at most count ids.
+   */
+  public IdBlock reserve(int count) {
+    if (count < 1) {
+      throw new IllegalArgumentException("Count must be at least 1");
     }
+    checkLease();
+    int lane = lane();
+    long first = claim(lane, count);
+    return new IdBlock(this, toId(lane, first), blockSize(first, count));
+  }
 
-    if (currentTimestamp == lastTimestamp) {
-      sequence = (sequence + 1) & MAX_SEQUENCE;
-      if (sequence == 0) {
+  /**
+   * Decode the creation time of an id made with the default epoch.
+   *
+   * @param id Snowflake id
+   * @return Time encoded in the id's timestamp bits.
+   */
+  public static Instant timeOf(long id) {
+    return Instant.ofEpochMilli((id >>> (NODE_ID_BITS + SEQUENCE_BITS)) + DEFAULT_CUSTOM_EPOCH);
+  }
+
+  /**
+   * Decode the node id of an id.
+   *
+   * @param id Snowflake id
+   * @return Node id encoded in the id's node bits.
+   */
+  public static long nodeOf(long id) {
+    return (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+  }
+
+  /**
+   * Smallest id that can be issued at the given time with the default epoch. Ids issued at or
+   * after the time are greater than or equal to it, so a time window maps to an id range.
+   *
+   * @param time Time
+   * @return Lowest id of the time's millisecond.
+   */
+  public static long firstIdAt(Instant time) {
+    long timestamp = time.toEpochMilli() - DEFAULT_CUSTOM_EPOCH;
+    if (timestamp < 0) {
+      return 0;
+    }
+    if (timestamp >= 1L << EPOCH_BITS) {
+      return Long.MAX_VALUE;
+    }
+    return timestamp << (NODE_ID_BITS + SEQUENCE_BITS);
+  }
+
+  public long getNode() {
+    return node;
+  }
+
+  /**
+   * Fence the Snowflake to a lease of its node id: ids are only issued until the lease ends, so
+   * an instance that cannot renew its lease stops before another instance may take the node id
+   * over. Called again with the new end on every renewal.
+   *
+   * @param deadlineNanos {@link System#nanoTime()} at which the lease ends.
+   */
+  public void leaseUntil(long deadlineNanos) {
+    leaseDeadlineNanos = deadlineNanos;
+    leased = true;
+  }
+
+  /**
+   * Fail if the node id lease the Snowflake is fenced to has ended.
+   *
+   * @throws IllegalStateException if the lease ended without being renewed.
+   */
+  public void checkLease() {
+    if (leased && System.nanoTime() - leaseDeadlineNanos > 0) {
+      throw new IllegalStateException("Lease of Snowflake node id " + node + " has expired");
+    }
+  }
+
+  /**
+   * Number of times the sequence of a millisecond ran out, whether the generator waited for the
+   * clock or borrowed the next millisecond.
+   *
+   * @return count of sequence exhaustions.
+   */
+  public long getSequenceExhaustedCount() {
+    return sequenceExhausted.sum();
+  }
+
+  /**
+   * Number of claims served from the logical clock because the system clock moved backwards.
+   *
+   * @return count of absorbed clock regressions.
+   */
+  public long getClockBackwardCount() {
+    return clockBackward.sum();
+  }
+
+  /**
+   * Advance the state of a lane by up to count sequence numbers of one millisecond.
+   * When the system clock is behind the last timestamp by at most maxClockBackwardMillis the
+   * last timestamp is used as a logical clock, and an exhausted millisecond may borrow the next
+   * one as long as the logical clock stays within that distance of the system clock.
+   *
+   * @param lane  Lane of the calling thread.
+   * @param count Number of ids wanted.
+   * @return First claimed state, see {@link #blockSize(long, int)} for the claimed size.
+   */
+  private long claim(int lane, int count) {
+    int index = lane * LANE_PADDING;
+    while (true) {
+      long current = states.get(index);
+      long lastTimestamp = current >>> SEQUENCE_BITS;
+      long systemTimestamp = timestamp();
+      long currentTimestamp = systemTimestamp;
+      boolean behind = false;
+
+      if (currentTimestamp < lastTimestamp) {
+        if (lastTimestamp - currentTimestamp > maxClockBackwardMillis) {
+          throw new IllegalStateException("Invalid System Clock!");
+        }
+        currentTimestamp = lastTimestamp;
+        behind = true;
+      }
+
+      long first;
+      boolean borrowed = false;
+      if (currentTimestamp > lastTimestamp) {
+        // reset sequence to start with zero for the next millisecond
+        first = currentTimestamp << SEQUENCE_BITS;
+      } else if ((current & MAX_SEQUENCE) < maxLaneSequence) {
+        first = current + 1;
+      } else if (lastTimestamp + 1 - systemTimestamp <= maxClockBackwardMillis) {
+        // Sequence Exhausted, borrow the next millisecond from the logical clock.
+        first = (lastTimestamp + 1) << SEQUENCE_BITS;
+        borrowed = true;
+      } else {
         // Sequence Exhausted, wait till next millisecond.
-        currentTimestamp = waitNextMillis(currentTimestamp);
+        sequenceExhausted.increment();
+        waitNextMillis(lastTimestamp);
+        continue;
+      }
+
+      if (states.compareAndSet(index, current, first + blockSize(first, count) - 1)) {
+        if (behind) {
+          clockBackward.increment();
+        }
+        if (borrowed) {
+          sequenceExhausted.increment();
+        }
+        return first;
       }
-    } else {
-      // reset sequence to start with zero for the next millisecond
-      sequence = 0;
     }
+  }
 
-    lastTimestamp = currentTimestamp;
+  /**
+   * Lane of the calling thread, always 0 when not striped.
+   *
+   * @return lane.
+   */
+  private int lane() {
+    return threadLane == null ? 0 : threadLane.get();
+  }
 
-    return currentTimestamp << (NODE_ID_BITS + SEQUENCE_BITS)
-        | (node << SEQUENCE_BITS)
-        | sequence;
+  /**
+   * Size of a claim starting at first: count, capped at the end of the lane's millisecond.
+   *
+   * @param first First claimed state
+   * @param count Number of ids wanted
+   * @return Number of claimed ids.
+   */
+  private int blockSize(long first, int count) {
+    return (int) Math.min(count, maxLaneSequence + 1 - (first & MAX_SEQUENCE));
   }
 
+  /**
+   * Build the id from a lane and its packed timestamp and sequence state.
+   *
+   * @param lane        lane
+   * @param packedState lastTimestamp and lane sequence
+   * @return long id.
+   */
+  private long toId(int lane, long packedState) {
+    return (packedState >>> SEQUENCE_BITS) << (NODE_ID_BITS + SEQUENCE_BITS)
+        | (node << SEQUENCE_BITS)
+        | ((long) lane << laneSequenceBits)
+        | (packedState & MAX_SEQUENCE);
+  }
 
   /**
    * Get current timestamp in milliseconds, adjust for the custom epoch.
@@ -108,28 +356,34 @@ public class Snowflake {
    * @return Current timestamp in milliseconds
    */
   private long timestamp() {
-    return Instant.now().toEpochMilli() - customEpoch;
+    return clock.millis() - customEpoch;
   }
 
   /**
-   * Block and wait till next millisecond.
+   * Block and wait till the clock passes lastTimestamp, either spinning or parking the thread.
    *
-   * @param currentTimestamp currentTimestamp
+   * @param lastTimestamp lastTimestamp
    * @return currentTimestamp
    */
-  private long waitNextMillis(long currentTimestamp) {
-    while (currentTimestamp == lastTimestamp) {
+  private long waitNextMillis(long lastTimestamp) {
+    long currentTimestamp = timestamp();
+    while (currentTimestamp <= lastTimestamp) {
+      if (park) {
+        LockSupport.parkNanos(PARK_NANOS);
+      } else {
+        Thread.onSpinWait();
+      }
       currentTimestamp = timestamp();
     }
     return currentTimestamp;
   }
 
   /**
-   * Creates a node id.
+   * Creates a node id from the MAC addresses of this host.
    *
    * @return Node id.
    */
-  private long createNodeId() {
+  static long createNodeId() {
     long nodeId;
     try {
       StringBuilder sb = new StringBuilder();
@@ -155,7 +409,8 @@ public class Snowflake {
   public String toString() {
     return "Snowflake Settings [EPOCH_BITS=" + EPOCH_BITS + ", NODE_ID_BITS=" + NODE_ID_BITS
         + ", SEQUENCE_BITS=" + SEQUENCE_BITS + ", CUSTOM_EPOCH=" + customEpoch
-        + ", NodeId=" + node + "]";
+        + ", NodeId=" + node + ", Park=" + park
+        + ", MaxClockBackwardMillis=" + maxClockBackwardMillis + ", Stripes=" + stripes + "]";
   }
 }
 
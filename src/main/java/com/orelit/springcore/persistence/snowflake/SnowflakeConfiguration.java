@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.snowflake;
+
+import com.orelit.springcore.common.properties.ApplicationConfigurationProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Creates the node's Snowflake from the application properties and installs it into
+ * {@link SnowflakeIdGenerator} before the entity manager factory starts. The node id is leased
+ * through {@link NodeIdLeaseManager} when application.id-generator.lease.enabled is set.
+ */
+@Slf4j
+@Configuration
+public class SnowflakeConfiguration {
+
+  /**
+   * Define the Snowflake shared by all id generators of this node.
+   *
+   * @param properties   Application properties.
+   * @param leaseManager Node id lease manager, if leasing is enabled.
+   * @return Configured Snowflake.
+   */
+  @Bean
+  public Snowflake snowflake(ApplicationConfigurationProperties properties,
+                             ObjectProvider<NodeIdLeaseManager> leaseManager) {
+    ApplicationConfigurationProperties.IdGenerator idGenerator = properties.getIdGenerator();
+    SnowflakeOptions options = SnowflakeOptions.builder()
+        .waitStrategy(idGenerator.getWaitStrategy())
+        .maxClockBackwardMillis(idGenerator.getMaxClockBackwardMillis())
+        .stripes(idGenerator.getStripes())
+        .build();
+    NodeIdLeaseManager manager = leaseManager.getIfAvailable();
+    Snowflake snowflake = manager != null ? manager.start(options) : new Snowflake(options);
+    SnowflakeIdGenerator.setSnowflake(snowflake);
+    log.info("Using {}", snowflake);
+    return snowflake;
+  }
+
+  /**
+   * Report sequence exhaustion, absorbed clock regressions and the node id of the Snowflake
+   * currently installed in {@link SnowflakeIdGenerator}.
+   *
+   * @param leaseManager Node id lease manager, if leasing is enabled.
+   * @return Binder for the Snowflake meters.
+   */
+  @Bean
+  public MeterBinder snowflakeMetrics(ObjectProvider<NodeIdLeaseManager> leaseManager) {
+    return registry -> {
+      FunctionCounter.builder("snowflake.sequence.exhausted", SnowflakeIdGenerator.class,
+              type -> SnowflakeIdGenerator.getSnowflake().getSequenceExhaustedCount())
+          .description("Times a millisecond ran out of sequence numbers")
+          .register(registry);
+      FunctionCounter.builder("snowflake.clock.backward", SnowflakeIdGenerator.class,
+              type -> SnowflakeIdGenerator.getSnowflake().getClockBackwardCount())
+          .description("Ids issued from the logical clock after a backward clock step")
+          .register(registry);
+      Gauge.builder("snowflake.node.id", SnowflakeIdGenerator.class,
+              type -> SnowflakeIdGenerator.getSnowflake().getNode())
+          .description("Node id of the installed Snowflake")
+          .register(registry);
+      leaseManager.ifAvailable(manager ->
+          FunctionCounter.builder("snowflake.node.lease.lost", manager,
+                  NodeIdLeaseManager::getLostCount)
+              .description("Times the node id lease was lost and a new one leased")
+              .register(registry));
+    };
+  }
+
+  /**
+   * Make the entity manager factory wait for the Snowflake, so no id is generated before it is
+   * installed.
+   */
+  @Configuration
+  static class SnowflakeEntityManagerFactoryDependsOnPostProcessor
+      extends EntityManagerFactoryDependsOnPostProcessor {
+
+    SnowflakeEntityManagerFactoryDependsOnPostProcessor() {
+      super("snowflake");
+    }
+  }
+}
@@ -9,22 +9,100 @@
 package com.orelit.springcore.persistence.snowflake;
 
 import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
 import org.hibernate.engine.spi.SharedSessionContractImplementor;
 import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
 
 import java.io.Serializable;
+import java.util.Properties;
 
 /**
- * Snowflake id generator for create unique ids.
+ * Snowflake id generator for create unique ids. All generator instances share one Snowflake so
+ * there is a single id sequence per node. The Snowflake is installed by
+ * {@link SnowflakeConfiguration}, a default one is created when running without Spring. It can be
+ * replaced at runtime when the node id lease moves, see {@link NodeIdLeaseManager}.
+ * Each thread takes ids from a buffered {@link IdBlock}, refilled with {@link Snowflake#reserve(int)},
+ * so a batch persist reserves ids in blocks instead of one state update per entity. A thread's
+ * first block holds one id, and each block it uses up within the max block age doubles the next
+ * one up to the block size, so a single insert reserves one id and only a thread persisting many
+ * entities reserves large blocks. A block that expires unused starts the thread over at one id.
+ * Generator parameters:
+ * <ul>
+ *   <li>{@value #BLOCK_SIZE} - most ids reserved per refill, 1 disables buffering (default 128).</li>
+ *   <li>{@value #MAX_BLOCK_AGE_MS} - a buffered block older than this is dropped (default 10).</li>
+ * </ul>
+ * An id taken from a buffered block carries the time the block was reserved, so a row inserted
+ * later can get a smaller id than rows already returned by up to the max block age. Readers that
+ * map ids to time, like creation time windows and keyset pages, rely on that skew staying in the
+ * range of the Snowflake clock tolerance, so keep the max block age that small.
  */
 public class SnowflakeIdGenerator implements IdentifierGenerator {
 
-  private final Snowflake snowflake = new Snowflake();
+  public static final String BLOCK_SIZE = "block_size";
+
+  public static final String MAX_BLOCK_AGE_MS = "max_block_age_ms";
+
+  private static volatile Snowflake snowflake;
+
+  private final ThreadLocal<IdBlock> buffer = new ThreadLocal<>();
+
+  private int blockSize = 128;
+
+  private int maxBlockAgeMs = 10;
+
+  /**
+   * Install the Snowflake shared by all generators.
+   *
+   * @param configured Snowflake to use
+   */
+  public static void setSnowflake(Snowflake configured) {
+    snowflake = configured;
+  }
+
+  /**
+   * Get the shared Snowflake, creating a default one if none was installed.
+   *
+   * @return Snowflake.
+   */
+  public static Snowflake getSnowflake() {
+    Snowflake current = snowflake;
+    if (current == null) {
+      synchronized (SnowflakeIdGenerator.class) {
+        if (snowflake == null) {
+          snowflake = new Snowflake();
+        }
+        current = snowflake;
+      }
+    }
+    return current;
+  }
+
+  @Override
+  public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry)
+      throws MappingException {
+    blockSize = Math.max(1, ConfigurationHelper.getInt(BLOCK_SIZE, parameters, blockSize));
+    maxBlockAgeMs = ConfigurationHelper.getInt(MAX_BLOCK_AGE_MS, parameters, maxBlockAgeMs);
+  }
 
   @Override
   public Serializable generate(SharedSessionContractImplementor session, Object object)
       throws HibernateException {
-    return snowflake.nextId();
+    Snowflake current = getSnowflake();
+    if (blockSize == 1) {
+      return current.nextId();
+    }
+    current.checkLease();
+    IdBlock block = buffer.get();
+    boolean fresh = block != null && block.getSource() == current
+        && System.currentTimeMillis() - block.getReservedAt() <= maxBlockAgeMs;
+    if (!fresh || !block.hasNext()) {
+      block = current.reserve(fresh ? Math.min(blockSize, block.getSize() * 2) : 1);
+      buffer.set(block);
+    }
+    return block.next();
   }
 
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.snowflake;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Clock;
+
+/**
+ * Tuning options of a {@link Snowflake}. The defaults keep the classic behaviour: spin while a
+ * millisecond is exhausted and fail on any backward clock step.
+ */
+@Getter
+@Builder
+public class SnowflakeOptions {
+
+  /**
+   * How a thread waits for the next millisecond once the sequence is exhausted.
+   */
+  public enum WaitStrategy {
+    SPIN,
+    PARK
+  }
+
+  @Builder.Default
+  private final WaitStrategy waitStrategy = WaitStrategy.SPIN;
+
+  /**
+   * Largest backward clock step, in milliseconds, absorbed by the logical clock instead of
+   * failing. The logical clock never runs further than this ahead of the system clock.
+   */
+  private final long maxClockBackwardMillis;
+
+  /**
+   * Number of sequence lanes, a power of two. Each lane takes log2(stripes) of the sequence bits,
+   * so a lane can issue 4096 / stripes ids per millisecond. 1 disables striping.
+   */
+  @Builder.Default
+  private final int stripes = 1;
+
+  @Builder.Default
+  private final Clock clock = Clock.systemUTC();
+}
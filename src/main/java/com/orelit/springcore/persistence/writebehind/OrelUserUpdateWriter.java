@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.writebehind;
+
+import com.orelit.springcore.common.dto.OrelUserDto;
+import com.orelit.springcore.persistence.cache.CacheConfiguration;
+import com.orelit.springcore.persistence.converter.DepartmentMapper;
+import com.orelit.springcore.persistence.converter.OrelUserMapper;
+import com.orelit.springcore.persistence.entity.OrelUser;
+import com.orelit.springcore.persistence.repository.OrelUserTemplate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Writes a batch of queued user updates the way OrelUserService.updateOrelUser writes one, with
+ * the users read by one IN query and every update committed in one transaction. The phone number
+ * cache is evicted again after the commit, since a read during the transaction may have cached
+ * the old user.
+ */
+@Slf4j
+public class OrelUserUpdateWriter implements Consumer<List<OrelUserDto>> {
+
+  private final OrelUserTemplate orelUserTemplate;
+
+  private final OrelUserMapper orelUserMapper;
+
+  private final DepartmentMapper departmentMapper;
+
+  private final TransactionTemplate transactionTemplate;
+
+  private final CacheManager cacheManager;
+
+  public OrelUserUpdateWriter(OrelUserTemplate orelUserTemplate, OrelUserMapper orelUserMapper,
+                              DepartmentMapper departmentMapper,
+                              TransactionTemplate transactionTemplate, CacheManager cacheManager) {
+    this.orelUserTemplate = orelUserTemplate;
+    this.orelUserMapper = orelUserMapper;
+    this.departmentMapper = departmentMapper;
+    this.transactionTemplate = transactionTemplate;
+    this.cacheManager = cacheManager;
+  }
+
+  /**
+   * Write updates in one transaction. Updates of users deleted since they were queued are
+   * dropped.
+   *
+   * @param updates Updates, at most one per phone number.
+   */
+  @Override
+  public void accept(List<OrelUserDto> updates) {
+    transactionTemplate.executeWithoutResult(status -> {
+      Map<String, OrelUser> saved = orelUserTemplate.findByPhoneNos(
+              updates.stream().map(OrelUserDto::getPhoneNo).toList()).stream()
+          .collect(Collectors.toMap(OrelUser::getPhoneNo, Function.identity()));
+      int dropped = 0;
+      for (OrelUserDto update : updates) {
+        OrelUser savedOrelUser = saved.get(update.getPhoneNo());
+        if (savedOrelUser == null) {
+          dropped++;
+          continue;
+        }
+        OrelUser updatedOrelUser = orelUserMapper.convertToUpdateEntity(update, savedOrelUser);
+        updatedOrelUser.setDepartment(departmentMapper.convertUpdateDepartmentDetailDtoToEntity(
+            update, savedOrelUser.getDepartment(), savedOrelUser));
+        orelUserTemplate.save(updatedOrelUser);
+      }
+      if (dropped > 0) {
+        log.warn("Dropped {} queued user updates, their users no longer exist", dropped);
+      }
+    });
+    Cache cache = cacheManager.getCache(CacheConfiguration.ORELUSER_DTO_BY_PHONE_NO);
+    if (cache != null) {
+      updates.forEach(update -> cache.evict(update.getPhoneNo()));
+    }
+  }
+}
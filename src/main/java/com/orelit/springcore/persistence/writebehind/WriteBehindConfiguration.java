@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.writebehind;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orelit.springcore.common.constant.SystemConstants;
+import com.orelit.springcore.common.properties.ApplicationConfigurationProperties;
+import com.orelit.springcore.persistence.converter.DepartmentMapper;
+import com.orelit.springcore.persistence.converter.OrelUserMapper;
+import com.orelit.springcore.persistence.repository.OrelUserTemplate;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+
+/**
+ * Acknowledges OrelUserService.updateOrelUser once the update is in a local journal and writes
+ * updates to the database in batches, see {@link WriteBehindQueue}. Enabled by
+ * application.write-behind.enabled; the reactive profile updates users over R2DBC without the
+ * queue, so it keeps writing synchronously.
+ */
+@Configuration
+@Profile("!" + SystemConstants.REACTIVE_PROFILE)
+@ConditionalOnProperty(prefix = "application.write-behind", name = "enabled", havingValue = "true")
+public class WriteBehindConfiguration {
+
+  /**
+   * Queue of user updates over the journal in application.write-behind.directory. The directory
+   * must be an absolute path: a relative one would resolve against the working directory, and a
+   * restart from another working directory would miss acknowledged updates left in the journal.
+   *
+   * @param properties          Application properties.
+   * @param objectMapper        Serializes the journal lines.
+   * @param orelUserTemplate    Reads and saves the users.
+   * @param orelUserMapper      Applies updates to users.
+   * @param departmentMapper    Applies updates to departments.
+   * @param transactionTemplate Transaction of a batch.
+   * @param cacheManager        Phone number caches evicted after a batch.
+   * @return Queue.
+   */
+  @Bean
+  public WriteBehindQueue writeBehindQueue(ApplicationConfigurationProperties properties,
+                                           ObjectMapper objectMapper,
+                                           OrelUserTemplate orelUserTemplate,
+                                           OrelUserMapper orelUserMapper,
+                                           DepartmentMapper departmentMapper,
+                                           TransactionTemplate transactionTemplate,
+                                           CacheManager cacheManager) {
+    ApplicationConfigurationProperties.WriteBehind settings = properties.getWriteBehind();
+    if (settings.getDirectory() == null || !Path.of(settings.getDirectory()).isAbsolute()) {
+      throw new IllegalArgumentException(
+          "application.write-behind.directory must be an absolute path, was " + settings.getDirectory());
+    }
+    return new WriteBehindQueue(
+        new WriteBehindJournal(Path.of(settings.getDirectory()), objectMapper),
+        new OrelUserUpdateWriter(orelUserTemplate, orelUserMapper, departmentMapper,
+            transactionTemplate, cacheManager),
+        settings.getFlushInterval(), settings.getMaxBatchSize(), settings.getMaxLag(),
+        settings.getMaxPending());
+  }
+
+  /**
+   * Report the queued updates, the age of the oldest one, the written updates, the failed
+   * flushes and the dead lettered updates.
+   *
+   * @param writeBehindQueue Write-behind queue.
+   * @return Binder for the write-behind meters.
+   */
+  @Bean
+  public MeterBinder writeBehindMetrics(WriteBehindQueue writeBehindQueue) {
+    return registry -> {
+      Gauge.builder("write_behind.pending", writeBehindQueue, WriteBehindQueue::getPendingCount)
+          .description("User updates acknowledged but not written to the database")
+          .register(registry);
+      Gauge.builder("write_behind.lag", writeBehindQueue, WriteBehindQueue::getLagMillis)
+          .description("Age in milliseconds of the oldest update not written to the database")
+          .register(registry);
+      FunctionCounter.builder("write_behind.written", writeBehindQueue,
+              WriteBehindQueue::getWrittenCount)
+          .description("Coalesced user updates written to the database")
+          .register(registry);
+      FunctionCounter.builder("write_behind.failed_flushes", writeBehindQueue,
+              WriteBehindQueue::getFailedFlushCount)
+          .description("Flushes that failed and were retried")
+          .register(registry);
+      FunctionCounter.builder("write_behind.dead_letters", writeBehindQueue,
+              WriteBehindQueue::getDeadLetterCount)
+          .description("User updates that could not be written, moved to the dead letter file")
+          .register(registry);
+    };
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.writebehind;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orelit.springcore.common.dto.OrelUserDto;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of queued user updates, one JSON line per update, in numbered segment
+ * files. An update is durable once {@link #force(long)} returns for its position; callers that
+ * arrive while a force is running share the next one, so a burst of updates costs a few disk
+ * syncs instead of one each. The queue rolls over to a new segment when it takes a batch to flush
+ * and deletes the old segments once the batch is committed, so the segments left after a crash
+ * hold every update that may be missing from the database. Updates that could not be written at
+ * all are moved to dead-letters.log in the same directory, in the same format, and are not read
+ * back on start.
+ */
+@Slf4j
+public class WriteBehindJournal implements Closeable {
+
+  private static final String PREFIX = "updates-";
+
+  private static final String SUFFIX = ".log";
+
+  private static final String DEAD_LETTERS = "dead-letters.log";
+
+  private final Path directory;
+
+  private final ObjectMapper objectMapper;
+
+  private final Object forceLock = new Object();
+
+  private final List<Path> closed = new ArrayList<>();
+
+  private FileChannel channel;
+
+  private long sequence;
+
+  private long written;
+
+  private long segmentStart;
+
+  private long forced;
+
+  public WriteBehindJournal(Path directory, ObjectMapper objectMapper) {
+    this.directory = directory;
+    this.objectMapper = objectMapper;
+  }
+
+  /**
+   * Open the journal and read the updates left by the last run. A torn last line, from a crash
+   * while it was written, is skipped; its update was never acknowledged.
+   *
+   * @return Updates of the existing segments, oldest first.
+   */
+  public List<OrelUserDto> open() {
+    try {
+      Files.createDirectories(directory);
+      List<Path> segments;
+      try (Stream<Path> files = Files.list(directory)) {
+        segments = files.filter(file -> sequenceOf(file) >= 0)
+            .sorted(Comparator.comparingLong(WriteBehindJournal::sequenceOf))
+            .toList();
+      }
+      List<OrelUserDto> updates = new ArrayList<>();
+      for (Path segment : segments) {
+        for (String line : Files.readAllLines(segment, StandardCharsets.UTF_8)) {
+          if (line.isBlank()) {
+            continue;
+          }
+          try {
+            updates.add(objectMapper.readValue(line, OrelUserDto.class));
+          } catch (JsonProcessingException ex) {
+            log.warn("Skipping an unreadable update in {}", segment);
+          }
+        }
+      }
+      synchronized (forceLock) {
+        synchronized (this) {
+          closed.addAll(segments);
+          sequence = segments.isEmpty() ? 0 : sequenceOf(segments.get(segments.size() - 1));
+          startSegment();
+        }
+      }
+      return updates;
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Could not open the write-behind journal in " + directory, ex);
+    }
+  }
+
+  /**
+   * Append an update to the current segment without forcing it to disk.
+   *
+   * @param update Update.
+   * @return Position to pass to {@link #force(long)}.
+   */
+  public synchronized long write(OrelUserDto update) {
+    try {
+      ByteBuffer line = ByteBuffer.wrap((objectMapper.writeValueAsString(update) + "\n")
+          .getBytes(StandardCharsets.UTF_8));
+      while (line.hasRemaining()) {
+        written += channel.write(line);
+      }
+      return written;
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Could not write to the write-behind journal", ex);
+    }
+  }
+
+  /**
+   * Wait until everything written up to a position is on disk.
+   *
+   * @param position Position returned by {@link #write(OrelUserDto)}.
+   */
+  public void force(long position) {
+    synchronized (forceLock) {
+      if (forced >= position) {
+        return;
+      }
+      FileChannel current;
+      long target;
+      synchronized (this) {
+        current = channel;
+        target = written;
+      }
+      try {
+        current.force(false);
+      } catch (IOException ex) {
+        throw new UncheckedIOException("Could not sync the write-behind journal", ex);
+      }
+      forced = target;
+    }
+  }
+
+  /**
+   * Close the current segment and continue in a new one.
+   *
+   * @return Every closed segment not deleted yet, to delete once their updates are committed.
+   */
+  public List<Path> rotate() {
+    synchronized (forceLock) {
+      synchronized (this) {
+        if (written > segmentStart) {
+          try {
+            channel.force(false);
+            channel.close();
+          } catch (IOException ex) {
+            throw new UncheckedIOException("Could not close a write-behind journal segment", ex);
+          }
+          forced = written;
+          closed.add(segmentPath(sequence));
+          startSegment();
+        }
+        return List.copyOf(closed);
+      }
+    }
+  }
+
+  /**
+   * Delete closed segments.
+   *
+   * @param segments Segments returned by {@link #rotate()}.
+   */
+  public void delete(List<Path> segments) {
+    for (Path segment : segments) {
+      try {
+        Files.deleteIfExists(segment);
+      } catch (IOException ex) {
+        log.warn("Could not delete {}, its updates are written again on the next start", segment, ex);
+      }
+    }
+    synchronized (this) {
+      closed.removeAll(segments);
+    }
+  }
+
+  /**
+   * Append an update that cannot be written to the dead letter file and force it to disk, so it
+   * outlives the segment it came from.
+   *
+   * @param update Update.
+   */
+  public void deadLetter(OrelUserDto update) {
+    try {
+      Files.writeString(directory.resolve(DEAD_LETTERS), objectMapper.writeValueAsString(update) + "\n",
+          StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Could not write to the write-behind dead letter file", ex);
+    }
+  }
+
+  /**
+   * Force and close the current segment.
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (forceLock) {
+      synchronized (this) {
+        if (channel != null) {
+          channel.force(false);
+          channel.close();
+          channel = null;
+        }
+      }
+    }
+  }
+
+  private void startSegment() {
+    sequence++;
+    try {
+      channel = FileChannel.open(segmentPath(sequence), StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Could not create a write-behind journal segment", ex);
+    }
+    segmentStart = written;
+  }
+
+  private Path segmentPath(long number) {
+    return directory.resolve(String.format("%s%012d%s", PREFIX, number, SUFFIX));
+  }
+
+  private static long sequenceOf(Path file) {
+    String name = file.getFileName().toString();
+    if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    } catch (NumberFormatException ex) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.writebehind;
+
+import com.orelit.springcore.common.dto.OrelUserDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind queue of user updates. An update is acknowledged once it is in the
+ * {@link WriteBehindJournal}; updates of the same phone number are coalesced, the last one wins,
+ * and a background thread writes the queued updates every flush interval, or as soon as a batch
+ * is full, with one transaction per batch. Queued and in-flight updates are visible through
+ * {@link #find(String)} so readers see their own writes before they reach the database.
+ *
+ * <p>The lag is bounded: while the oldest unwritten update is older than the max lag, for
+ * example because the database is down, new updates wait for the queue to catch up and fail if it
+ * does not within the max lag. A batch that fails because the database cannot be reached stays
+ * queued and is written again with the next one; updates carry the whole user, so writing one
+ * twice is harmless. A batch that fails for any other reason is written again one update at a
+ * time, and an update that fails on its own is moved to the journal's dead letter file instead of
+ * holding up the queue.
+ */
+@Slf4j
+public class WriteBehindQueue implements InitializingBean, DisposableBean {
+
+  private final WriteBehindJournal journal;
+
+  private final Consumer<List<OrelUserDto>> writer;
+
+  private final long flushIntervalMillis;
+
+  private final int maxBatchSize;
+
+  private final long maxLagMillis;
+
+  private final int maxPending;
+
+  private final Object flushLock = new Object();
+
+  private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+  private final LongAdder written = new LongAdder();
+
+  private final LongAdder failedFlushes = new LongAdder();
+
+  private final LongAdder deadLetters = new LongAdder();
+
+  private LinkedHashMap<String, Pending> pending = new LinkedHashMap<>();
+
+  private Map<String, Pending> flushing = Map.of();
+
+  private long flushingSince = Long.MAX_VALUE;
+
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * Create the queue.
+   *
+   * @param journal       Journal the updates are made durable in.
+   * @param writer        Writes one batch of updates in one transaction.
+   * @param flushInterval Time between flushes.
+   * @param maxBatchSize  Updates per batch.
+   * @param maxLag        Age of the oldest unwritten update at which new updates wait.
+   * @param maxPending    Queued phone numbers at which updates of new numbers wait.
+   */
+  public WriteBehindQueue(WriteBehindJournal journal, Consumer<List<OrelUserDto>> writer,
+                          Duration flushInterval, int maxBatchSize, Duration maxLag,
+                          int maxPending) {
+    if (flushInterval.compareTo(maxLag) >= 0) {
+      throw new IllegalArgumentException("Write-behind flush interval must be shorter than the max lag");
+    }
+    this.journal = journal;
+    this.writer = writer;
+    this.flushIntervalMillis = flushInterval.toMillis();
+    this.maxBatchSize = maxBatchSize;
+    this.maxLagMillis = maxLag.toMillis();
+    this.maxPending = maxPending;
+  }
+
+  /**
+   * Queue the updates left in the journal by the last run and start flushing.
+   */
+  @Override
+  public void afterPropertiesSet() {
+    List<OrelUserDto> recovered = journal.open();
+    if (!recovered.isEmpty()) {
+      log.info("Writing {} user updates left in the write-behind journal", recovered.size());
+    }
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      recovered.forEach(update -> put(update, now));
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "write-behind-flush");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Queue an update and return once it is on disk.
+   *
+   * @param update Whole user with its department, found by phone number when written.
+   * @throws IllegalStateException if the queue did not catch up within the max lag.
+   */
+  public void enqueue(OrelUserDto update) {
+    long position;
+    synchronized (this) {
+      long deadline = System.currentTimeMillis() + maxLagMillis;
+      while (isBehind(update.getPhoneNo())) {
+        long wait = deadline - System.currentTimeMillis();
+        if (wait <= 0) {
+          throw new IllegalStateException("Write-behind queue is " + getLagMillis() + " ms behind");
+        }
+        requestFlush();
+        try {
+          wait(Math.min(wait, flushIntervalMillis));
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted while waiting for the write-behind queue", ex);
+        }
+      }
+      position = journal.write(update);
+      put(update, System.currentTimeMillis());
+      if (pending.size() >= maxBatchSize) {
+        requestFlush();
+      }
+    }
+    journal.force(position);
+  }
+
+  private boolean isBehind(String phoneNo) {
+    return getLagMillis() > maxLagMillis
+        || pending.size() >= maxPending && !pending.containsKey(phoneNo);
+  }
+
+  private void put(OrelUserDto update, long now) {
+    Pending previous = pending.get(update.getPhoneNo());
+    pending.put(update.getPhoneNo(), new Pending(update, previous != null ? previous.since() : now));
+  }
+
+  /**
+   * Find the queued or in-flight update of a phone number.
+   *
+   * @param phoneNo Phone number.
+   * @return Latest unwritten update, null if there is none.
+   */
+  public synchronized OrelUserDto find(String phoneNo) {
+    Pending update = pending.get(phoneNo);
+    if (update == null) {
+      update = flushing.get(phoneNo);
+    }
+    return update != null ? update.update() : null;
+  }
+
+  /**
+   * Replace a user read from the database with its unwritten update, if there is one.
+   *
+   * @param orelUserDto User as read, may be null.
+   * @return The update, or the user as read.
+   */
+  public OrelUserDto overlay(OrelUserDto orelUserDto) {
+    if (orelUserDto == null) {
+      return null;
+    }
+    OrelUserDto update = find(orelUserDto.getPhoneNo());
+    return update != null ? update : orelUserDto;
+  }
+
+  private void requestFlush() {
+    if (scheduler != null && !scheduler.isShutdown() && flushRequested.compareAndSet(false, true)) {
+      scheduler.execute(this::flushQuietly);
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (RuntimeException ex) {
+      log.warn("Could not write queued user updates, retrying in {} ms", flushIntervalMillis, ex);
+    }
+  }
+
+  /**
+   * Write every queued update now, in batches of the max batch size.
+   */
+  public void flush() {
+    synchronized (flushLock) {
+      flushRequested.set(false);
+      Map<String, Pending> batch;
+      List<Path> segments;
+      synchronized (this) {
+        if (pending.isEmpty()) {
+          return;
+        }
+        batch = pending;
+        pending = new LinkedHashMap<>();
+        flushing = batch;
+        flushingSince = batch.values().iterator().next().since();
+        segments = journal.rotate();
+      }
+      List<OrelUserDto> updates = new ArrayList<>(batch.size());
+      batch.values().forEach(update -> updates.add(update.update()));
+      Set<String> deadLettered = new HashSet<>();
+      try {
+        for (int from = 0; from < updates.size(); from += maxBatchSize) {
+          write(updates.subList(from, Math.min(from + maxBatchSize, updates.size())), deadLettered);
+        }
+      } catch (RuntimeException ex) {
+        failedFlushes.increment();
+        synchronized (this) {
+          LinkedHashMap<String, Pending> requeued = new LinkedHashMap<>(batch);
+          requeued.keySet().removeAll(deadLettered);
+          pending.forEach((phoneNo, update) -> requeued.merge(phoneNo, update,
+              (older, newer) -> new Pending(newer.update(), older.since())));
+          pending = requeued;
+          flushing = Map.of();
+          flushingSince = Long.MAX_VALUE;
+          notifyAll();
+        }
+        throw ex;
+      }
+      journal.delete(segments);
+      written.add(updates.size() - deadLettered.size());
+      synchronized (this) {
+        flushing = Map.of();
+        flushingSince = Long.MAX_VALUE;
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Write one batch. When it fails for a reason other than an unreachable database, its updates
+   * are written one at a time and the ones that fail again are dead lettered.
+   *
+   * @param updates      Updates of the batch.
+   * @param deadLettered Phone numbers of the dead lettered updates, added to.
+   */
+  private void write(List<OrelUserDto> updates, Set<String> deadLettered) {
+    try {
+      writer.accept(updates);
+      return;
+    } catch (RuntimeException ex) {
+      if (isTransient(ex)) {
+        throw ex;
+      }
+      log.warn("Could not write a batch of {} user updates, writing them one at a time", updates.size(), ex);
+    }
+    for (OrelUserDto update : updates) {
+      try {
+        writer.accept(List.of(update));
+      } catch (RuntimeException ex) {
+        if (isTransient(ex)) {
+          throw ex;
+        }
+        journal.deadLetter(update);
+        deadLettered.add(update.getPhoneNo());
+        deadLetters.increment();
+        log.error("Moved the update of user {} to the write-behind dead letter file", update.getPhoneNo(), ex);
+      }
+    }
+  }
+
+  /**
+   * Whether a write failed because the database could not be reached, so it may succeed later.
+   */
+  private static boolean isTransient(RuntimeException ex) {
+    return ex instanceof TransientDataAccessException || ex instanceof RecoverableDataAccessException
+        || ex instanceof DataAccessResourceFailureException || ex instanceof CannotCreateTransactionException;
+  }
+
+  /**
+   * Stop flushing in the background and write what is left. Updates that cannot be written stay
+   * in the journal for the next start.
+   */
+  @Override
+  public void destroy() throws IOException, InterruptedException {
+    if (scheduler != null) {
+      scheduler.shutdown();
+      scheduler.awaitTermination(maxLagMillis, TimeUnit.MILLISECONDS);
+    }
+    try {
+      flush();
+    } catch (RuntimeException ex) {
+      log.warn("Could not write queued user updates, they are written on the next start", ex);
+    }
+    journal.close();
+  }
+
+  /**
+   * Age of the oldest update not written yet.
+   *
+   * @return Milliseconds, 0 when nothing is queued.
+   */
+  public synchronized long getLagMillis() {
+    long oldest = flushingSince;
+    if (!pending.isEmpty()) {
+      oldest = Math.min(oldest, pending.values().iterator().next().since());
+    }
+    return oldest == Long.MAX_VALUE ? 0 : Math.max(0, System.currentTimeMillis() - oldest);
+  }
+
+  public synchronized int getPendingCount() {
+    return pending.size() + flushing.size();
+  }
+
+  public long getWrittenCount() {
+    return written.sum();
+  }
+
+  public long getFailedFlushCount() {
+    return failedFlushes.sum();
+  }
+
+  public long getDeadLetterCount() {
+    return deadLetters.sum();
+  }
+
+  private record Pending(OrelUserDto update, long since) {
+  }
+}
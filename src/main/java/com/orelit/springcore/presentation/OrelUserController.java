@@ -1,9 +1,21 @@
 package com.orelit.springcore.presentation;
+import com.orelit.springcore.business.OrelUserCsvExportService;
+import com.orelit.springcore.business.OrelUserCsvImportService;
 import com.orelit.springcore.business.OrelUserService;
 import com.orelit.springcore.common.constant.ApiConstant;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.orelit.springcore.common.constant.SystemConstants;
+import com.orelit.springcore.common.dto.CsvImportStatusDto;
+import com.orelit.springcore.common.dto.OrelUserBulkResultDto;
 import com.orelit.springcore.common.dto.OrelUserDto;
+import com.orelit.springcore.common.dto.OrelUserLookupDto;
+import com.orelit.springcore.common.dto.OrelUserLookupResultDto;
 import com.orelit.springcore.common.exception.ErrorExample;
 import com.orelit.springcore.common.exception.ErrorMessageDto;
+import com.orelit.springcore.common.util.CursorPage;
+import com.orelit.springcore.common.util.RestResponsePage;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
@@ -12,16 +24,30 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.springframework.context.annotation.Profile;
 import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
 
 /**
- * Controller class responsible for managing OrelUser-related operations.
+ * Controller class responsible for managing OrelUser-related operations. With the reactive
+ * profile the same routes are served by {@link ReactiveOrelUserRouter} instead.
  */
 @RestController
+@Profile("!" + SystemConstants.REACTIVE_PROFILE)
 @RequestMapping(value = ApiConstant.BASE_PATH + "/OrelUser",
         produces = MediaType.APPLICATION_JSON_VALUE)
 @Tag(name = "OrelUser", description = "OrelUser APIs.")
@@ -29,8 +55,19 @@ public class OrelUserController {
 
     private final OrelUserService orelUserService;
 
-    public OrelUserController(OrelUserService orelUserService) {
+    private final OrelUserCsvImportService orelUserCsvImportService;
+
+    private final OrelUserCsvExportService orelUserCsvExportService;
+
+    private final ObjectWriter orelUserDtoWriter;
+
+    public OrelUserController(OrelUserService orelUserService, OrelUserCsvImportService orelUserCsvImportService,
+                              OrelUserCsvExportService orelUserCsvExportService, ObjectMapper objectMapper) {
         this.orelUserService = orelUserService;
+        this.orelUserCsvImportService = orelUserCsvImportService;
+        this.orelUserCsvExportService = orelUserCsvExportService;
+        this.orelUserDtoWriter = objectMapper.writerFor(OrelUserDto.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
 
     /**
@@ -49,6 +86,54 @@ public class OrelUserController {
         return orelUserService.createOrelUser(orelUserDto);
     }
 
+    /**
+     * Create many OrelUsers in one request.
+     *
+     * @param orelUserDtos - OrelUsers to be created.
+     * @return - One result per OrelUser, in request order.
+     */
+    @Operation(summary = "Create OrelUsers in bulk.")
+    @PostMapping("/bulk")
+    @ResponseStatus(code = HttpStatus.OK)
+    @ApiResponse(responseCode = "422", description = "Empty or too many OrelUsers",
+            content = @Content(schema = @Schema(implementation = ErrorMessageDto.class),
+                    examples = @ExampleObject(ErrorExample.VALIDATION_FAILED)))
+    public List<OrelUserBulkResultDto> createOrelUsers(@RequestBody List<OrelUserDto> orelUserDtos) {
+        return orelUserService.createOrelUsers(orelUserDtos);
+    }
+
+    /**
+     * Import OrelUsers from a CSV request body. The body is stored and imported in the background.
+     *
+     * @param csv - CSV with a header naming the OrelUserDto fields.
+     * @return - Status of the queued import.
+     */
+    @Operation(summary = "Import OrelUsers from CSV.")
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    @ResponseStatus(code = HttpStatus.ACCEPTED)
+    @ApiResponse(responseCode = "202", description = "Accepted")
+    public CsvImportStatusDto importOrelUsers(InputStream csv) {
+        return orelUserCsvImportService.submit(csv);
+    }
+
+    /**
+     * Get progress and rejected rows of a CSV import.
+     *
+     * @param jobId - Id of the import.
+     * @return - Status of the import.
+     */
+    @GetMapping("/import/{jobId}")
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "Get CSV import status.")
+    @ApiResponse(responseCode = "200", description = "OK")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "404", description = "CSV import not found",
+                    content = {@Content(schema = @Schema(implementation = ErrorMessageDto.class),
+                            examples = @ExampleObject(ErrorExample.NOT_FOUND))})})
+    public CsvImportStatusDto getImportStatus(@PathVariable String jobId) {
+        return orelUserCsvImportService.getStatus(jobId);
+    }
+
     /**
      * Update an existing OrelUser.
      *
@@ -111,6 +196,24 @@ public class OrelUserController {
         orelUserService.deleteOrelUser(phoneNo);
     }
 
+    /**
+     * Resolve many OrelUsers by phone number and id in one call.
+     *
+     * @param lookup - Phone numbers and ids to resolve.
+     * @return - Found OrelUsers by key and the keys that were not found.
+     */
+    @PostMapping("/lookup")
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "Get many OrelUsers by phone no and id.")
+    @ApiResponse(responseCode = "200", description = "OK")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "422", description = "No or too many keys",
+                    content = {@Content(schema = @Schema(implementation = ErrorMessageDto.class),
+                            examples = @ExampleObject(ErrorExample.VALIDATION_FAILED))})})
+    public OrelUserLookupResultDto lookupOrelUsers(@RequestBody OrelUserLookupDto lookup) {
+        return orelUserService.lookupOrelUsers(lookup);
+    }
+
     @GetMapping("/{id}")
     @ResponseStatus(HttpStatus.OK)
     @Operation(summary = "Get OrelUser by id.")
@@ -123,15 +226,115 @@ public class OrelUserController {
         return orelUserService.getOrelUserById(id);
     }
 
+    /**
+     * Get one page of OrelUsers.
+     *
+     * @param page - Zero based page number.
+     * @param size - Page size.
+     * @return - Page of OrelUserDto.
+     */
     @GetMapping("/list")
     @ResponseStatus(HttpStatus.OK)
     @Operation(summary = "Get OrelUser list")
     @ApiResponse(responseCode = "200", description = "OK")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "404", description = "OrelUser not found",
+            @ApiResponse(responseCode = "422", description = "Validation failed",
                     content = {@Content(schema = @Schema(implementation = ErrorMessageDto.class),
-                            examples = @ExampleObject(ErrorExample.NOT_FOUND))})})
-    public List<OrelUserDto> getOrelUserList() {
-        return orelUserService.getOrelUserList();
+                            examples = @ExampleObject(ErrorExample.VALIDATION_FAILED))})})
+    public RestResponsePage<OrelUserDto> getOrelUserList(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "" + SystemConstants.DEFAULT_PAGE_SIZE) int size) {
+        return orelUserService.getOrelUserList(page, size);
+    }
+
+    /**
+     * Get the OrelUsers following a continuation token, using keyset pagination over the ids.
+     *
+     * @param after - Continuation token from the previous page, omitted for the first page.
+     * @param limit - Page size.
+     * @return - Page of OrelUserDto with the token of the next page.
+     */
+    @GetMapping(value = "/list", params = "limit")
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "Get OrelUser list after a continuation token")
+    @ApiResponse(responseCode = "200", description = "OK")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "422", description = "Validation failed",
+                    content = {@Content(schema = @Schema(implementation = ErrorMessageDto.class),
+                            examples = @ExampleObject(ErrorExample.VALIDATION_FAILED))})})
+    public CursorPage<OrelUserDto> getOrelUserListAfter(
+            @RequestParam(required = false) String after,
+            @RequestParam int limit) {
+        return orelUserService.getOrelUserListAfter(after, limit);
+    }
+
+    /**
+     * Stream every OrelUser as newline delimited JSON. Rows are read through a database cursor and
+     * each OrelUserDto is written as soon as it is mapped, so the table is never held in memory.
+     *
+     * @return - One OrelUserDto per line.
+     */
+    @GetMapping(value = "/list/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream the OrelUser list as NDJSON")
+    @ApiResponse(responseCode = "200", description = "OK")
+    public StreamingResponseBody streamOrelUserList() {
+        return outputStream -> orelUserService.streamOrelUserList(orelUserDto -> {
+            try {
+                orelUserDtoWriter.writeValue(outputStream, orelUserDto);
+                outputStream.write('\n');
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+    }
+
+    /**
+     * Export all OrelUsers with their departments as CSV, streamed from a database cursor. The CSV
+     * is gzip compressed when the client accepts gzip.
+     *
+     * @param acceptEncoding - Accept-Encoding request header.
+     * @return - CSV response body.
+     */
+    @GetMapping(value = "/export.csv", produces = "text/csv")
+    @Operation(summary = "Export all OrelUsers as CSV")
+    @ApiResponse(responseCode = "200", description = "OK")
+    public ResponseEntity<StreamingResponseBody> exportOrelUsers(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(new MediaType("text", "csv", StandardCharsets.UTF_8));
+        headers.setContentDisposition(ContentDisposition.attachment().filename("orel-users.csv").build());
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            headers.add(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(outputStream -> orelUserCsvExportService.exportCsv(outputStream, gzip));
+    }
+
+    /**
+     * Get one page of the OrelUsers created in a time window, answered from the Snowflake id range.
+     *
+     * @param from  - Start of the window (ISO date time), inclusive.
+     * @param to    - End of the window (ISO date time), exclusive.
+     * @param after - Continuation token from the previous page, omitted for the first page.
+     * @param limit - Page size.
+     * @return - Page of OrelUserDto ordered by creation, with the token of the next page.
+     */
+    @GetMapping("/created")
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "Get OrelUsers created between two times")
+    @ApiResponse(responseCode = "200", description = "OK")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "422", description = "Validation failed",
+                    content = {@Content(schema = @Schema(implementation = ErrorMessageDto.class),
+                            examples = @ExampleObject(ErrorExample.VALIDATION_FAILED))})})
+    public CursorPage<OrelUserDto> getOrelUserListCreatedBetween(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + SystemConstants.DEFAULT_PAGE_SIZE) int limit) {
+        return orelUserService.getOrelUserListCreatedBetween(from, to, after, limit);
     }
 }
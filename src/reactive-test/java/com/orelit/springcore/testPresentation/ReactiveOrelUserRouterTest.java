@@ -0,0 +1,220 @@
+package com.orelit.springcore.testPresentation;
+
+import com.orelit.springcore.business.ReactiveOrelUserService;
+import com.orelit.springcore.common.dto.OrelUserBulkResultDto;
+import com.orelit.springcore.common.dto.OrelUserDto;
+import com.orelit.springcore.common.dto.OrelUserLookupDto;
+import com.orelit.springcore.common.exception.ErrorHandler;
+import com.orelit.springcore.common.properties.ApplicationConfigurationProperties;
+import com.orelit.springcore.persistence.cache.PhoneNoBloomFilter;
+import com.orelit.springcore.persistence.cache.PhoneNoNegativeCache;
+import com.orelit.springcore.persistence.repository.impl.ReactiveOrelUserTemplateImpl;
+import com.orelit.springcore.presentation.ReactiveOrelUserHandler;
+import com.orelit.springcore.presentation.ReactiveOrelUserRouter;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the reactive OrelUser routes against an in-memory R2DBC database.
+ */
+public class ReactiveOrelUserRouterTest {
+
+    private static final String PATH = "/api/v1/OrelUser";
+
+    private WebTestClient webTestClient;
+
+    private DatabaseClient databaseClient;
+
+    private PhoneNoBloomFilter phoneNoBloomFilter;
+
+    @BeforeEach
+    public void setUp() {
+        ConnectionFactory connectionFactory = ConnectionFactories.get(
+                "r2dbc:h2:mem:///" + UUID.randomUUID() + "?options=DB_CLOSE_DELAY=-1");
+        databaseClient = DatabaseClient.create(connectionFactory);
+        databaseClient.sql("CREATE TABLE orel_user (id BIGINT PRIMARY KEY, created_at DATE, updated_at DATE, "
+                + "created_by VARCHAR(255), phone_no VARCHAR(255) UNIQUE, language VARCHAR(255) NOT NULL, "
+                + "first_name VARCHAR(255), middle_name VARCHAR(255), email VARCHAR(255))").then().block();
+        databaseClient.sql("CREATE TABLE department (id BIGINT PRIMARY KEY, dep_name VARCHAR(255), "
+                + "dep_contact_no VARCHAR(255), dep_email VARCHAR(255), user_id BIGINT REFERENCES orel_user (id))")
+                .then().block();
+
+        ApplicationConfigurationProperties properties = new ApplicationConfigurationProperties();
+        phoneNoBloomFilter = new PhoneNoBloomFilter(properties);
+        PhoneNoNegativeCache phoneNoNegativeCache = new PhoneNoNegativeCache(properties);
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        ReactiveOrelUserService service = new ReactiveOrelUserService(
+                new ReactiveOrelUserTemplateImpl(connectionFactory, phoneNoBloomFilter, phoneNoNegativeCache),
+                phoneNoBloomFilter, phoneNoNegativeCache, validator);
+        ReactiveOrelUserHandler handler = new ReactiveOrelUserHandler(service, validator, new ErrorHandler());
+        webTestClient = WebTestClient.bindToRouterFunction(new ReactiveOrelUserRouter().orelUserRoutes(handler))
+                .build();
+    }
+
+    @Test
+    public void testCreateAndGetOrelUser() {
+        webTestClient.post().uri(PATH).bodyValue(orelUserDto("0123456789"))
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient.get().uri(PATH + "?phoneNo=0123456789")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.firstName").isEqualTo("John")
+                .jsonPath("$.dep_name").isEqualTo("Finance");
+
+        webTestClient.post().uri(PATH).bodyValue(orelUserDto("0123456789"))
+                .exchange()
+                .expectStatus().is5xxServerError()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Phone no already exists!");
+    }
+
+    @Test
+    public void testCreateOrelUserRejectsInvalidBody() {
+        OrelUserDto orelUserDto = orelUserDto("123");
+
+        webTestClient.post().uri(PATH).bodyValue(orelUserDto)
+                .exchange()
+                .expectStatus().isEqualTo(422)
+                .expectBody()
+                .jsonPath("$.errors[0].path").isEqualTo("phoneNo");
+    }
+
+    @Test
+    public void testUpdateAndDeleteOrelUser() {
+        webTestClient.post().uri(PATH).bodyValue(orelUserDto("0123456789")).exchange().expectStatus().isOk();
+        OrelUserDto updated = orelUserDto("0123456789");
+        updated.setFirstName("Jane");
+        updated.setDep_name("Sales");
+
+        webTestClient.put().uri(PATH).bodyValue(updated)
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.get().uri(PATH + "?phoneNo=0123456789")
+                .exchange()
+                .expectBody()
+                .jsonPath("$.firstName").isEqualTo("Jane")
+                .jsonPath("$.dep_name").isEqualTo("Sales");
+
+        webTestClient.delete().uri(PATH + "?phoneNo=0123456789").exchange().expectStatus().isOk();
+        webTestClient.get().uri(PATH + "?phoneNo=0123456789").exchange().expectStatus().isNotFound();
+        webTestClient.put().uri(PATH).bodyValue(updated).exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    public void testBulkCreateAndPages() {
+        List<OrelUserDto> orelUserDtos = List.of(orelUserDto("0123456780"), orelUserDto("0123456781"),
+                orelUserDto("0123456781"), orelUserDto("0123456782"), orelUserDto("bad"));
+
+        List<OrelUserBulkResultDto> results = webTestClient.post().uri(PATH + "/bulk").bodyValue(orelUserDtos)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(new ParameterizedTypeReference<List<OrelUserBulkResultDto>>() {
+                })
+                .returnResult().getResponseBody();
+        assertThat(results).extracting(OrelUserBulkResultDto::getStatus).containsExactly(
+                OrelUserBulkResultDto.Status.CREATED, OrelUserBulkResultDto.Status.CREATED,
+                OrelUserBulkResultDto.Status.DUPLICATE, OrelUserBulkResultDto.Status.CREATED,
+                OrelUserBulkResultDto.Status.INVALID);
+
+        webTestClient.get().uri(PATH + "/list?page=1&size=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.totalElements").isEqualTo(3)
+                .jsonPath("$.content.length()").isEqualTo(1)
+                .jsonPath("$.content[0].phoneNo").isEqualTo("0123456782");
+
+        webTestClient.get().uri(PATH + "/list?limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.content.length()").isEqualTo(2)
+                .jsonPath("$.next").isNotEmpty();
+
+        List<OrelUserDto> streamed = webTestClient.get().uri(PATH + "/list/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(OrelUserDto.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+        assertThat(streamed).extracting(OrelUserDto::getPhoneNo)
+                .containsExactly("0123456780", "0123456781", "0123456782");
+    }
+
+    @Test
+    public void testLookupReportsMissingKeys() {
+        webTestClient.post().uri(PATH).bodyValue(orelUserDto("0123456789")).exchange().expectStatus().isOk();
+
+        webTestClient.post().uri(PATH + "/lookup")
+                .bodyValue(OrelUserLookupDto.builder()
+                        .phoneNos(List.of("0123456789", "0999999999"))
+                        .ids(List.of(42L))
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.byPhoneNo['0123456789'].firstName").isEqualTo("John")
+                .jsonPath("$.missingPhoneNos[0]").isEqualTo("0999999999")
+                .jsonPath("$.missingIds[0]").isEqualTo(42);
+
+        webTestClient.post().uri(PATH + "/lookup").bodyValue(new OrelUserLookupDto())
+                .exchange()
+                .expectStatus().isEqualTo(422);
+    }
+
+    @Test
+    public void testUserCreatedThroughAnotherInstanceIsFound() {
+        phoneNoBloomFilter.build(phoneNos -> { });
+        databaseClient.sql("INSERT INTO orel_user (id, phone_no, language, first_name) "
+                + "VALUES (1, '0123456789', 'English', 'John')").then().block();
+
+        webTestClient.get().uri(PATH + "?phoneNo=0123456789")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.firstName").isEqualTo("John");
+        webTestClient.post().uri(PATH + "/lookup")
+                .bodyValue(OrelUserLookupDto.builder().phoneNos(List.of("0123456789")).build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.byPhoneNo['0123456789'].firstName").isEqualTo("John");
+    }
+
+    @Test
+    public void testGetOrelUserByUnknownIdIsNotFound() {
+        webTestClient.get().uri(PATH + "/42").exchange().expectStatus().isNotFound();
+        webTestClient.get().uri(PATH + "/abc").exchange().expectStatus().isEqualTo(422);
+    }
+
+    private static OrelUserDto orelUserDto(String phoneNo) {
+        return OrelUserDto.builder()
+                .phoneNo(phoneNo)
+                .language("English")
+                .firstName("John")
+                .middleName("Doe")
+                .email("john@example.com")
+                .dep_name("Finance")
+                .dep_contact_no("0112345678")
+                .dep_email("finance@example.com")
+                .build();
+    }
+}
@@ -0,0 +1,272 @@
+package com.orelit.springcore.business;
+
+
+import com.orelit.springcore.common.constant.SystemConstants;
+import com.orelit.springcore.common.dto.OrelUserBulkResultDto;
+import com.orelit.springcore.common.dto.OrelUserDto;
+import com.orelit.springcore.common.dto.OrelUserLookupDto;
+import com.orelit.springcore.common.dto.OrelUserLookupResultDto;
+import com.orelit.springcore.common.exception.NotFoundException;
+import com.orelit.springcore.common.util.CursorPage;
+import com.orelit.springcore.common.util.RestResponsePage;
+import com.orelit.springcore.persistence.cache.PhoneNoBloomFilter;
+import com.orelit.springcore.persistence.cache.PhoneNoNegativeCache;
+import com.orelit.springcore.persistence.repository.ReactiveOrelUserTemplate;
+import jakarta.validation.Validator;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Non-blocking versions of the {@link OrelUserService} operations, for the reactive profile.
+ * Request checks and bulk and lookup results come from {@link OrelUserRequests}, so errors are
+ * the same exceptions with the same messages, emitted instead of thrown.
+ */
+@Service
+@Profile(SystemConstants.REACTIVE_PROFILE)
+public class ReactiveOrelUserService {
+
+    private final ReactiveOrelUserTemplate reactiveOrelUserTemplate;
+
+    private final PhoneNoBloomFilter phoneNoBloomFilter;
+
+    private final PhoneNoNegativeCache phoneNoNegativeCache;
+
+    private final Validator validator;
+
+    public ReactiveOrelUserService(ReactiveOrelUserTemplate reactiveOrelUserTemplate, PhoneNoBloomFilter phoneNoBloomFilter, PhoneNoNegativeCache phoneNoNegativeCache, Validator validator) {
+        this.reactiveOrelUserTemplate = reactiveOrelUserTemplate;
+        this.phoneNoBloomFilter = phoneNoBloomFilter;
+        this.phoneNoNegativeCache = phoneNoNegativeCache;
+        this.validator = validator;
+    }
+
+    /**
+     * Save OrelUser with its department.
+     *
+     * @param orelUserDto - Contains OrelUser data.
+     * @return - The created OrelUser DTO.
+     */
+    public Mono<OrelUserDto> createOrelUser(OrelUserDto orelUserDto) {
+
+        return existsPhoneNoValidation(orelUserDto.getPhoneNo())
+                .then(reactiveOrelUserTemplate.insertAll(List.of(orelUserDto)))
+                .thenReturn(orelUserDto);
+    }
+
+    /**
+     * Validate if a phone number already exists. Numbers the phone number filter has never seen
+     * are new without asking the database.
+     *
+     * @param phoneNo - The phone number to be validated.
+     * @return - Completes empty when the number is new.
+     */
+    private Mono<Void> existsPhoneNoValidation(String phoneNo) {
+        if (!phoneNoBloomFilter.mightContain(phoneNo)) {
+            return Mono.empty();
+        }
+        return reactiveOrelUserTemplate.findIdByPhoneNo(phoneNo)
+                .flatMap(id -> Mono.<Void>error(new RuntimeException("Phone no already exists!")))
+                .switchIfEmpty(Mono.fromRunnable(phoneNoBloomFilter::recordFalsePositive));
+    }
+
+    /**
+     * Save many OrelUsers, with the same rules and results as
+     * {@link OrelUserService#createOrelUsers(List)}. Chunks are inserted one after the other,
+     * each in its own transaction.
+     *
+     * @param orelUserDtos - OrelUsers to create, at most {@link SystemConstants#MAX_BULK_SIZE}.
+     * @return - One result per item, in request order.
+     */
+    public Mono<List<OrelUserBulkResultDto>> createOrelUsers(List<OrelUserDto> orelUserDtos) {
+
+        return Mono.defer(() -> {
+            OrelUserRequests.checkBulkSize(orelUserDtos);
+            OrelUserBulkResultDto[] results = new OrelUserBulkResultDto[orelUserDtos.size()];
+            List<Integer> accepted = OrelUserRequests.rejectRepeated(orelUserDtos,
+                    OrelUserRequests.rejectInvalid(validator, orelUserDtos, results), results);
+            return reactiveOrelUserTemplate.findExistingPhoneNos(OrelUserRequests.phoneNosOf(orelUserDtos, accepted)
+                            .stream()
+                            .filter(phoneNoBloomFilter::mightContain)
+                            .toList())
+                    .collect(Collectors.toSet())
+                    .flatMapIterable(existing -> OrelUserRequests.chunks(
+                            OrelUserRequests.rejectExisting(orelUserDtos, accepted, existing, results)))
+                    .concatMap(chunk -> reactiveOrelUserTemplate.insertAll(chunk.stream().map(orelUserDtos::get).toList())
+                            .thenReturn(true)
+                            .onErrorReturn(DataAccessException.class, false)
+                            .doOnNext(saved -> OrelUserRequests.chunkResults(orelUserDtos, chunk, saved, results)))
+                    .then(Mono.fromSupplier(() -> List.of(results)));
+        });
+    }
+
+    /**
+     * Update OrelUser and its department.
+     *
+     * @param orelUserDto - Contains OrelUser data.
+     * @return - The updated OrelUser DTO.
+     */
+    public Mono<OrelUserDto> updateOrelUser(OrelUserDto orelUserDto) {
+
+        return reactiveOrelUserTemplate.findIdByPhoneNo(orelUserDto.getPhoneNo())
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("OrelUser not found!")))
+                .flatMap(id -> reactiveOrelUserTemplate.update(id, orelUserDto))
+                .thenReturn(orelUserDto);
+    }
+
+    /**
+     * Retrieve a OrelUserDto by phone number. Numbers recently found missing are rejected without
+     * a query. The phone number filter is not consulted, since it only sees inserts made through
+     * this instance.
+     *
+     * @param phoneNo - The phone number to identify the OrelUser.
+     * @return OrelUserDto - The DTO representing the retrieved OrelUser.
+     */
+    public Mono<OrelUserDto> getOrelUserByPhoneNo(String phoneNo) {
+
+        if (phoneNoNegativeCache.isMissing(phoneNo)) {
+            return Mono.error(new NotFoundException("OrelUser not found!"));
+        }
+        return reactiveOrelUserTemplate.findDtoByPhoneNo(phoneNo)
+                .switchIfEmpty(Mono.defer(() -> {
+                    phoneNoNegativeCache.markMissing(phoneNo);
+                    return Mono.error(new NotFoundException("OrelUser not found!"));
+                }));
+    }
+
+    /**
+     * Delete a OrelUser record and its department by phone number.
+     *
+     * @param phoneNo - The phone number to identify the OrelUser to delete.
+     * @return - Completes when deleted.
+     */
+    public Mono<Void> deleteOrelUser(String phoneNo) {
+
+        return reactiveOrelUserTemplate.findIdByPhoneNo(phoneNo)
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("OrelUser not found!")))
+                .flatMap(id -> reactiveOrelUserTemplate.delete(id, phoneNo))
+                .doOnSuccess(done -> phoneNoNegativeCache.invalidate(phoneNo));
+    }
+
+    /**
+     * Resolve many OrelUsers by phone number and id, with the same rules and results as
+     * {@link OrelUserService#lookupOrelUsers(OrelUserLookupDto)}. The phone number and id queries
+     * run concurrently.
+     *
+     * @param lookup - Phone numbers and ids, at most {@link SystemConstants#MAX_LOOKUP_SIZE} in total.
+     * @return - Found OrelUsers by key and the missing keys.
+     */
+    public Mono<OrelUserLookupResultDto> lookupOrelUsers(OrelUserLookupDto lookup) {
+
+        return Mono.defer(() -> {
+            Set<String> phoneNos = OrelUserRequests.lookupPhoneNos(lookup);
+            Set<Long> ids = OrelUserRequests.lookupIds(lookup);
+            OrelUserRequests.checkLookupSize(phoneNos, ids);
+
+            List<String> candidates = phoneNos.stream()
+                    .filter(phoneNo -> !phoneNoNegativeCache.isMissing(phoneNo))
+                    .toList();
+            Mono<Map<String, OrelUserDto>> byPhoneNoQuery = reactiveOrelUserTemplate.findByPhoneNos(candidates)
+                    .collectMap(OrelUserDto::getPhoneNo, orelUserDto -> orelUserDto, LinkedHashMap::new);
+            Mono<Map<Long, OrelUserDto>> byIdQuery = reactiveOrelUserTemplate.findByIds(ids)
+                    .collectMap(Tuple2::getT1, Tuple2::getT2, LinkedHashMap::new);
+            return Mono.zip(byPhoneNoQuery, byIdQuery,
+                    (byPhoneNo, byId) -> OrelUserRequests.lookupResult(phoneNos, ids, byPhoneNo, byId));
+        });
+    }
+
+    /**
+     * Retrieve a OrelUserDto by its unique ID.
+     *
+     * @param id - The ID of the OrelUser to retrieve.
+     * @return OrelUserDto - The DTO representing the retrieved OrelUser.
+     */
+    public Mono<OrelUserDto> getOrelUserById(Long id) {
+
+        return reactiveOrelUserTemplate.findDtoById(id)
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("OrelUser not found!")));
+    }
+
+    /**
+     * Retrieve one page of users, ordered by id. The page and the count are queried concurrently.
+     *
+     * @param page - Zero based page number.
+     * @param size - Page size, at most {@link SystemConstants#MAX_PAGE_SIZE}.
+     * @return - Page of OrelUserDto objects.
+     */
+    public Mono<RestResponsePage<OrelUserDto>> getOrelUserList(int page, int size) {
+        return Mono.defer(() -> {
+            OrelUserRequests.checkPage(page, size);
+            PageRequest pageable = PageRequest.of(page, size, Sort.by("id"));
+            return Mono.zip(reactiveOrelUserTemplate.findAllDtos(pageable.getOffset(), size).collectList(),
+                    reactiveOrelUserTemplate.count(),
+                    (content, total) -> new RestResponsePage<>(content, pageable, total));
+        });
+    }
+
+    /**
+     * Retrieve the users following a continuation token, ordered by id.
+     *
+     * @param after - Continuation token of the previous page, null for the first page.
+     * @param limit - Page size, at most {@link SystemConstants#MAX_PAGE_SIZE}.
+     * @return - Page of OrelUserDto objects with the token of the next page.
+     */
+    public Mono<CursorPage<OrelUserDto>> getOrelUserListAfter(String after, int limit) {
+        return Mono.fromSupplier(() -> {
+                    OrelUserRequests.checkLimit(limit);
+                    return OrelUserRequests.afterId(after);
+                })
+                .flatMapMany(afterId -> reactiveOrelUserTemplate.findAfter(afterId, limit + 1))
+                .collectList()
+                .map(rows -> toCursorPage(rows, limit));
+    }
+
+    private static CursorPage<OrelUserDto> toCursorPage(List<Tuple2<Long, OrelUserDto>> rows, int limit) {
+        String next = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            next = CursorPage.encodeToken(rows.get(limit - 1).getT1());
+        }
+        return new CursorPage<>(rows.stream().map(Tuple2::getT2).toList(), next);
+    }
+
+    /**
+     * Emit every user in id order, at the pace the subscriber requests them.
+     *
+     * @return - All users.
+     */
+    public Flux<OrelUserDto> streamOrelUserList() {
+        return reactiveOrelUserTemplate.streamAll();
+    }
+
+    /**
+     * Retrieve users created in a time window.
+     *
+     * @param from - Start of the window, inclusive.
+     * @param to   - End of the window, exclusive.
+     * @return - OrelUserDto objects ordered by creation.
+     */
+    public Mono<CursorPage<OrelUserDto>> getOrelUserListCreatedBetween(Instant from, Instant to, String after,
+                                                                       int limit) {
+        return Mono.fromSupplier(() -> {
+                    OrelUserRequests.checkWindow(from, to);
+                    OrelUserRequests.checkLimit(limit);
+                    return OrelUserRequests.afterId(after);
+                })
+                .flatMapMany(afterId -> reactiveOrelUserTemplate.findCreatedBetween(from, to, afterId, limit + 1))
+                .collectList()
+                .map(rows -> toCursorPage(rows, limit));
+    }
+}
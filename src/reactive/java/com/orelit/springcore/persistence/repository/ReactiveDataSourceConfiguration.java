@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2023 Sinorbis Technology or its affiliates
+ *
+ * Information contained within this file cannot be copied,
+ * distributed and/or practised without the written consent of
+ * Sinorbis Technology or its affiliates.
+ */
+
+package com.orelit.springcore.persistence.repository;
+
+import com.orelit.springcore.common.constant.SystemConstants;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * JDBC DataSource for the reactive profile. Spring Boot does not create one when an R2DBC
+ * ConnectionFactory exists, but JPA is still used for startup and background work, like the phone
+ * number filter, the Snowflake node lease and the CSV import. Requests are served over R2DBC.
+ */
+@Configuration
+@Profile(SystemConstants.REACTIVE_PROFILE)
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class ReactiveDataSourceConfiguration {
+
+  /**
+   * DataSource from the spring.datasource properties, like the servlet stack uses.
+   *
+   * @param properties spring.datasource properties.
+   * @return Hikari DataSource.
+   */
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource dataSource(DataSourceProperties properties) {
+    return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+}
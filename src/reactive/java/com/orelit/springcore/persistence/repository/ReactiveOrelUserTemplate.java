@@ -0,0 +1,47 @@
+package com.orelit.springcore.persistence.repository;
+
+
+import com.orelit.springcore.common.dto.OrelUserDto;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Defines non-blocking methods for saving and querying OrelUser data with their departments over
+ * R2DBC. Methods returning a tuple give the OrelUser id with its DTO.
+ */
+
+public interface ReactiveOrelUserTemplate {
+
+    Mono<Void> insertAll(List<OrelUserDto> orelUserDtos);
+
+    Mono<Void> update(Long id, OrelUserDto orelUserDto);
+
+    Mono<Long> findIdByPhoneNo(String phoneNo);
+
+    Mono<OrelUserDto> findDtoByPhoneNo(String phoneNo);
+
+    Mono<OrelUserDto> findDtoById(Long id);
+
+    Flux<OrelUserDto> findAllDtos(long offset, int limit);
+
+    Mono<Long> count();
+
+    Flux<String> findExistingPhoneNos(Collection<String> phoneNos);
+
+    Flux<OrelUserDto> findByPhoneNos(Collection<String> phoneNos);
+
+    Flux<Tuple2<Long, OrelUserDto>> findByIds(Collection<Long> ids);
+
+    Flux<Tuple2<Long, OrelUserDto>> findAfter(long afterId, int limit);
+
+    Flux<OrelUserDto> streamAll();
+
+    Flux<Tuple2<Long, OrelUserDto>> findCreatedBetween(Instant from, Instant to, long afterId, int limit);
+
+    Mono<Void> delete(Long id, String phoneNo);
+}
@@ -0,0 +1,389 @@
+package com.orelit.springcore.persistence.repository.impl;
+
+
+import com.orelit.springcore.common.constant.SystemConstants;
+import com.orelit.springcore.common.dto.OrelUserDto;
+import com.orelit.springcore.persistence.cache.PhoneNoBloomFilter;
+import com.orelit.springcore.persistence.cache.PhoneNoNegativeCache;
+import com.orelit.springcore.persistence.repository.ReactiveOrelUserTemplate;
+import com.orelit.springcore.persistence.snowflake.Snowflake;
+import com.orelit.springcore.persistence.snowflake.SnowflakeIdGenerator;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Readable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+
+/**
+ * Implementation of the ReactiveOrelUserTemplate interface over R2DBC. Users and departments are
+ * read with one join per query and mapped straight to DTOs, there are no entities or persistence
+ * context on this side. Ids come from the same Snowflake as the JPA entities.
+ */
+@Service
+@Profile(SystemConstants.REACTIVE_PROFILE)
+public class ReactiveOrelUserTemplateImpl implements ReactiveOrelUserTemplate {
+
+    private static final String SELECT_DTO = "SELECT u.id, u.phone_no, u.language, u.first_name, u.middle_name, "
+            + "u.email, d.dep_name, d.dep_contact_no, d.dep_email "
+            + "FROM orel_user u LEFT JOIN department d ON d.user_id = u.id ";
+
+    private final DatabaseClient databaseClient;
+
+    private final TransactionalOperator transactionalOperator;
+
+    private final PhoneNoBloomFilter phoneNoBloomFilter;
+
+    private final PhoneNoNegativeCache phoneNoNegativeCache;
+
+    public ReactiveOrelUserTemplateImpl(ConnectionFactory connectionFactory,
+                                        PhoneNoBloomFilter phoneNoBloomFilter,
+                                        PhoneNoNegativeCache phoneNoNegativeCache) {
+
+        this.databaseClient = DatabaseClient.create(connectionFactory);
+        // Not a bean, so @Transactional keeps resolving to the JPA transaction manager.
+        this.transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+        this.phoneNoBloomFilter = phoneNoBloomFilter;
+        this.phoneNoNegativeCache = phoneNoNegativeCache;
+    }
+
+    /**
+     * Insert users with their departments in one transaction, with one multi-row INSERT per table.
+     * Once the transaction commits, the phone numbers are added to the phone number filter and
+     * dropped from the negative cache; a failed insert leaves both unchanged.
+     *
+     * @param orelUserDtos - Users to insert.
+     * @return Completes when committed.
+     */
+    @Override
+    public Mono<Void> insertAll(List<OrelUserDto> orelUserDtos) {
+
+        if (orelUserDtos.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            Snowflake snowflake = SnowflakeIdGenerator.getSnowflake();
+            List<Object[]> users = new ArrayList<>(orelUserDtos.size());
+            List<Object[]> departments = new ArrayList<>(orelUserDtos.size());
+            for (OrelUserDto orelUserDto : orelUserDtos) {
+                long id = snowflake.nextId();
+                users.add(new Object[]{id, orelUserDto.getPhoneNo(), orelUserDto.getLanguage(),
+                        orelUserDto.getFirstName(), orelUserDto.getMiddleName(), orelUserDto.getEmail()});
+                departments.add(new Object[]{snowflake.nextId(), orelUserDto.getDep_name(),
+                        orelUserDto.getDep_contact_no(), orelUserDto.getDep_email(), id});
+            }
+            return insertRows("INSERT INTO orel_user (id, phone_no, language, first_name, middle_name, email) VALUES ",
+                    users)
+                    .then(insertRows("INSERT INTO department (id, dep_name, dep_contact_no, dep_email, user_id) VALUES ",
+                            departments))
+                    .as(transactionalOperator::transactional);
+        }).doOnSuccess(done -> orelUserDtos.forEach(orelUserDto -> {
+            phoneNoBloomFilter.put(orelUserDto.getPhoneNo());
+            phoneNoNegativeCache.invalidate(orelUserDto.getPhoneNo());
+        }));
+    }
+
+    private Mono<Void> insertRows(String insert, List<Object[]> rows) {
+
+        StringBuilder sql = new StringBuilder(insert);
+        for (int r = 0; r < rows.size(); r++) {
+            sql.append(r == 0 ? "(" : ", (");
+            for (int c = 0; c < rows.get(r).length; c++) {
+                sql.append(c == 0 ? ":p" : ", :p").append(r).append('_').append(c);
+            }
+            sql.append(')');
+        }
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        for (int r = 0; r < rows.size(); r++) {
+            for (int c = 0; c < rows.get(r).length; c++) {
+                spec = bindText(spec, "p" + r + "_" + c, rows.get(r)[c]);
+            }
+        }
+        return spec.then();
+    }
+
+    /**
+     * Update a user and its department in one transaction, inserting the department if the user
+     * has none yet.
+     *
+     * @param id          - Id of the user.
+     * @param orelUserDto - New user and department details.
+     * @return Completes when committed.
+     */
+    @Override
+    public Mono<Void> update(Long id, OrelUserDto orelUserDto) {
+
+        DatabaseClient.GenericExecuteSpec userSpec = databaseClient.sql("UPDATE orel_user SET language = :language, "
+                + "first_name = :firstName, middle_name = :middleName, email = :email WHERE id = :id");
+        userSpec = bindText(userSpec, "language", orelUserDto.getLanguage());
+        userSpec = bindText(userSpec, "firstName", orelUserDto.getFirstName());
+        userSpec = bindText(userSpec, "middleName", orelUserDto.getMiddleName());
+        userSpec = bindText(userSpec, "email", orelUserDto.getEmail());
+        Mono<Long> updateUser = userSpec.bind("id", id)
+                .fetch()
+                .rowsUpdated();
+        DatabaseClient.GenericExecuteSpec departmentSpec = databaseClient.sql("UPDATE department SET dep_name = :depName, "
+                + "dep_contact_no = :depContactNo, dep_email = :depEmail WHERE user_id = :userId");
+        departmentSpec = bindText(departmentSpec, "depName", orelUserDto.getDep_name());
+        departmentSpec = bindText(departmentSpec, "depContactNo", orelUserDto.getDep_contact_no());
+        departmentSpec = bindText(departmentSpec, "depEmail", orelUserDto.getDep_email());
+        Mono<Long> updateDepartment = departmentSpec.bind("userId", id)
+                .fetch()
+                .rowsUpdated();
+        Mono<Void> insertDepartment = Mono.defer(() -> insertRows(
+                "INSERT INTO department (id, dep_name, dep_contact_no, dep_email, user_id) VALUES ",
+                List.<Object[]>of(new Object[]{SnowflakeIdGenerator.getSnowflake().nextId(),
+                        orelUserDto.getDep_name(), orelUserDto.getDep_contact_no(),
+                        orelUserDto.getDep_email(), id})));
+        return updateUser
+                .then(updateDepartment)
+                .flatMap(updated -> updated == 0 ? insertDepartment : Mono.empty())
+                .as(transactionalOperator::transactional);
+    }
+
+    /**
+     * Find the id of a user by phone number, reading only the id column.
+     *
+     * @param phoneNo - Phone number of the user.
+     * @return The id, or empty if not found.
+     */
+    @Override
+    public Mono<Long> findIdByPhoneNo(String phoneNo) {
+
+        return databaseClient.sql("SELECT id FROM orel_user WHERE phone_no = :phoneNo")
+                .bind("phoneNo", phoneNo)
+                .map(row -> row.get("id", Long.class))
+                .one();
+    }
+
+    /**
+     * Find a user with its department by phone number as a DTO.
+     *
+     * @param phoneNo - Phone number of the user.
+     * @return The OrelUserDto, or empty if not found.
+     */
+    @Override
+    public Mono<OrelUserDto> findDtoByPhoneNo(String phoneNo) {
+
+        return databaseClient.sql(SELECT_DTO + "WHERE u.phone_no = :phoneNo")
+                .bind("phoneNo", phoneNo)
+                .map(ReactiveOrelUserTemplateImpl::toDto)
+                .one();
+    }
+
+    /**
+     * Find a user with its department by id as a DTO.
+     *
+     * @param id - Id of the user.
+     * @return The OrelUserDto, or empty if not found.
+     */
+    @Override
+    public Mono<OrelUserDto> findDtoById(Long id) {
+
+        return databaseClient.sql(SELECT_DTO + "WHERE u.id = :id")
+                .bind("id", id)
+                .map(ReactiveOrelUserTemplateImpl::toDto)
+                .one();
+    }
+
+    /**
+     * Get one page of users with department details as DTOs, ordered by id.
+     *
+     * @param offset - Number of users to skip.
+     * @param limit  - Maximum number of users.
+     * @return Users ordered by id.
+     */
+    @Override
+    public Flux<OrelUserDto> findAllDtos(long offset, int limit) {
+
+        return databaseClient.sql(SELECT_DTO + "ORDER BY u.id LIMIT :limit OFFSET :offset")
+                .bind("limit", limit)
+                .bind("offset", offset)
+                .map(ReactiveOrelUserTemplateImpl::toDto)
+                .all();
+    }
+
+    /**
+     * Count all users.
+     *
+     * @return Number of users.
+     */
+    @Override
+    public Mono<Long> count() {
+
+        return databaseClient.sql("SELECT COUNT(*) FROM orel_user")
+                .map(row -> row.get(0, Long.class))
+                .one();
+    }
+
+    /**
+     * Find which of the given phone numbers are already stored, with one IN query per
+     * {@link SystemConstants#LOOKUP_IN_BATCH_SIZE} numbers.
+     *
+     * @param phoneNos - Phone numbers to check.
+     * @return Stored phone numbers.
+     */
+    @Override
+    public Flux<String> findExistingPhoneNos(Collection<String> phoneNos) {
+
+        return inBatches(phoneNos, batch -> databaseClient.sql("SELECT phone_no FROM orel_user WHERE phone_no IN (:phoneNos)")
+                .bind("phoneNos", batch)
+                .map(row -> row.get("phone_no", String.class))
+                .all());
+    }
+
+    /**
+     * Find users with their departments by phone number, with one IN query per
+     * {@link SystemConstants#LOOKUP_IN_BATCH_SIZE} numbers.
+     *
+     * @param phoneNos - Phone numbers to find.
+     * @return Users found, in no particular order.
+     */
+    @Override
+    public Flux<OrelUserDto> findByPhoneNos(Collection<String> phoneNos) {
+
+        return inBatches(phoneNos, batch -> databaseClient.sql(SELECT_DTO + "WHERE u.phone_no IN (:phoneNos)")
+                .bind("phoneNos", batch)
+                .map(ReactiveOrelUserTemplateImpl::toDto)
+                .all());
+    }
+
+    /**
+     * Find users with their departments by id, with one IN query per
+     * {@link SystemConstants#LOOKUP_IN_BATCH_SIZE} ids.
+     *
+     * @param ids - Ids to find.
+     * @return Ids with the users found, in no particular order.
+     */
+    @Override
+    public Flux<Tuple2<Long, OrelUserDto>> findByIds(Collection<Long> ids) {
+
+        return inBatches(ids, batch -> databaseClient.sql(SELECT_DTO + "WHERE u.id IN (:ids)")
+                .bind("ids", batch)
+                .map(ReactiveOrelUserTemplateImpl::toIdAndDto)
+                .all());
+    }
+
+    private static <K, T> Flux<T> inBatches(Collection<K> keys, Function<List<K>, Flux<T>> query) {
+
+        if (keys.isEmpty()) {
+            return Flux.empty();
+        }
+        List<K> keyList = new ArrayList<>(keys);
+        return Flux.range(0, (keyList.size() + SystemConstants.LOOKUP_IN_BATCH_SIZE - 1) / SystemConstants.LOOKUP_IN_BATCH_SIZE)
+                .map(batch -> keyList.subList(batch * SystemConstants.LOOKUP_IN_BATCH_SIZE,
+                        Math.min((batch + 1) * SystemConstants.LOOKUP_IN_BATCH_SIZE, keyList.size())))
+                .concatMap(query);
+    }
+
+    /**
+     * Get the users following an id, as an index seek on the primary key.
+     *
+     * @param afterId - Users with a greater id are returned.
+     * @param limit   - Maximum number of users.
+     * @return Ids with the users, ordered by id.
+     */
+    @Override
+    public Flux<Tuple2<Long, OrelUserDto>> findAfter(long afterId, int limit) {
+
+        return databaseClient.sql(SELECT_DTO + "WHERE u.id > :afterId ORDER BY u.id LIMIT :limit")
+                .bind("afterId", afterId)
+                .bind("limit", limit)
+                .map(ReactiveOrelUserTemplateImpl::toIdAndDto)
+                .all();
+    }
+
+    /**
+     * Emit every user in id order. Rows are pulled from the driver as the subscriber requests
+     * them, so the table is never held in memory.
+     *
+     * @return All users ordered by id.
+     */
+    @Override
+    public Flux<OrelUserDto> streamAll() {
+
+        return databaseClient.sql(SELECT_DTO + "ORDER BY u.id")
+                .map(ReactiveOrelUserTemplateImpl::toDto)
+                .all();
+    }
+
+    /**
+     * Get users created in a time window, as a primary key range scan over the Snowflake ids.
+     *
+     * @param from    - Start of the window, inclusive.
+     * @param to      - End of the window, exclusive.
+     * @param afterId - Users with a greater id are returned, -1 for the start of the window.
+     * @param limit   - Maximum number of users.
+     * @return Ids with the users, ordered by id.
+     */
+    @Override
+    public Flux<Tuple2<Long, OrelUserDto>> findCreatedBetween(Instant from, Instant to, long afterId, int limit) {
+
+        return databaseClient.sql(SELECT_DTO + "WHERE u.id >= :from AND u.id < :to ORDER BY u.id LIMIT :limit")
+                .bind("from", Math.max(Snowflake.firstIdAt(from), afterId + 1))
+                .bind("to", Snowflake.firstIdAt(to))
+                .bind("limit", limit)
+                .map(ReactiveOrelUserTemplateImpl::toIdAndDto)
+                .all();
+    }
+
+    /**
+     * Delete a user and its department in one transaction.
+     *
+     * @param id      - Id of the user.
+     * @param phoneNo - Phone number of the user, removed from the phone number filter.
+     * @return Completes when committed.
+     */
+    @Override
+    public Mono<Void> delete(Long id, String phoneNo) {
+
+        return databaseClient.sql("DELETE FROM department WHERE user_id = :id")
+                .bind("id", id)
+                .then()
+                .then(databaseClient.sql("DELETE FROM orel_user WHERE id = :id")
+                        .bind("id", id)
+                        .then())
+                .as(transactionalOperator::transactional)
+                .doOnSuccess(done -> phoneNoBloomFilter.remove(phoneNo));
+    }
+
+    /**
+     * Bind a value, or a null; only text columns are nullable, so a null is bound as a string.
+     */
+    private static DatabaseClient.GenericExecuteSpec bindText(DatabaseClient.GenericExecuteSpec spec, String name,
+                                                              Object value) {
+
+        return value != null ? spec.bind(name, value) : spec.bindNull(name, String.class);
+    }
+
+    private static OrelUserDto toDto(Readable row) {
+
+        return OrelUserDto.builder()
+                .phoneNo(row.get("phone_no", String.class))
+                .language(row.get("language", String.class))
+                .firstName(row.get("first_name", String.class))
+                .middleName(row.get("middle_name", String.class))
+                .email(row.get("email", String.class))
+                .dep_name(row.get("dep_name", String.class))
+                .dep_contact_no(row.get("dep_contact_no", String.class))
+                .dep_email(row.get("dep_email", String.class))
+                .build();
+    }
+
+    private static Tuple2<Long, OrelUserDto> toIdAndDto(Readable row) {
+
+        return Tuples.of(row.get("id", Long.class), toDto(row));
+    }
+}
@@ -0,0 +1,256 @@
+package com.orelit.springcore.presentation;
+
+import com.orelit.springcore.business.ReactiveOrelUserService;
+import com.orelit.springcore.common.constant.SystemConstants;
+import com.orelit.springcore.common.dto.OrelUserDto;
+import com.orelit.springcore.common.dto.OrelUserLookupDto;
+import com.orelit.springcore.common.exception.ErrorHandler;
+import com.orelit.springcore.common.exception.ErrorMessageDto;
+import com.orelit.springcore.common.exception.ErrorMessageUtil;
+import com.orelit.springcore.common.exception.NotFoundException;
+import com.orelit.springcore.common.exception.PropertyValidationException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Handler functions for the OrelUser routes of the reactive profile, see
+ * {@link ReactiveOrelUserRouter}. Requests and responses are the same as
+ * {@link OrelUserController}, and errors are answered by the same {@link ErrorHandler} methods.
+ */
+@Component
+@Profile(SystemConstants.REACTIVE_PROFILE)
+public class ReactiveOrelUserHandler {
+
+    private static final ParameterizedTypeReference<List<OrelUserDto>> ORELUSER_DTO_LIST =
+            new ParameterizedTypeReference<>() {
+            };
+
+    private final ReactiveOrelUserService reactiveOrelUserService;
+
+    private final Validator validator;
+
+    private final ErrorHandler errorHandler;
+
+    public ReactiveOrelUserHandler(ReactiveOrelUserService reactiveOrelUserService, Validator validator,
+                                   ErrorHandler errorHandler) {
+        this.reactiveOrelUserService = reactiveOrelUserService;
+        this.validator = validator;
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Create a new OrelUser.
+     *
+     * @param request - Body contains OrelUser details to be created.
+     * @return - The created OrelUserDto.
+     */
+    public Mono<ServerResponse> createOrelUser(ServerRequest request) {
+        return request.bodyToMono(OrelUserDto.class)
+                .map(this::validate)
+                .flatMap(reactiveOrelUserService::createOrelUser)
+                .flatMap(this::ok);
+    }
+
+    /**
+     * Create many OrelUsers in one request.
+     *
+     * @param request - Body contains the OrelUsers to be created.
+     * @return - One result per OrelUser, in request order.
+     */
+    public Mono<ServerResponse> createOrelUsers(ServerRequest request) {
+        return request.bodyToMono(ORELUSER_DTO_LIST)
+                .flatMap(reactiveOrelUserService::createOrelUsers)
+                .flatMap(this::ok);
+    }
+
+    /**
+     * Update an existing OrelUser.
+     *
+     * @param request - Body contains updated OrelUser details.
+     * @return - The updated OrelUserDto.
+     */
+    public Mono<ServerResponse> updateOrelUser(ServerRequest request) {
+        return request.bodyToMono(OrelUserDto.class)
+                .map(this::validate)
+                .flatMap(reactiveOrelUserService::updateOrelUser)
+                .flatMap(this::ok);
+    }
+
+    /**
+     * Get OrelUser by the phoneNo query parameter.
+     *
+     * @param request - Request with the phone number.
+     * @return - The OrelUserDto.
+     */
+    public Mono<ServerResponse> getOrelUser(ServerRequest request) {
+        return Mono.fromSupplier(() -> requiredParam(request, "phoneNo"))
+                .flatMap(reactiveOrelUserService::getOrelUserByPhoneNo)
+                .flatMap(this::ok);
+    }
+
+    /**
+     * Delete a OrelUser by the phoneNo query parameter.
+     *
+     * @param request - Request with the phone number.
+     * @return - Empty response.
+     */
+    public Mono<ServerResponse> deleteOrelUser(ServerRequest request) {
+        return Mono.fromSupplier(() -> requiredParam(request, "phoneNo"))
+                .flatMap(reactiveOrelUserService::deleteOrelUser)
+                .then(ServerResponse.ok().build());
+    }
+
+    /**
+     * Resolve many OrelUsers by phone number and id in one call.
+     *
+     * @param request - Body contains the phone numbers and ids to resolve.
+     * @return - Found OrelUsers by key and the keys that were not found.
+     */
+    public Mono<ServerResponse> lookupOrelUsers(ServerRequest request) {
+        return request.bodyToMono(OrelUserLookupDto.class)
+                .flatMap(reactiveOrelUserService::lookupOrelUsers)
+                .flatMap(this::ok);
+    }
+
+    /**
+     * Get OrelUser by the id path variable.
+     *
+     * @param request - Request with the id.
+     * @return - The OrelUserDto.
+     */
+    public Mono<ServerResponse> getOrelUserById(ServerRequest request) {
+        return Mono.fromSupplier(() -> parse("id", request.pathVariable("id"), Long::valueOf))
+                .flatMap(reactiveOrelUserService::getOrelUserById)
+                .flatMap(this::ok);
+    }
+
+    /**
+     * Get one page of OrelUsers by the page and size query parameters.
+     *
+     * @param request - Request with the optional page and size.
+     * @return - Page of OrelUserDto.
+     */
+    public Mono<ServerResponse> getOrelUserList(ServerRequest request) {
+        return Mono.defer(() -> reactiveOrelUserService.getOrelUserList(
+                        parse("page", request.queryParam("page").orElse("0"), Integer::valueOf),
+                        parse("size", request.queryParam("size").orElse("" + SystemConstants.DEFAULT_PAGE_SIZE),
+                                Integer::valueOf)))
+                .flatMap(this::ok);
+    }
+
+    /**
+     * Get the OrelUsers following the after continuation token, using keyset pagination.
+     *
+     * @param request - Request with the optional after token and the limit.
+     * @return - Page of OrelUserDto with the token of the next page.
+     */
+    public Mono<ServerResponse> getOrelUserListAfter(ServerRequest request) {
+        return Mono.defer(() -> reactiveOrelUserService.getOrelUserListAfter(
+                        request.queryParam("after").orElse(null),
+                        parse("limit", requiredParam(request, "limit"), Integer::valueOf)))
+                .flatMap(this::ok);
+    }
+
+    /**
+     * Stream every OrelUser as newline delimited JSON, as fast as the client reads it.
+     *
+     * @param request - Request.
+     * @return - One OrelUserDto per line.
+     */
+    public Mono<ServerResponse> streamOrelUserList(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(reactiveOrelUserService.streamOrelUserList(), OrelUserDto.class);
+    }
+
+    /**
+     * Get one page of the OrelUsers created between the from and to query parameters (ISO date
+     * times), following the optional after continuation token.
+     *
+     * @param request - Request with the time window, the optional after token and limit.
+     * @return - Page of OrelUserDto ordered by creation, with the token of the next page.
+     */
+    public Mono<ServerResponse> getOrelUserListCreatedBetween(ServerRequest request) {
+        return Mono.defer(() -> reactiveOrelUserService.getOrelUserListCreatedBetween(
+                        parse("from", requiredParam(request, "from"), Instant::parse),
+                        parse("to", requiredParam(request, "to"), Instant::parse),
+                        request.queryParam("after").orElse(null),
+                        parse("limit", request.queryParam("limit").orElse("" + SystemConstants.DEFAULT_PAGE_SIZE),
+                                Integer::valueOf)))
+                .flatMap(this::ok);
+    }
+
+    /**
+     * Answer an error with the status and body {@link ErrorHandler} gives the servlet stack.
+     *
+     * @param ex      - The error.
+     * @param request - Request that failed.
+     * @return - Error response.
+     */
+    public Mono<ServerResponse> handleError(Throwable ex, ServerRequest request) {
+        ResponseEntity<ErrorMessageDto> response;
+        if (ex instanceof PropertyValidationException propertyValidation) {
+            response = errorHandler.handlePropertyValidationException(propertyValidation);
+        } else if (ex instanceof NotFoundException notFound) {
+            response = errorHandler.handleNotFoundException(notFound);
+        } else if (ex instanceof OptimisticLockingFailureException optimisticLock) {
+            response = errorHandler.handleOptimisticLockingFailureException(optimisticLock);
+        } else if (ex instanceof IllegalArgumentException illegalArgument) {
+            response = errorHandler.handleIllegalArgumentException(illegalArgument);
+        } else if (ex instanceof ServerWebInputException input) {
+            response = ErrorMessageUtil.createResponse(input.getReason(), HttpStatus.BAD_REQUEST, input);
+        } else if (ex instanceof Exception exception) {
+            response = errorHandler.handleGenericException(exception);
+        } else {
+            return Mono.error(ex);
+        }
+        return ServerResponse.status(response.getStatusCode())
+                .headers(headers -> headers.addAll(response.getHeaders()))
+                .bodyValue(response.getBody());
+    }
+
+    private Mono<ServerResponse> ok(Object body) {
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(body);
+    }
+
+    private OrelUserDto validate(OrelUserDto orelUserDto) {
+        Set<ConstraintViolation<OrelUserDto>> violations = validator.validate(orelUserDto);
+        if (!violations.isEmpty()) {
+            throw new PropertyValidationException(violations.stream().collect(Collectors.toMap(
+                    violation -> violation.getPropertyPath().toString(), ConstraintViolation::getMessage,
+                    (first, second) -> first + ", " + second)));
+        }
+        return orelUserDto;
+    }
+
+    private static String requiredParam(ServerRequest request, String name) {
+        return request.queryParam(name).orElseThrow(() ->
+                new ServerWebInputException("Required request parameter '" + name + "' is not present"));
+    }
+
+    private static <T> T parse(String name, String value, Function<String, T> parser) {
+        try {
+            return parser.apply(value);
+        } catch (NumberFormatException | DateTimeParseException ex) {
+            throw new PropertyValidationException(name, "Invalid value '" + value + "'!");
+        }
+    }
+}
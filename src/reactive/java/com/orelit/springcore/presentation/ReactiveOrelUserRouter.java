@@ -0,0 +1,42 @@
+package com.orelit.springcore.presentation;
+
+import com.orelit.springcore.common.constant.ApiConstant;
+import com.orelit.springcore.common.constant.SystemConstants;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+/**
+ * Routes of the reactive profile, the same paths and parameters as {@link OrelUserController}
+ * except the CSV import and export, which stay on the servlet stack. Start the application with
+ * --spring.profiles.active=reactive to serve them from WebFlux on Netty instead of the controller.
+ */
+@Configuration
+@Profile(SystemConstants.REACTIVE_PROFILE)
+public class ReactiveOrelUserRouter {
+
+    private static final String PATH = ApiConstant.BASE_PATH + "/OrelUser";
+
+    @Bean
+    public RouterFunction<ServerResponse> orelUserRoutes(ReactiveOrelUserHandler handler) {
+        return RouterFunctions.route()
+                .POST(PATH, handler::createOrelUser)
+                .POST(PATH + "/bulk", handler::createOrelUsers)
+                .PUT(PATH, handler::updateOrelUser)
+                .GET(PATH, handler::getOrelUser)
+                .DELETE(PATH, handler::deleteOrelUser)
+                .POST(PATH + "/lookup", handler::lookupOrelUsers)
+                .GET(PATH + "/list/stream", handler::streamOrelUserList)
+                .GET(PATH + "/list", RequestPredicates.queryParam("limit", limit -> true),
+                        handler::getOrelUserListAfter)
+                .GET(PATH + "/list", handler::getOrelUserList)
+                .GET(PATH + "/created", handler::getOrelUserListCreatedBetween)
+                .GET(PATH + "/{id}", handler::getOrelUserById)
+                .onError(Throwable.class, handler::handleError)
+                .build();
+    }
+}
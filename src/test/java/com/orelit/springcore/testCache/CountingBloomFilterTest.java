@@ -0,0 +1,79 @@
+package com.orelit.springcore.testCache;
+
+import com.orelit.springcore.common.properties.ApplicationConfigurationProperties;
+import com.orelit.springcore.persistence.cache.CountingBloomFilter;
+import com.orelit.springcore.persistence.cache.PhoneNoBloomFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the counting Bloom filter behind the phone number uniqueness check.
+ */
+public class CountingBloomFilterTest {
+
+    private static final int ELEMENTS = 100_000;
+
+    @Test
+    public void testNoFalseNegatives() {
+        CountingBloomFilter filter = new CountingBloomFilter(ELEMENTS, 0.01);
+        for (int i = 0; i < ELEMENTS; i++) {
+            filter.put(phoneNo(i));
+        }
+        for (int i = 0; i < ELEMENTS; i++) {
+            assertThat(filter.mightContain(phoneNo(i))).isTrue();
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRateNearTarget() {
+        CountingBloomFilter filter = new CountingBloomFilter(ELEMENTS, 0.01);
+        for (int i = 0; i < ELEMENTS; i++) {
+            filter.put(phoneNo(i));
+        }
+        int falsePositives = 0;
+        for (int i = ELEMENTS; i < 2 * ELEMENTS; i++) {
+            if (filter.mightContain(phoneNo(i))) {
+                falsePositives++;
+            }
+        }
+        assertThat((double) falsePositives / ELEMENTS).isLessThan(0.02);
+        assertThat(filter.expectedFalsePositiveRate()).isBetween(0.005, 0.015);
+    }
+
+    @Test
+    public void testRemoveKeepsOtherElements() {
+        CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.put(phoneNo(i));
+        }
+        for (int i = 0; i < 500; i++) {
+            filter.remove(phoneNo(i));
+        }
+        for (int i = 500; i < 1000; i++) {
+            assertThat(filter.mightContain(phoneNo(i))).isTrue();
+        }
+        assertThat(filter.getElementCount()).isEqualTo(500);
+    }
+
+    @Test
+    public void testPhoneNoFilterIgnoresRemovalsUntilBuilt() {
+        PhoneNoBloomFilter filter = new PhoneNoBloomFilter(new ApplicationConfigurationProperties());
+        filter.put("0123456789");
+        filter.remove("0123456789");
+
+        assertThat(filter.mightContain("0987654321")).isTrue();
+        filter.build(consumer -> List.of("0112345678").forEach(consumer));
+
+        assertThat(filter.mightContain("0123456789")).isTrue();
+        assertThat(filter.mightContain("0112345678")).isTrue();
+        assertThat(filter.mightContain("0987654321")).isFalse();
+        assertThat(filter.getSkippedCount()).isEqualTo(1);
+    }
+
+    private static String phoneNo(int i) {
+        return String.format("0%09d", i);
+    }
+}
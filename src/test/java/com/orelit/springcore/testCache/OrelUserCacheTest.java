@@ -0,0 +1,138 @@
+package com.orelit.springcore.testCache;
+
+import com.orelit.springcore.common.dto.OrelUserDto;
+import com.orelit.springcore.persistence.cache.CacheConfiguration;
+import com.orelit.springcore.persistence.cache.PhoneNoBloomFilter;
+import com.orelit.springcore.persistence.cache.PhoneNoNegativeCache;
+import com.orelit.springcore.persistence.converter.OrelUserMapper;
+import com.orelit.springcore.persistence.entity.OrelUser;
+import com.orelit.springcore.persistence.repository.OrelUserRepository;
+import com.orelit.springcore.persistence.repository.OrelUserTemplate;
+import com.orelit.springcore.persistence.repository.impl.OrelUserTemplateImpl;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheAutoConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the phone number cache in front of OrelUserTemplateImpl.
+ */
+@SpringJUnitConfig({CacheConfiguration.class, OrelUserTemplateImpl.class})
+@ImportAutoConfiguration(CacheAutoConfiguration.class)
+@TestPropertySource(properties = {
+        "spring.cache.type=caffeine",
+        "spring.cache.cache-names=" + CacheConfiguration.ORELUSER_DTO_BY_PHONE_NO,
+        "spring.cache.caffeine.spec=maximumSize=100,expireAfterWrite=1m,recordStats"})
+public class OrelUserCacheTest {
+
+    private static final String PHONE_NO = "0123456789";
+
+    @Autowired
+    private OrelUserTemplate orelUserTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @MockBean
+    private OrelUserRepository orelUserRepository;
+
+    @MockBean
+    private OrelUserMapper orelUserMapper;
+
+    @MockBean
+    private EntityManager entityManager;
+
+    @MockBean
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private PhoneNoBloomFilter phoneNoBloomFilter;
+
+    @MockBean
+    private PhoneNoNegativeCache phoneNoNegativeCache;
+
+    private OrelUser orelUser;
+
+    private OrelUserDto orelUserDto;
+
+    @BeforeEach
+    public void setUp() {
+        cacheManager.getCache(CacheConfiguration.ORELUSER_DTO_BY_PHONE_NO).clear();
+        orelUser = new OrelUser(1L);
+        orelUser.setPhoneNo(PHONE_NO);
+        orelUserDto = OrelUserDto.builder().phoneNo(PHONE_NO).build();
+        when(orelUserRepository.findByPhoneNo(PHONE_NO)).thenReturn(Optional.of(orelUser));
+        when(orelUserRepository.findDtoByPhoneNo(PHONE_NO)).thenReturn(Optional.of(orelUserDto));
+        when(orelUserRepository.save(any(OrelUser.class))).thenReturn(orelUser);
+    }
+
+    @Test
+    public void testFindDtoByPhoneNoIsCached() {
+        assertThat(orelUserTemplate.findDtoByPhoneNo(PHONE_NO)).isSameAs(orelUserDto);
+        assertThat(orelUserTemplate.findDtoByPhoneNo(PHONE_NO)).isSameAs(orelUserDto);
+
+        verify(orelUserRepository, times(1)).findDtoByPhoneNo(PHONE_NO);
+    }
+
+    @Test
+    public void testEntityIsNotCached() {
+        orelUserTemplate.findByPhoneNo(PHONE_NO);
+        orelUserTemplate.findByPhoneNo(PHONE_NO);
+
+        verify(orelUserRepository, times(2)).findByPhoneNo(PHONE_NO);
+    }
+
+    @Test
+    public void testMissIsNotCached() {
+        when(orelUserRepository.findDtoByPhoneNo("0000000000")).thenReturn(Optional.empty());
+
+        assertThat(orelUserTemplate.findDtoByPhoneNo("0000000000")).isNull();
+        assertThat(orelUserTemplate.findDtoByPhoneNo("0000000000")).isNull();
+
+        verify(orelUserRepository, times(2)).findDtoByPhoneNo("0000000000");
+    }
+
+    @Test
+    public void testSaveAndDeleteEvict() {
+        orelUserTemplate.findDtoByPhoneNo(PHONE_NO);
+        orelUserTemplate.save(orelUser);
+        orelUserTemplate.findDtoByPhoneNo(PHONE_NO);
+        orelUserTemplate.delete(orelUser);
+        orelUserTemplate.findDtoByPhoneNo(PHONE_NO);
+
+        verify(orelUserRepository, times(3)).findDtoByPhoneNo(PHONE_NO);
+    }
+
+    @Test
+    public void testSaveEvictsOnceTheTransactionCommits() {
+        orelUserTemplate.findDtoByPhoneNo(PHONE_NO);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            orelUserTemplate.save(orelUser);
+            assertThat(cacheManager.getCache(CacheConfiguration.ORELUSER_DTO_BY_PHONE_NO).get(PHONE_NO)).isNotNull();
+
+            TransactionSynchronizationUtils.triggerAfterCommit();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(cacheManager.getCache(CacheConfiguration.ORELUSER_DTO_BY_PHONE_NO).get(PHONE_NO)).isNull();
+    }
+}
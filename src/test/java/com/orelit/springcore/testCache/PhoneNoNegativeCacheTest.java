@@ -0,0 +1,43 @@
+package com.orelit.springcore.testCache;
+
+import com.orelit.springcore.common.properties.ApplicationConfigurationProperties;
+import com.orelit.springcore.persistence.cache.PhoneNoNegativeCache;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the phone number negative cache.
+ */
+public class PhoneNoNegativeCacheTest {
+
+    private static final String PHONE_NO = "0123456789";
+
+    @Test
+    public void testMissingNumberIsForgottenWhenStored() {
+        PhoneNoNegativeCache cache = new PhoneNoNegativeCache(new ApplicationConfigurationProperties());
+
+        cache.markMissing(PHONE_NO);
+        assertThat(cache.isMissing(PHONE_NO)).isTrue();
+
+        cache.invalidate(PHONE_NO);
+        assertThat(cache.isMissing(PHONE_NO)).isFalse();
+        assertThat(cache.isRecentlyChanged(PHONE_NO)).isFalse();
+
+        cache.markMissing(PHONE_NO);
+        assertThat(cache.isMissing(PHONE_NO)).isTrue();
+    }
+
+    @Test
+    public void testStoredNumberIsNotMarkedMissingWhileReplicasMayLag() {
+        ApplicationConfigurationProperties properties = new ApplicationConfigurationProperties();
+        properties.getReplicas().setEnabled(true);
+        PhoneNoNegativeCache cache = new PhoneNoNegativeCache(properties);
+
+        cache.invalidate(PHONE_NO);
+        cache.markMissing(PHONE_NO);
+
+        assertThat(cache.isRecentlyChanged(PHONE_NO)).isTrue();
+        assertThat(cache.isMissing(PHONE_NO)).isFalse();
+    }
+}
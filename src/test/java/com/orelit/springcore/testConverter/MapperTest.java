@@ -0,0 +1,74 @@
+package com.orelit.springcore.testConverter;
+
+import com.orelit.springcore.common.dto.OrelUserDto;
+import com.orelit.springcore.persistence.converter.DepartmentMapper;
+import com.orelit.springcore.persistence.converter.DepartmentMapperImpl;
+import com.orelit.springcore.persistence.converter.OrelUserMapper;
+import com.orelit.springcore.persistence.converter.OrelUserMapperImpl;
+import com.orelit.springcore.persistence.entity.Department;
+import com.orelit.springcore.persistence.entity.OrelUser;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the generated OrelUser and Department mappers.
+ */
+public class MapperTest {
+
+    private final OrelUserMapper orelUserMapper = new OrelUserMapperImpl();
+
+    private final DepartmentMapper departmentMapper = new DepartmentMapperImpl(orelUserMapper);
+
+    @Test
+    public void testConvertToDtoCopiesDepartment() {
+        OrelUser orelUser = new OrelUser(1L);
+        orelUser.setPhoneNo("0123456789");
+        orelUser.setFirstName("John");
+        Department department = new Department();
+        department.setDep_name("Finance");
+        department.setDep_email("finance@example.com");
+        orelUser.setDepartment(department);
+
+        OrelUserDto orelUserDto = orelUserMapper.convertToDto(orelUser);
+
+        assertThat(orelUserDto.getPhoneNo()).isEqualTo("0123456789");
+        assertThat(orelUserDto.getFirstName()).isEqualTo("John");
+        assertThat(orelUserDto.getDep_name()).isEqualTo("Finance");
+        assertThat(orelUserDto.getDep_email()).isEqualTo("finance@example.com");
+    }
+
+    @Test
+    public void testConvertToDtoWithoutDepartment() {
+        OrelUser orelUser = new OrelUser(1L);
+        orelUser.setPhoneNo("0123456789");
+
+        OrelUserDto orelUserDto = orelUserMapper.convertToDto(orelUser);
+
+        assertThat(orelUserDto.getPhoneNo()).isEqualTo("0123456789");
+        assertThat(orelUserDto.getDep_name()).isNull();
+    }
+
+    @Test
+    public void testConvertDepartmentDetailDtoToEntityCreatesUser() {
+        OrelUserDto orelUserDto = OrelUserDto.builder()
+                .phoneNo("0123456789")
+                .language("English")
+                .firstName("John")
+                .middleName("Doe")
+                .email("john.doe@example.com")
+                .dep_name("Finance")
+                .dep_contact_no("0112345678")
+                .dep_email("finance@example.com")
+                .build();
+
+        Department department = departmentMapper.convertDepartmentDetailDtoToEntity(orelUserDto);
+
+        assertThat(department.getId()).isNull();
+        assertThat(department.getDep_name()).isEqualTo("Finance");
+        assertThat(department.getDep_contact_no()).isEqualTo("0112345678");
+        assertThat(department.getOrelUser().getId()).isNull();
+        assertThat(department.getOrelUser().getPhoneNo()).isEqualTo("0123456789");
+        assertThat(department.getOrelUser().getEmail()).isEqualTo("john.doe@example.com");
+    }
+}
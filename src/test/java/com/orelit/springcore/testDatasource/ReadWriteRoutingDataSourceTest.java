@@ -0,0 +1,176 @@
+package com.orelit.springcore.testDatasource;
+
+import com.orelit.springcore.persistence.datasource.ReadWriteRoutingDataSource;
+import com.orelit.springcore.persistence.datasource.ReplicaPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for read/write routing between a primary and a replica, two embedded databases that
+ * tell themselves apart by the row of their node table. Replication of the heartbeat is done by
+ * hand.
+ */
+public class ReadWriteRoutingDataSourceTest {
+
+    private EmbeddedDatabase primary;
+
+    private EmbeddedDatabase replica;
+
+    private final AtomicBoolean replicaDown = new AtomicBoolean();
+
+    private ReplicaPool replicaPool;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate readOnly;
+
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    public void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+        DelegatingDataSource replicaDataSource = new DelegatingDataSource(replica) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                if (replicaDown.get()) {
+                    throw new SQLTransientConnectionException("Replica is down");
+                }
+                return super.getConnection();
+            }
+        };
+        replicaPool = new ReplicaPool(primary, List.of(new ReplicaPool.Replica("replica", replicaDataSource)),
+                Duration.ofSeconds(5), Duration.ofSeconds(1));
+        replicaPool.createTableIfMissing();
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(
+                new ReadWriteRoutingDataSource(primary, replicaPool));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        primary.shutdown();
+        replica.shutdown();
+    }
+
+    @Test
+    public void testReadOnlyTransactionsGoToHealthyReplica() {
+        replicate(Duration.ZERO);
+        replicaPool.check();
+
+        assertThat(replicaPool.getReplicas().get(0).isAvailable()).isTrue();
+        assertThat(nodeIn(readOnly)).isEqualTo("replica");
+        assertThat(nodeIn(readWrite)).isEqualTo("primary");
+        assertThat(node()).isEqualTo("primary");
+        assertThat(replicaPool.getFallbackCount()).isZero();
+    }
+
+    @Test
+    public void testReplicaWithoutHeartbeatFallsBackToPrimary() {
+        replicaPool.check();
+
+        assertThat(replicaPool.getReplicas().get(0).isAvailable()).isFalse();
+        assertThat(nodeIn(readOnly)).isEqualTo("primary");
+        assertThat(replicaPool.getFallbackCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testLaggingReplicaFallsBackToPrimaryUntilItCatchesUp() {
+        replicate(Duration.ofSeconds(30));
+        replicaPool.check();
+
+        assertThat(replicaPool.getReplicas().get(0).getLagMillis()).isGreaterThanOrEqualTo(30_000);
+        assertThat(nodeIn(readOnly)).isEqualTo("primary");
+
+        replicate(Duration.ZERO);
+        replicaPool.check();
+
+        assertThat(nodeIn(readOnly)).isEqualTo("replica");
+    }
+
+    @Test
+    public void testHeartbeatCarriesThePrimaryDatabaseTime() {
+        replicaPool.check();
+        Object beatAt = new JdbcTemplate(primary).queryForObject("select beat_at from replica_heartbeat", Object.class);
+        replicaHeartbeat().update("insert into replica_heartbeat (id, beat_at) values (1, ?)", beatAt);
+
+        replicaPool.check();
+
+        assertThat(replicaPool.getReplicas().get(0).getLagMillis()).isBetween(0L, 5_000L);
+        assertThat(nodeIn(readOnly)).isEqualTo("replica");
+    }
+
+    @Test
+    public void testUnreachableReplicaFallsBackToPrimary() {
+        replicate(Duration.ZERO);
+        replicaPool.check();
+        replicaDown.set(true);
+
+        assertThat(nodeIn(readOnly)).isEqualTo("primary");
+        assertThat(replicaPool.getReplicas().get(0).isAvailable()).isFalse();
+        assertThat(replicaPool.getFallbackCount()).isEqualTo(1);
+
+        replicaPool.check();
+        assertThat(replicaPool.getReplicas().get(0).isAvailable()).isFalse();
+
+        replicaDown.set(false);
+        replicaPool.check();
+        assertThat(nodeIn(readOnly)).isEqualTo("replica");
+    }
+
+    private String nodeIn(TransactionTemplate transactionTemplate) {
+        return transactionTemplate.execute(status -> node());
+    }
+
+    private String node() {
+        return jdbcTemplate.queryForObject("select name from node", String.class);
+    }
+
+    private void replicate(Duration behind) {
+        JdbcTemplate replicaJdbc = replicaHeartbeat();
+        replicaJdbc.update("insert into replica_heartbeat (id, beat_at) values "
+                + "(1, timestampadd(microsecond, ?, current_timestamp(3)))", -behind.toNanos() / 1000);
+    }
+
+    private JdbcTemplate replicaHeartbeat() {
+        JdbcTemplate replicaJdbc = new JdbcTemplate(replica);
+        replicaJdbc.execute("create table if not exists replica_heartbeat (id int not null primary key, "
+                + "beat_at timestamp(3) not null)");
+        replicaJdbc.update("delete from replica_heartbeat");
+        return replicaJdbc;
+    }
+
+    private static EmbeddedDatabase database(String name) {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .setName(name + "-" + UUID.randomUUID())
+                .build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("create table node (name varchar(32) not null)");
+        jdbcTemplate.update("insert into node (name) values (?)", name);
+        return database;
+    }
+}
@@ -1,9 +1,12 @@
 package com.orelit.springcore.testPresentation;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orelit.springcore.business.OrelUserCsvExportService;
+import com.orelit.springcore.business.OrelUserCsvImportService;
 import com.orelit.springcore.business.OrelUserService;
 import com.orelit.springcore.common.constant.ApiConstant;
 import com.orelit.springcore.common.dto.OrelUserDto;
+import com.orelit.springcore.common.util.RestResponsePage;
 import com.orelit.springcore.persistence.entity.OrelUser;
 import com.orelit.springcore.presentation.OrelUserController;
 
@@ -12,15 +15,24 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.util.Collections;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
@@ -36,13 +48,17 @@ public class OrelUserControllerTest {
 
     @Mock
     private OrelUserService orelUserService;
+    @Mock
+    private OrelUserCsvImportService orelUserCsvImportService;
+    @Mock
+    private OrelUserCsvExportService orelUserCsvExportService;
     @Autowired
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
-        mockMvc = MockMvcBuilders.standaloneSetup(new OrelUserController(orelUserService)).build();
+        mockMvc = MockMvcBuilders.standaloneSetup(new OrelUserController(orelUserService, orelUserCsvImportService, orelUserCsvExportService, objectMapper)).build();
     }
 
     /**
@@ -125,8 +141,37 @@ public class OrelUserControllerTest {
     @Test
     public void testGetOrelUserList() throws Exception {
 
-        mockMvc.perform(get(ApiConstant.BASE_PATH + "/OrelUser/list").contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk());
+        when(orelUserService.getOrelUserList(2, 10)).thenReturn(new RestResponsePage<>(Collections.singletonList(new OrelUserDto()), PageRequest.of(2, 10), 21));
+        mockMvc.perform(get(ApiConstant.BASE_PATH + "/OrelUser/list").param("page", "2").param("size", "10").contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(1))
+                .andExpect(jsonPath("$.totalElements").value(21));
+
+    }
 
+    /**
+     * @throws Exception
+     */
+    @Test
+    public void testStreamOrelUserList() throws Exception {
+
+        doAnswer(invocation -> {
+            Consumer<OrelUserDto> consumer = invocation.getArgument(0);
+            consumer.accept(OrelUserDto.builder().phoneNo("0123456789").build());
+            consumer.accept(OrelUserDto.builder().phoneNo("0987654321").build());
+            return null;
+        }).when(orelUserService).streamOrelUserList(any());
+
+        MvcResult result = mockMvc.perform(get(ApiConstant.BASE_PATH + "/OrelUser/list/stream").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readValue(lines[1], OrelUserDto.class).getPhoneNo()).isEqualTo("0987654321");
     }
 
 
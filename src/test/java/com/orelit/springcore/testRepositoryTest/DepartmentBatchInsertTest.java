@@ -0,0 +1,66 @@
+package com.orelit.springcore.testRepositoryTest;
+
+import com.orelit.springcore.persistence.entity.Department;
+import com.orelit.springcore.persistence.entity.OrelUser;
+import com.orelit.springcore.persistence.repository.OrelUserDepartmentRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that saving many departments with their users is sent as JDBC batches.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class DepartmentBatchInsertTest {
+
+    private static final int USERS = 20;
+
+    @Autowired
+    private OrelUserDepartmentRepository orelUserDepartmentRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    public void testSaveAllInsertsInBatches() {
+        List<Department> departments = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            OrelUser orelUser = new OrelUser();
+            orelUser.setPhoneNo("07712345" + (10 + i));
+            orelUser.setLanguage("English");
+            orelUser.setFirstName("John");
+            Department department = new Department();
+            department.setDep_name("Finance");
+            department.setOrelUser(orelUser);
+            departments.add(department);
+        }
+
+        orelUserDepartmentRepository.saveAll(departments);
+        assertThat(departments).allSatisfy(department -> assertThat(department.getId()).isNotNull());
+        entityManager.flush();
+
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(2 * USERS);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,138 @@
+package com.orelit.springcore.testRepositoryTest;
+
+import com.orelit.springcore.common.dto.OrelUserDto;
+import com.orelit.springcore.persistence.entity.Department;
+import com.orelit.springcore.persistence.entity.OrelUser;
+import com.orelit.springcore.persistence.repository.OrelUserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that OrelUser reads load the department in the same statement instead of one extra
+ * statement per user.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class OrelUserRepositoryQueryCountTest {
+
+    private static final int USERS = 10;
+
+    @Autowired
+    private OrelUserRepository orelUserRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<Long> ids = new ArrayList<>();
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 0; i < USERS; i++) {
+            OrelUser orelUser = new OrelUser();
+            orelUser.setPhoneNo("012345678" + i);
+            orelUser.setLanguage("English");
+            orelUser.setFirstName("John");
+            Department department = new Department();
+            department.setDep_name("Finance");
+            department.setOrelUser(orelUser);
+            entityManager.persist(department);
+            ids.add(orelUser.getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    public void testFindAllLoadsDepartmentsInOneStatement() {
+        List<OrelUser> orelUsers = orelUserRepository.findAll();
+
+        assertThat(orelUsers).hasSize(USERS);
+        assertThat(orelUsers).allSatisfy(orelUser -> assertThat(orelUser.getDepartment()).isNotNull());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFindPageLoadsDepartmentsWithoutExtraStatements() {
+        Page<OrelUser> page = orelUserRepository.findAll(PageRequest.of(0, 5, Sort.by("id")));
+
+        assertThat(page.getContent()).hasSize(5);
+        assertThat(page.getContent()).allSatisfy(orelUser -> assertThat(orelUser.getDepartment()).isNotNull());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testSeekAndRangeLoadDepartmentsInOneStatement() {
+        List<OrelUser> after = orelUserRepository.findByIdGreaterThanOrderByIdAsc(-1L, PageRequest.ofSize(USERS));
+        List<OrelUser> range = orelUserRepository.findByIdGreaterThanEqualAndIdLessThanOrderByIdAsc(0L, Long.MAX_VALUE,
+                PageRequest.ofSize(USERS));
+
+        assertThat(after).hasSize(USERS);
+        assertThat(range).hasSize(USERS);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testStreamLoadsDepartmentsInOneStatement() {
+        try (Stream<OrelUser> orelUsers = orelUserRepository.streamAllByOrderByIdAsc()) {
+            assertThat(orelUsers.filter(orelUser -> orelUser.getDepartment() != null).count()).isEqualTo(USERS);
+        }
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFindByIdAndPhoneNoLoadDepartmentInOneStatement() {
+        OrelUser byId = orelUserRepository.findById(ids.get(0)).orElseThrow();
+        entityManager.clear();
+        OrelUser byPhoneNo = orelUserRepository.findByPhoneNo("0123456781").orElseThrow();
+
+        assertThat(byId.getDepartment()).isNotNull();
+        assertThat(byPhoneNo.getDepartment()).isNotNull();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testInQueriesLoadDepartmentsInOneStatement() {
+        List<OrelUser> byPhoneNo = orelUserRepository.findByPhoneNoIn(List.of("0123456781", "0123456782", "0999999999"));
+        List<OrelUser> byId = orelUserRepository.findByIdIn(ids);
+
+        assertThat(byPhoneNo).hasSize(2);
+        assertThat(byId).hasSize(USERS);
+        assertThat(byId).allSatisfy(orelUser -> assertThat(orelUser.getDepartment()).isNotNull());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testDtoProjectionsLoadNoEntities() {
+        OrelUserDto byPhoneNo = orelUserRepository.findDtoByPhoneNo("0123456781").orElseThrow();
+        OrelUserDto byId = orelUserRepository.findDtoById(ids.get(0)).orElseThrow();
+        Page<OrelUserDto> page = orelUserRepository.findAllDtos(PageRequest.of(0, 5, Sort.by("id")));
+
+        assertThat(byPhoneNo.getDep_name()).isEqualTo("Finance");
+        assertThat(byId.getPhoneNo()).isEqualTo("0123456780");
+        assertThat(page.getContent()).hasSize(5);
+        assertThat(page.getTotalElements()).isEqualTo(USERS);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(4);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+}
@@ -0,0 +1,82 @@
+package com.orelit.springcore.testService;
+
+import com.orelit.springcore.business.OrelUserCsvExportService;
+import com.orelit.springcore.persistence.entity.Department;
+import com.orelit.springcore.persistence.entity.OrelUser;
+import com.orelit.springcore.persistence.repository.impl.OrelUserTemplateImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the OrelUser CSV export.
+ */
+@DataJpaTest
+public class OrelUserCsvExportServiceTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private OrelUserCsvExportService orelUserCsvExportService;
+
+    @BeforeEach
+    public void setUp() {
+        orelUserCsvExportService = new OrelUserCsvExportService(
+                new OrelUserTemplateImpl(null, null, null, jdbcTemplate, null, null));
+        OrelUser orelUser = new OrelUser();
+        orelUser.setPhoneNo("0123456780");
+        orelUser.setLanguage("English");
+        orelUser.setFirstName("John");
+        orelUser.setEmail("john@example.com");
+        orelUser.setCreatedAt(LocalDate.of(2023, 9, 21));
+        Department department = new Department();
+        department.setDep_name("Finance, Tax");
+        department.setOrelUser(orelUser);
+        entityManager.persist(department);
+        OrelUser withoutDepartment = new OrelUser();
+        withoutDepartment.setPhoneNo("0123456781");
+        withoutDepartment.setLanguage("English");
+        entityManager.persist(withoutDepartment);
+        entityManager.flush();
+    }
+
+    @Test
+    public void testExportCsvWritesOneRowPerUser() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        orelUserCsvExportService.exportCsv(out, false);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertThat(lines).hasSize(3);
+        assertThat(lines[0]).isEqualTo("phoneNo,language,firstName,middleName,email,dep_name,dep_contact_no,dep_email,id,createdAt,updatedAt");
+        assertThat(lines[1]).startsWith("0123456780,English,John,,john@example.com,\"Finance, Tax\",,,").endsWith(",21 09 2023,");
+        assertThat(lines[2]).startsWith("0123456781,English,,,,,,,");
+    }
+
+    @Test
+    public void testExportCsvCanBeGzipped() throws Exception {
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+
+        orelUserCsvExportService.exportCsv(plain, false);
+        orelUserCsvExportService.exportCsv(gzipped, true);
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.toByteArray()))) {
+            assertThat(in.readAllBytes()).isEqualTo(plain.toByteArray());
+        }
+    }
+}
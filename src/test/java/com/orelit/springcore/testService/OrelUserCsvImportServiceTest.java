@@ -0,0 +1,104 @@
+package com.orelit.springcore.testService;
+
+import com.orelit.springcore.business.OrelUserCsvImportService;
+import com.orelit.springcore.business.OrelUserService;
+import com.orelit.springcore.common.dto.CsvImportStatusDto;
+import com.orelit.springcore.common.dto.CsvRowErrorDto;
+import com.orelit.springcore.common.dto.OrelUserBulkResultDto;
+import com.orelit.springcore.common.dto.OrelUserDto;
+import com.orelit.springcore.common.properties.ApplicationConfigurationProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the OrelUser CSV import pipeline.
+ */
+public class OrelUserCsvImportServiceTest {
+
+    private static final String HEADER = "PHONENO,language,firstName,middleName,email,dep_name,dep_contact_no,dep_email\n";
+
+    @Mock
+    private OrelUserService orelUserService;
+
+    private OrelUserCsvImportService orelUserCsvImportService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ApplicationConfigurationProperties properties = new ApplicationConfigurationProperties();
+        properties.getCsvImport().setChunkSize(3);
+        properties.getCsvImport().setValidatorThreads(2);
+        properties.getCsvImport().setQueueCapacity(1);
+        orelUserCsvImportService = new OrelUserCsvImportService(orelUserService, properties);
+        when(orelUserService.createValidatedOrelUsers(any())).thenAnswer(invocation -> {
+            List<OrelUserDto> orelUserDtos = invocation.getArgument(0);
+            List<OrelUserBulkResultDto> results = new ArrayList<>();
+            for (int i = 0; i < orelUserDtos.size(); i++) {
+                String phoneNo = orelUserDtos.get(i).getPhoneNo();
+                results.add(new OrelUserBulkResultDto(i, phoneNo, "0123456789".equals(phoneNo)
+                        ? OrelUserBulkResultDto.Status.DUPLICATE : OrelUserBulkResultDto.Status.CREATED, null));
+            }
+            return results;
+        });
+    }
+
+    @Test
+    public void testImportCsvReportsRejectedRows() {
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int i = 0; i < 10; i++) {
+            csv.append("07123456").append(10 + i).append(",English,John,Doe,j@x.com,Finance,0112345678,f@x.com\n");
+        }
+        csv.append("0123456789,English,John,Doe,j@x.com,Finance,0112345678,f@x.com\n");
+        csv.append("bad,English\n");
+        csv.append("0712345699,english,John,Doe,j@x.com,Finance,0112345678,f@x.com\n");
+        when(orelUserService.validateOrelUser(argThat(dto -> dto != null && "english".equals(dto.getLanguage()))))
+                .thenReturn("language: Language is invalid.");
+
+        CsvImportStatusDto status = orelUserCsvImportService.importCsv(new StringReader(csv.toString()));
+
+        assertThat(status.getState()).isEqualTo(CsvImportStatusDto.State.COMPLETED);
+        assertThat(status.getRowsRead()).isEqualTo(13);
+        assertThat(status.getRowsCreated()).isEqualTo(10);
+        assertThat(status.getRowsRejected()).isEqualTo(3);
+        assertThat(status.getErrors()).extracting(CsvRowErrorDto::getRow).containsExactlyInAnyOrder(11L, 12L, 13L);
+        verify(orelUserService, atLeast(4)).createValidatedOrelUsers(any());
+    }
+
+    @Test
+    public void testImportCsvFailsOnMissingColumns() {
+        CsvImportStatusDto status = orelUserCsvImportService.importCsv(new StringReader("phoneNo,language\n0712345610,English\n"));
+
+        assertThat(status.getState()).isEqualTo(CsvImportStatusDto.State.FAILED);
+        assertThat(status.getMessage()).contains("firstName");
+        verify(orelUserService, never()).createValidatedOrelUsers(any());
+    }
+
+    @Test
+    public void testImportCsvStopsWhenWriterFails() {
+        doThrow(new IllegalStateException("down")).when(orelUserService).createValidatedOrelUsers(any());
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int i = 0; i < 1000; i++) {
+            csv.append("07123").append(10000 + i).append(",English,John,Doe,j@x.com,Finance,0112345678,f@x.com\n");
+        }
+
+        CsvImportStatusDto status = orelUserCsvImportService.importCsv(new StringReader(csv.toString()));
+
+        assertThat(status.getState()).isEqualTo(CsvImportStatusDto.State.FAILED);
+        assertThat(status.getRowsRead()).isLessThan(1000);
+    }
+}
@@ -1,23 +1,42 @@
 package com.orelit.springcore.testService;
 
 import com.orelit.springcore.business.OrelUserService;
+import com.orelit.springcore.common.dto.OrelUserBulkResultDto;
 import com.orelit.springcore.common.dto.OrelUserDto;
+import com.orelit.springcore.common.dto.OrelUserLookupDto;
+import com.orelit.springcore.common.dto.OrelUserLookupResultDto;
 import com.orelit.springcore.common.exception.NotFoundException;
 import com.orelit.springcore.common.exception.PropertyValidationException;
+import com.orelit.springcore.common.util.CursorPage;
+import com.orelit.springcore.common.util.RestResponsePage;
+import com.orelit.springcore.persistence.cache.PhoneNoBloomFilter;
+import com.orelit.springcore.persistence.cache.PhoneNoNegativeCache;
 import com.orelit.springcore.persistence.converter.DepartmentMapper;
 import com.orelit.springcore.persistence.converter.OrelUserMapper;
 import com.orelit.springcore.persistence.entity.Department;
 import com.orelit.springcore.persistence.entity.OrelUser;
 import com.orelit.springcore.persistence.repository.OrelUserDepartmentTemplate;
 import com.orelit.springcore.persistence.repository.OrelUserTemplate;
+import com.orelit.springcore.persistence.writebehind.WriteBehindQueue;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-
+import org.mockito.Spy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -39,10 +58,19 @@ public class OrelUserServiceTest {
     private OrelUserMapper orelUserMapper;
     @Mock
     private DepartmentMapper departmentMapper;
+    @Mock
+    private PhoneNoBloomFilter phoneNoBloomFilter;
+    @Mock
+    private PhoneNoNegativeCache phoneNoNegativeCache;
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+    @Mock
+    private ObjectProvider<WriteBehindQueue> writeBehindQueue;
 
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(phoneNoBloomFilter.mightContain(any())).thenReturn(true);
     }
 
     //not working
@@ -107,14 +135,12 @@ public class OrelUserServiceTest {
     @Test
    public void testGetOrelUserByPhoneNo() {
         String phoneNo = "+941234567890";
-        OrelUser orelUser = new OrelUser();
-        when(orelUserTemplate.findByPhoneNo(phoneNo)).thenReturn(orelUser);
-        when(orelUserMapper.convertToDto(orelUser)).thenReturn(new OrelUserDto());
+        when(orelUserTemplate.findDtoByPhoneNo(phoneNo)).thenReturn(new OrelUserDto());
 
         OrelUserDto userDto = orelUserService.getOrelUserByPhoneNo(phoneNo);
 
-        verify(orelUserTemplate).findByPhoneNo(phoneNo);
-        verify(orelUserMapper).convertToDto(orelUser);
+        verify(orelUserTemplate).findDtoByPhoneNo(phoneNo);
+        verifyNoInteractions(orelUserMapper);
 
         assertThat(userDto).isNotNull();
     }
@@ -141,14 +167,12 @@ public class OrelUserServiceTest {
     @Test
     void testGetOrelUserById() {
         Long userId = 1L;
-        OrelUser orelUser = new OrelUser();
-        when(orelUserTemplate.findById(userId)).thenReturn(orelUser);
-        when(orelUserMapper.convertToDto(orelUser)).thenReturn(new OrelUserDto());
+        when(orelUserTemplate.findDtoById(userId)).thenReturn(new OrelUserDto());
 
         OrelUserDto userDto = orelUserService.getOrelUserById(userId);
 
-        verify(orelUserTemplate).findById(userId);
-        verify(orelUserMapper).convertToDto(orelUser);
+        verify(orelUserTemplate).findDtoById(userId);
+        verifyNoInteractions(orelUserMapper);
 
         assertThat(userDto).isNotNull();
     }
@@ -157,15 +181,238 @@ public class OrelUserServiceTest {
     //Working
     @Test
     void testGetOrelUserList() {
-        List<OrelUser> userList = Collections.singletonList(new OrelUser());
-        when(orelUserTemplate.findAll()).thenReturn(userList);
-        when(orelUserMapper.convertToOrelUserDtoList(userList)).thenReturn(Collections.singletonList(new OrelUserDto()));
+        List<OrelUserDto> userList = Collections.singletonList(new OrelUserDto());
+        when(orelUserTemplate.findAllDtos(any(Pageable.class))).thenReturn(new PageImpl<>(userList, PageRequest.of(1, 10), 11));
+
+        RestResponsePage<OrelUserDto> userDtoPage = orelUserService.getOrelUserList(1, 10);
+
+        verify(orelUserTemplate).findAllDtos(PageRequest.of(1, 10, Sort.by("id")));
+        verifyNoInteractions(orelUserMapper);
+
+        assertThat(userDtoPage.getContent()).isNotEmpty();
+        assertThat(userDtoPage.getTotalElements()).isEqualTo(11);
+    }
+
+    @Test
+    void testCreateOrelUserSkipsLookupOfUnseenPhoneNo() {
+        OrelUserDto orelUserDto = OrelUserDto.builder().phoneNo("0123456789").build();
+        Department department = new Department();
+        when(phoneNoBloomFilter.mightContain("0123456789")).thenReturn(false);
+        when(departmentMapper.convertDepartmentDetailDtoToEntity(orelUserDto)).thenReturn(department);
+
+        orelUserService.createOrelUser(orelUserDto);
 
-        List<OrelUserDto> userDtoList = orelUserService.getOrelUserList();
+        verify(orelUserTemplate, never()).findDtoByPhoneNo(any());
+        verify(orelUserDepartmentTemplate).saveOrelUserDepartmentDetails(department);
+    }
+
+    @Test
+    void testCreateOrelUserReportsNumberStoredThroughAnotherInstance() {
+        OrelUserDto orelUserDto = OrelUserDto.builder().phoneNo("0123456789").build();
+        when(phoneNoBloomFilter.mightContain("0123456789")).thenReturn(false);
+        doThrow(new DataIntegrityViolationException("Duplicate entry")).when(orelUserDepartmentTemplate).saveOrelUserDepartmentDetails(any());
+        when(orelUserTemplate.findDtoByPhoneNo("0123456789")).thenReturn(orelUserDto);
+
+        RuntimeException ex = assertThrows(RuntimeException.class, () -> orelUserService.createOrelUser(orelUserDto));
+
+        assertThat(ex.getMessage()).isEqualTo("Phone no already exists!");
+    }
+
+    @Test
+    void testGetOrelUserByPhoneNoMarksMissingNumber() {
+        when(orelUserTemplate.findDtoByPhoneNo("0123456789")).thenReturn(null);
 
-        verify(orelUserTemplate).findAll();
-        verify(orelUserMapper).convertToOrelUserDtoList(userList);
+        assertThrows(NotFoundException.class, () -> orelUserService.getOrelUserByPhoneNo("0123456789"));
+
+        verify(orelUserTemplate, times(1)).findDtoByPhoneNo("0123456789");
+        verify(phoneNoNegativeCache).markMissing("0123456789");
+    }
+
+    @Test
+    void testGetOrelUserByPhoneNoSkipsKnownMissingNumber() {
+        when(phoneNoNegativeCache.isMissing("0123456789")).thenReturn(true);
+
+        assertThrows(NotFoundException.class, () -> orelUserService.getOrelUserByPhoneNo("0123456789"));
+
+        verifyNoInteractions(orelUserTemplate);
+    }
+
+    @Test
+    void testGetOrelUserByPhoneNoQueriesNumberUnseenByFilter() {
+        OrelUserDto orelUserDto = OrelUserDto.builder().phoneNo("0123456789").build();
+        when(phoneNoBloomFilter.mightContain("0123456789")).thenReturn(false);
+        when(orelUserTemplate.findDtoByPhoneNo("0123456789")).thenReturn(orelUserDto);
+
+        assertThat(orelUserService.getOrelUserByPhoneNo("0123456789")).isSameAs(orelUserDto);
+    }
+
+    @Test
+    void testGetOrelUserListAfterReturnsNextToken() {
+        List<OrelUser> userList = List.of(new OrelUser(11L), new OrelUser(12L), new OrelUser(13L));
+        when(orelUserTemplate.findAfter(10L, 3)).thenReturn(userList);
+        when(orelUserMapper.convertToOrelUserDtoList(userList.subList(0, 2))).thenReturn(List.of(new OrelUserDto(), new OrelUserDto()));
+
+        CursorPage<OrelUserDto> page = orelUserService.getOrelUserListAfter(CursorPage.encodeToken(10L), 2);
+
+        assertThat(page.getContent()).hasSize(2);
+        assertThat(CursorPage.decodeToken("after", page.getNext())).isEqualTo(12L);
+    }
+
+    @Test
+    void testGetOrelUserListAfterLastPageHasNoToken() {
+        List<OrelUser> userList = List.of(new OrelUser(11L));
+        when(orelUserTemplate.findAfter(-1L, 3)).thenReturn(userList);
+        when(orelUserMapper.convertToOrelUserDtoList(userList)).thenReturn(List.of(new OrelUserDto()));
+
+        CursorPage<OrelUserDto> page = orelUserService.getOrelUserListAfter(null, 2);
+
+        assertThat(page.getContent()).hasSize(1);
+        assertThat(page.getNext()).isNull();
+    }
+
+    @Test
+    void testGetOrelUserListAfterRejectsInvalidToken() {
+        assertThrows(PropertyValidationException.class, () -> orelUserService.getOrelUserListAfter("invalid!", 2));
+        verifyNoInteractions(orelUserTemplate);
+    }
+
+    @Test
+    void testGetOrelUserListCreatedBetweenReturnsNextToken() {
+        Instant from = Instant.parse("2024-01-01T00:00:00Z");
+        Instant to = from.plusSeconds(3600);
+        List<OrelUser> userList = List.of(new OrelUser(11L), new OrelUser(12L), new OrelUser(13L));
+        when(orelUserTemplate.findCreatedBetween(from, to, 10L, 3)).thenReturn(userList);
+        when(orelUserMapper.convertToOrelUserDtoList(userList.subList(0, 2))).thenReturn(List.of(new OrelUserDto(), new OrelUserDto()));
+
+        CursorPage<OrelUserDto> page = orelUserService.getOrelUserListCreatedBetween(from, to, CursorPage.encodeToken(10L), 2);
+
+        assertThat(page.getContent()).hasSize(2);
+        assertThat(CursorPage.decodeToken("after", page.getNext())).isEqualTo(12L);
+    }
+
+    @Test
+    void testGetOrelUserListCreatedBetweenRejectsOversizedPage() {
+        Instant from = Instant.parse("2024-01-01T00:00:00Z");
+        assertThrows(PropertyValidationException.class,
+                () -> orelUserService.getOrelUserListCreatedBetween(from, from.plusSeconds(1), null, 1001));
+        verifyNoInteractions(orelUserTemplate);
+    }
+
+    @Test
+    void testGetOrelUserListRejectsOversizedPage() {
+        assertThrows(PropertyValidationException.class, () -> orelUserService.getOrelUserList(0, 1001));
+        verifyNoInteractions(orelUserTemplate);
+    }
+
+    @Test
+    void testCreateOrelUsersReportsEachItem() {
+        OrelUserDto created = validOrelUserDto("0123456781");
+        OrelUserDto repeated = validOrelUserDto("0123456781");
+        OrelUserDto existing = validOrelUserDto("0123456782");
+        OrelUserDto invalid = validOrelUserDto("12345");
+        when(orelUserTemplate.findExistingPhoneNos(List.of("0123456781", "0123456782"))).thenReturn(Set.of("0123456782"));
+        when(departmentMapper.convertDepartmentDetailDtoToEntity(created)).thenReturn(new Department());
+
+        List<OrelUserBulkResultDto> results = orelUserService.createOrelUsers(List.of(created, repeated, existing, invalid));
+
+        assertThat(results).extracting(OrelUserBulkResultDto::getStatus).containsExactly(
+                OrelUserBulkResultDto.Status.CREATED, OrelUserBulkResultDto.Status.DUPLICATE,
+                OrelUserBulkResultDto.Status.DUPLICATE, OrelUserBulkResultDto.Status.INVALID);
+        assertThat(results.get(3).getMessage()).startsWith("phoneNo: ");
+        verify(orelUserTemplate, times(1)).findExistingPhoneNos(any());
+        verify(orelUserTemplate, never()).findByPhoneNo(any());
+        verify(orelUserDepartmentTemplate).saveAllOrelUserDepartmentDetails(List.of(new Department()));
+    }
+
+    @Test
+    void testCreateOrelUsersMarksFailedChunk() {
+        OrelUserDto orelUserDto = validOrelUserDto("0123456781");
+        when(orelUserTemplate.findExistingPhoneNos(any())).thenReturn(Set.of());
+        doThrow(new DataIntegrityViolationException("duplicate")).when(orelUserDepartmentTemplate).saveAllOrelUserDepartmentDetails(any());
+
+        List<OrelUserBulkResultDto> results = orelUserService.createOrelUsers(List.of(orelUserDto));
+
+        assertThat(results).extracting(OrelUserBulkResultDto::getStatus).containsExactly(OrelUserBulkResultDto.Status.FAILED);
+    }
+
+    @Test
+    void testCreateOrelUsersReportsNumberStoredThroughAnotherInstance() {
+        OrelUserDto created = validOrelUserDto("0123456781");
+        OrelUserDto stored = validOrelUserDto("0123456782");
+        when(phoneNoBloomFilter.mightContain(any())).thenReturn(false);
+        when(orelUserTemplate.findExistingPhoneNos(List.of("0123456781", "0123456782"))).thenReturn(Set.of("0123456782"));
+        when(departmentMapper.convertDepartmentDetailDtoToEntity(any())).thenReturn(new Department());
+        doThrow(new DataIntegrityViolationException("Duplicate entry")).doNothing()
+                .when(orelUserDepartmentTemplate).saveAllOrelUserDepartmentDetails(any());
+
+        List<OrelUserBulkResultDto> results = orelUserService.createOrelUsers(List.of(created, stored));
+
+        assertThat(results).extracting(OrelUserBulkResultDto::getStatus).containsExactly(
+                OrelUserBulkResultDto.Status.CREATED, OrelUserBulkResultDto.Status.DUPLICATE);
+        assertThat(results.get(1).getMessage()).isEqualTo("Phone no already exists!");
+        verify(orelUserDepartmentTemplate, times(2)).saveAllOrelUserDepartmentDetails(any());
+    }
+
+    @Test
+    void testCreateOrelUsersRejectsEmptyRequest() {
+        assertThrows(PropertyValidationException.class, () -> orelUserService.createOrelUsers(List.of()));
+    }
+
+    @Test
+    void testLookupOrelUsersReportsMissingKeys() {
+        OrelUser byPhoneNo = new OrelUser(1L);
+        byPhoneNo.setPhoneNo("0123456781");
+        OrelUser byId = new OrelUser(2L);
+        when(phoneNoNegativeCache.isMissing("0123456789")).thenReturn(true);
+        when(orelUserTemplate.findByPhoneNos(List.of("0123456781", "0123456782"))).thenReturn(List.of(byPhoneNo));
+        when(orelUserTemplate.findByIds(Set.of(2L, 3L))).thenReturn(List.of(byId));
+        when(orelUserMapper.convertToDto(any())).thenReturn(new OrelUserDto());
+
+        OrelUserLookupResultDto result = orelUserService.lookupOrelUsers(new OrelUserLookupDto(
+                List.of("0123456781", "0123456782", "0123456789", "0123456781"), List.of(2L, 3L)));
+
+        assertThat(result.getByPhoneNo()).containsOnlyKeys("0123456781");
+        assertThat(result.getMissingPhoneNos()).containsExactly("0123456782", "0123456789");
+        assertThat(result.getById()).containsOnlyKeys(2L);
+        assertThat(result.getMissingIds()).containsExactly(3L);
+    }
+
+    @Test
+    void testLookupOrelUsersQueriesNumbersUnseenByFilter() {
+        OrelUser byPhoneNo = new OrelUser(1L);
+        byPhoneNo.setPhoneNo("0123456789");
+        when(phoneNoBloomFilter.mightContain("0123456789")).thenReturn(false);
+        when(orelUserTemplate.findByPhoneNos(List.of("0123456789"))).thenReturn(List.of(byPhoneNo));
+        when(orelUserMapper.convertToDto(any())).thenReturn(new OrelUserDto());
+
+        OrelUserLookupResultDto result = orelUserService.lookupOrelUsers(new OrelUserLookupDto(
+                List.of("0123456789"), List.of()));
+
+        assertThat(result.getByPhoneNo()).containsOnlyKeys("0123456789");
+        assertThat(result.getMissingPhoneNos()).isEmpty();
+    }
+
+    @Test
+    void testLookupOrelUsersRejectsEmptyLookup() {
+        assertThrows(PropertyValidationException.class, () -> orelUserService.lookupOrelUsers(new OrelUserLookupDto()));
+    }
+
+    @Test
+    void testUpdateOrelUserRejectsInvalidUpdateBeforeQueueing() {
+        WriteBehindQueue queue = mock(WriteBehindQueue.class);
+        when(writeBehindQueue.getIfAvailable()).thenReturn(queue);
+        OrelUserService service = new OrelUserService(orelUserTemplate, orelUserDepartmentTemplate, orelUserMapper,
+                departmentMapper, phoneNoBloomFilter, phoneNoNegativeCache, validator, writeBehindQueue);
+        OrelUserDto orelUserDto = validOrelUserDto("0123456789");
+        orelUserDto.setEmail("not an email");
+
+        assertThrows(PropertyValidationException.class, () -> service.updateOrelUser(orelUserDto));
+
+        verifyNoInteractions(queue);
+    }
 
-        assertThat(userDtoList).isNotEmpty();
+    private static OrelUserDto validOrelUserDto(String phoneNo) {
+        return new OrelUserDto(phoneNo, "English", "John", "Doe", "john@example.com",
+                "Finance", "0112345678", "finance@example.com");
     }
 }
@@ -0,0 +1,73 @@
+package com.orelit.springcore.testSharding;
+
+import com.orelit.springcore.persistence.sharding.ShardRouter;
+import com.orelit.springcore.persistence.snowflake.Snowflake;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for routing ids and phone numbers to shards.
+ */
+public class ShardRouterTest {
+
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Test
+    public void testIdsAreRoutedTheSameWayByEveryRouter() {
+        ShardRouter router = new ShardRouter(List.of("a", "b", "c"), Arrays.asList(null, null, null), 128);
+        ShardRouter other = new ShardRouter(List.of("a", "b", "c"), Arrays.asList(null, null, null), 128);
+
+        Set<Integer> used = new HashSet<>();
+        for (int ms = 0; ms < 300; ms++) {
+            long id = idAt(START.plusMillis(ms));
+            assertThat(other.shardForId(id)).isEqualTo(router.shardForId(id));
+            assertThat(router.shardForId(id + 1)).isEqualTo(router.shardForId(id));
+            used.add(router.shardForId(id));
+        }
+        assertThat(used).containsExactlyInAnyOrder(0, 1, 2);
+    }
+
+    @Test
+    public void testShardAddedLaterOnlyTakesNewIds() {
+        Instant since = START.plusSeconds(60);
+        ShardRouter before = new ShardRouter(List.of("a", "b"), Arrays.asList(null, null), 128);
+        ShardRouter after = new ShardRouter(List.of("a", "b", "c"), Arrays.asList(null, null, since), 128);
+
+        for (int ms = 0; ms < 300; ms++) {
+            long id = idAt(START.plusMillis(ms));
+            assertThat(after.shardForId(id)).isEqualTo(before.shardForId(id));
+        }
+        Set<Integer> used = new HashSet<>();
+        for (int ms = 0; ms < 300; ms++) {
+            used.add(after.shardForId(idAt(since.plusMillis(ms))));
+        }
+        assertThat(used).contains(2);
+    }
+
+    @Test
+    public void testPhoneNoDirectoryIsLookedUpInEveryGeneration() {
+        ShardRouter before = new ShardRouter(List.of("a", "b"), Arrays.asList(null, null), 128);
+        ShardRouter after = new ShardRouter(List.of("a", "b", "c"), Arrays.asList(null, null, START), 128);
+
+        boolean moved = false;
+        for (int n = 0; n < 300; n++) {
+            String phoneNo = String.format("07%08d", n);
+            List<Integer> candidates = after.directoryShardsForPhoneNo(phoneNo);
+            assertThat(candidates.get(0)).isEqualTo(after.directoryShardForPhoneNo(phoneNo));
+            assertThat(candidates).contains(before.directoryShardForPhoneNo(phoneNo));
+            moved |= candidates.size() > 1;
+        }
+        assertThat(moved).isTrue();
+    }
+
+    private static long idAt(Instant time) {
+        return Snowflake.firstIdAt(time) | (7L << 12);
+    }
+}
@@ -0,0 +1,237 @@
+package com.orelit.springcore.testSharding;
+
+import com.orelit.springcore.common.dto.OrelUserDto;
+import com.orelit.springcore.common.properties.ApplicationConfigurationProperties;
+import com.orelit.springcore.persistence.cache.PhoneNoBloomFilter;
+import com.orelit.springcore.persistence.cache.PhoneNoNegativeCache;
+import com.orelit.springcore.persistence.entity.Department;
+import com.orelit.springcore.persistence.entity.OrelUser;
+import com.orelit.springcore.persistence.repository.impl.ShardedOrelUserDepartmentImpl;
+import com.orelit.springcore.persistence.repository.impl.ShardedOrelUserTemplateImpl;
+import com.orelit.springcore.persistence.sharding.PhoneNoShardDirectory;
+import com.orelit.springcore.persistence.sharding.ShardRouter;
+import com.orelit.springcore.persistence.sharding.Shards;
+import com.orelit.springcore.persistence.snowflake.Snowflake;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for the sharded user and department templates, with three embedded databases as shards.
+ */
+public class ShardedOrelUserTemplateTest {
+
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    private final List<EmbeddedDatabase> databases = new ArrayList<>();
+
+    private ExecutorService executor;
+
+    private Shards shards;
+
+    private ShardedOrelUserTemplateImpl orelUserTemplate;
+
+    private ShardedOrelUserDepartmentImpl orelUserDepartmentTemplate;
+
+    private PhoneNoBloomFilter phoneNoBloomFilter;
+
+    @BeforeEach
+    public void setUp() {
+        List<Shards.Shard> shardList = new ArrayList<>();
+        for (String name : List.of("shard-1", "shard-2", "shard-3")) {
+            EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                    .setType(EmbeddedDatabaseType.H2)
+                    .setName(name + "-" + UUID.randomUUID())
+                    .build();
+            databases.add(database);
+            shardList.add(new Shards.Shard(shardList.size(), name, database));
+        }
+        executor = Executors.newFixedThreadPool(3);
+        shards = new Shards(shardList, new ShardRouter(List.of("shard-1", "shard-2", "shard-3"),
+                Arrays.asList(null, null, null), 128), executor);
+        PhoneNoShardDirectory directory = new PhoneNoShardDirectory(shards, 1000);
+        directory.createTableIfMissing();
+        ApplicationConfigurationProperties properties = new ApplicationConfigurationProperties();
+        phoneNoBloomFilter = new PhoneNoBloomFilter(properties);
+        PhoneNoNegativeCache phoneNoNegativeCache = new PhoneNoNegativeCache(properties);
+        orelUserTemplate = new ShardedOrelUserTemplateImpl(shards, directory, phoneNoBloomFilter, phoneNoNegativeCache);
+        orelUserTemplate.afterPropertiesSet();
+        orelUserDepartmentTemplate = new ShardedOrelUserDepartmentImpl(shards, directory, orelUserTemplate,
+                phoneNoBloomFilter, phoneNoNegativeCache);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdown();
+        databases.forEach(EmbeddedDatabase::shutdown);
+    }
+
+    @Test
+    public void testUsersAreSpreadOverShardsAndFoundByIdAndPhoneNo() {
+        List<Department> departments = departments(0, 30);
+        orelUserDepartmentTemplate.saveAllOrelUserDepartmentDetails(departments);
+
+        for (Shards.Shard shard : shards.all()) {
+            assertThat(shard.getJdbcTemplate().queryForObject("select count(*) from orel_user", Long.class))
+                    .isPositive();
+        }
+        OrelUser saved = departments.get(17).getOrelUser();
+        OrelUser byPhoneNo = orelUserTemplate.findByPhoneNo(saved.getPhoneNo());
+        assertThat(byPhoneNo.getId()).isEqualTo(saved.getId());
+        assertThat(byPhoneNo.getDepartment().getDep_name()).isEqualTo("Sales");
+        assertThat(byPhoneNo.getDepartment().getOrelUser()).isSameAs(byPhoneNo);
+        assertThat(orelUserTemplate.findById(saved.getId()).getPhoneNo()).isEqualTo(saved.getPhoneNo());
+        assertThat(orelUserTemplate.findDtoById(saved.getId()).getDep_email()).isEqualTo("sales@orelit.com");
+        assertThat(orelUserDepartmentTemplate.findByUserId(saved.getId()).getId())
+                .isEqualTo(departments.get(17).getId());
+        assertThat(orelUserTemplate.findByPhoneNo("0999999999")).isNull();
+        assertThat(orelUserTemplate.findExistingPhoneNos(List.of(saved.getPhoneNo(), "0999999999")))
+                .containsExactly(saved.getPhoneNo());
+        assertThat(orelUserTemplate.findByPhoneNos(List.of(phoneNo(3), phoneNo(21))))
+                .extracting(OrelUser::getPhoneNo)
+                .containsExactlyInAnyOrder(phoneNo(3), phoneNo(21));
+    }
+
+    @Test
+    public void testQueriesOverAllShardsAreMergedInIdOrder() {
+        List<Department> departments = departments(0, 30);
+        orelUserDepartmentTemplate.saveAllOrelUserDepartmentDetails(departments);
+        List<Long> ids = departments.stream().map(department -> department.getOrelUser().getId()).toList();
+
+        assertThat(orelUserTemplate.findAll()).extracting(OrelUser::getId).containsExactlyElementsOf(ids);
+        assertThat(orelUserTemplate.findAfter(ids.get(9), 5)).extracting(OrelUser::getId)
+                .containsExactlyElementsOf(ids.subList(10, 15));
+        assertThat(orelUserTemplate.findCreatedBetween(START.plusMillis(5), START.plusMillis(8), -1L, 10))
+                .extracting(OrelUser::getId)
+                .containsExactlyElementsOf(ids.subList(5, 8));
+        assertThat(orelUserTemplate.findCreatedBetween(START.plusMillis(5), START.plusMillis(20), ids.get(6), 3))
+                .extracting(OrelUser::getId)
+                .containsExactlyElementsOf(ids.subList(7, 10));
+
+        Page<OrelUserDto> page = orelUserTemplate.findAllDtos(PageRequest.of(2, 5, Sort.by("id")));
+        assertThat(page.getTotalElements()).isEqualTo(30);
+        assertThat(page.getContent()).extracting(OrelUserDto::getPhoneNo)
+                .containsExactly(phoneNo(10), phoneNo(11), phoneNo(12), phoneNo(13), phoneNo(14));
+
+        List<Long> streamed = new ArrayList<>();
+        orelUserTemplate.streamAll(orelUser -> streamed.add(orelUser.getId()));
+        assertThat(streamed).containsExactlyElementsOf(ids);
+        List<Long> exported = new ArrayList<>();
+        orelUserTemplate.forEachWithDepartment(resultSet -> exported.add(resultSet.getLong(9)));
+        assertThat(exported).containsExactlyElementsOf(ids);
+    }
+
+    @Test
+    public void testPhoneNoStoredOnAnyShardIsRejected() {
+        orelUserDepartmentTemplate.saveAllOrelUserDepartmentDetails(departments(0, 1));
+        List<Department> bulk = departments(100, 10);
+        bulk.get(7).getOrelUser().setPhoneNo(phoneNo(0));
+
+        assertThrows(DuplicateKeyException.class,
+                () -> orelUserDepartmentTemplate.saveAllOrelUserDepartmentDetails(bulk));
+
+        assertThat(orelUserTemplate.findAll()).extracting(OrelUser::getPhoneNo).containsExactly(phoneNo(0));
+        assertThat(orelUserTemplate.findExistingPhoneNos(List.of(phoneNo(100), phoneNo(101)))).isEmpty();
+    }
+
+    @Test
+    public void testOnlySuccessfulInsertsAreAddedToThePhoneNoFilter() {
+        orelUserDepartmentTemplate.saveAllOrelUserDepartmentDetails(departments(0, 1));
+        assertThat(phoneNoBloomFilter.getElementCount()).isEqualTo(1);
+
+        List<Department> bulk = departments(100, 10);
+        bulk.get(7).getOrelUser().setPhoneNo(phoneNo(0));
+        assertThrows(DuplicateKeyException.class,
+                () -> orelUserDepartmentTemplate.saveAllOrelUserDepartmentDetails(bulk));
+        OrelUser saved = orelUserTemplate.findByPhoneNo(phoneNo(0));
+        for (int n = 0; n < 20; n++) {
+            saved.setFirstName("Jane " + n);
+            orelUserTemplate.save(saved);
+        }
+
+        assertThat(phoneNoBloomFilter.getElementCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testPhoneNoStoredInAnOlderGenerationIsRejected() {
+        Shards grown = new Shards(shards.all(), new ShardRouter(List.of("shard-1", "shard-2", "shard-3"),
+                Arrays.asList(null, null, START), 128), executor);
+        PhoneNoShardDirectory directory = new PhoneNoShardDirectory(grown, 1000);
+        String phoneNo = IntStream.range(0, 1000).mapToObj(ShardedOrelUserTemplateTest::phoneNo)
+                .filter(candidate -> grown.getRouter().directoryShardsForPhoneNo(candidate).size() > 1)
+                .findFirst()
+                .orElseThrow();
+        List<Integer> generations = grown.getRouter().directoryShardsForPhoneNo(phoneNo);
+        grown.get(generations.get(1)).getJdbcTemplate().update(
+                "insert into orel_user_phone_directory (phone_no, user_id) values (?, ?)", phoneNo, 1L);
+
+        assertThrows(DuplicateKeyException.class, () -> directory.insertAll(Map.of(phoneNo, 2L)));
+
+        assertThat(grown.get(generations.get(0)).getJdbcTemplate().queryForObject(
+                "select count(*) from orel_user_phone_directory", Long.class)).isZero();
+        assertThat(directory.find(phoneNo)).isEqualTo(1L);
+    }
+
+    @Test
+    public void testDeletedPhoneNoCanBeUsedAgain() {
+        orelUserDepartmentTemplate.saveAllOrelUserDepartmentDetails(departments(0, 1));
+        OrelUser saved = orelUserTemplate.findByPhoneNo(phoneNo(0));
+
+        orelUserDepartmentTemplate.delete(saved.getDepartment());
+        orelUserTemplate.delete(saved);
+        assertThat(orelUserTemplate.findByPhoneNo(phoneNo(0))).isNull();
+
+        List<Department> again = departments(50, 1);
+        again.get(0).getOrelUser().setPhoneNo(phoneNo(0));
+        orelUserDepartmentTemplate.saveAllOrelUserDepartmentDetails(again);
+        assertThat(orelUserTemplate.findByPhoneNo(phoneNo(0)).getId())
+                .isEqualTo(again.get(0).getOrelUser().getId());
+    }
+
+    /**
+     * Departments with new users created one millisecond apart, so their ids land on different
+     * shards.
+     */
+    private static List<Department> departments(int from, int count) {
+        List<Department> departments = new ArrayList<>();
+        for (int n = from; n < from + count; n++) {
+            OrelUser orelUser = new OrelUser(Snowflake.firstIdAt(START.plusMillis(n)) | (3L << 12));
+            orelUser.setPhoneNo(phoneNo(n));
+            orelUser.setLanguage("English");
+            orelUser.setFirstName("John");
+            orelUser.setMiddleName("Doe");
+            orelUser.setEmail("john@orelit.com");
+            Department department = new Department();
+            department.setDep_name("Sales");
+            department.setDep_contact_no("0112345678");
+            department.setDep_email("sales@orelit.com");
+            department.setOrelUser(orelUser);
+            departments.add(department);
+        }
+        return departments;
+    }
+
+    private static String phoneNo(int n) {
+        return String.format("07%08d", n);
+    }
+}
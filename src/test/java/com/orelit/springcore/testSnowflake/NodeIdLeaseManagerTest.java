@@ -0,0 +1,123 @@
+package com.orelit.springcore.testSnowflake;
+
+import com.orelit.springcore.common.properties.ApplicationConfigurationProperties;
+import com.orelit.springcore.persistence.repository.NodeLeaseTemplate;
+import com.orelit.springcore.persistence.repository.impl.NodeLeaseTemplateImpl;
+import com.orelit.springcore.persistence.snowflake.NodeIdLeaseManager;
+import com.orelit.springcore.persistence.snowflake.Snowflake;
+import com.orelit.springcore.persistence.snowflake.SnowflakeIdGenerator;
+import com.orelit.springcore.persistence.snowflake.SnowflakeOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for Snowflake node id leasing against an embedded database.
+ */
+@JdbcTest
+@Import(NodeLeaseTemplateImpl.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class NodeIdLeaseManagerTest {
+
+    @Autowired
+    private NodeLeaseTemplate nodeLeaseTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<NodeIdLeaseManager> managers = new ArrayList<>();
+
+    private Snowflake installed;
+
+    @BeforeEach
+    public void setUp() {
+        installed = SnowflakeIdGenerator.getSnowflake();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        managers.forEach(NodeIdLeaseManager::destroy);
+        jdbcTemplate.execute("delete from snowflake_node_lease");
+        SnowflakeIdGenerator.setSnowflake(installed);
+    }
+
+    @Test
+    public void testInstancesLeaseDifferentNodeIds() {
+        Snowflake first = start();
+        Snowflake second = start();
+        Snowflake third = start();
+
+        assertThat(first.getNode()).isNotEqualTo(second.getNode());
+        assertThat(third.getNode()).isNotIn(first.getNode(), second.getNode());
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(*) from snowflake_node_lease", Integer.class)).isEqualTo(3);
+    }
+
+    @Test
+    public void testExpiredLeaseIsTakenOverAndOwnerLeasesANewNodeId() {
+        NodeIdLeaseManager original = manager();
+        Snowflake originalSnowflake = original.start(SnowflakeOptions.builder().build());
+        jdbcTemplate.update("update snowflake_node_lease "
+                        + "set leased_until = timestampadd(second, -1, current_timestamp(3)) where node_id = ?",
+                original.getNodeId());
+
+        Snowflake takeover = start();
+        assertThat(takeover.getNode()).isEqualTo(originalSnowflake.getNode());
+
+        original.heartbeat();
+
+        assertThat(original.getLostCount()).isEqualTo(1);
+        assertThat(original.getNodeId()).isNotEqualTo((int) takeover.getNode());
+        assertThat(SnowflakeIdGenerator.getSnowflake().getNode()).isEqualTo(original.getNodeId());
+        assertThrows(IllegalStateException.class, originalSnowflake::nextId);
+        assertThat(takeover.nextId()).isPositive();
+    }
+
+    @Test
+    public void testHeartbeatKeepsLease() {
+        NodeIdLeaseManager manager = manager();
+        manager.start(SnowflakeOptions.builder().build());
+        int nodeId = manager.getNodeId();
+
+        manager.heartbeat();
+
+        assertThat(manager.getLostCount()).isZero();
+        assertThat(manager.getNodeId()).isEqualTo(nodeId);
+    }
+
+    @Test
+    public void testReleasedLeaseCanBeReused() {
+        NodeIdLeaseManager manager = manager();
+        Snowflake released = manager.start(SnowflakeOptions.builder().build());
+        manager.destroy();
+
+        Snowflake next = start();
+        assertThat(next.getNode()).isEqualTo(released.getNode());
+    }
+
+    private Snowflake start() {
+        return manager().start(SnowflakeOptions.builder().build());
+    }
+
+    private NodeIdLeaseManager manager() {
+        ApplicationConfigurationProperties properties = new ApplicationConfigurationProperties();
+        properties.getIdGenerator().getLease().setTtl(Duration.ofMinutes(1));
+        properties.getIdGenerator().getLease().setHeartbeatInterval(Duration.ofSeconds(30));
+        NodeIdLeaseManager manager = new NodeIdLeaseManager(nodeLeaseTemplate, properties);
+        managers.add(manager);
+        return manager;
+    }
+}
@@ -0,0 +1,62 @@
+package com.orelit.springcore.testSnowflake;
+
+import com.orelit.springcore.persistence.snowflake.Snowflake;
+import com.orelit.springcore.persistence.snowflake.SnowflakeIdGenerator;
+import com.orelit.springcore.persistence.snowflake.SnowflakeOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the id blocks of the Hibernate Snowflake id generator, on a Snowflake whose clock
+ * stands still so that consecutive ids differ by one.
+ */
+public class SnowflakeIdGeneratorTest {
+
+    private Snowflake installed;
+
+    private Snowflake snowflake;
+
+    @BeforeEach
+    public void setUp() {
+        installed = SnowflakeIdGenerator.getSnowflake();
+        snowflake = new Snowflake(1, SnowflakeOptions.builder()
+                .clock(Clock.fixed(Instant.ofEpochMilli(1_700_000_000_000L), ZoneOffset.UTC))
+                .build());
+        SnowflakeIdGenerator.setSnowflake(snowflake);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SnowflakeIdGenerator.setSnowflake(installed);
+    }
+
+    @Test
+    public void testSingleInsertReservesOneId() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator();
+
+        long id = (Long) generator.generate(null, null);
+
+        assertThat(snowflake.nextId()).isEqualTo(id + 1);
+    }
+
+    @Test
+    public void testBlocksGrowWhileTheyAreUsedUp() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator();
+
+        long first = (Long) generator.generate(null, null);
+        for (int i = 1; i < 7; i++) {
+            assertThat((Long) generator.generate(null, null)).isEqualTo(first + i);
+        }
+
+        // Blocks of 1, 2 and 4 ids are used up, the next id starts a block of 8.
+        assertThat((Long) generator.generate(null, null)).isEqualTo(first + 7);
+        assertThat(snowflake.nextId()).isEqualTo(first + 15);
+    }
+}
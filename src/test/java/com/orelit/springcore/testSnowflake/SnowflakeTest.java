@@ -0,0 +1,326 @@
+package com.orelit.springcore.testSnowflake;
+
+import com.orelit.springcore.persistence.snowflake.IdBlock;
+import com.orelit.springcore.persistence.snowflake.Snowflake;
+import com.orelit.springcore.persistence.snowflake.SnowflakeOptions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for Snowflake id generation.
+ */
+public class SnowflakeTest {
+
+    private static final int THREADS = 16;
+
+    private static final int IDS_PER_THREAD = 50_000;
+
+    @Test
+    public void testNextIdIsIncreasing() {
+        Snowflake snowflake = new Snowflake(1);
+        long previous = snowflake.nextId();
+        for (int i = 0; i < 100_000; i++) {
+            long next = snowflake.nextId();
+            assertThat(next).isGreaterThan(previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    public void testNextIdIsUniqueAcrossThreads() throws Exception {
+        Snowflake snowflake = new Snowflake(7);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                tasks.add(() -> {
+                    long previous = 0;
+                    for (int i = 0; i < IDS_PER_THREAD; i++) {
+                        long id = snowflake.nextId();
+                        assertThat(id).isGreaterThan(previous);
+                        previous = id;
+                        ids.add(id);
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(ids).hasSize(THREADS * IDS_PER_THREAD);
+    }
+
+    @Test
+    public void testReserveReturnsContiguousBlock() {
+        Snowflake snowflake = new Snowflake(3);
+        long before = snowflake.nextId();
+        IdBlock block = snowflake.reserve(100);
+
+        assertThat(block.getSize()).isBetween(1, 100);
+        assertThat(block.getFirstId()).isGreaterThan(before);
+        long expected = block.getFirstId();
+        while (block.hasNext()) {
+            assertThat(block.next()).isEqualTo(expected++);
+        }
+        assertThat(snowflake.nextId()).isGreaterThanOrEqualTo(expected);
+    }
+
+    @Test
+    public void testReserveNeverExceedsOneMillisecond() {
+        Snowflake snowflake = new Snowflake(3);
+        IdBlock block = snowflake.reserve(10_000);
+        assertThat(block.getSize()).isLessThanOrEqualTo(4096);
+    }
+
+    @Test
+    public void testReservedBlocksAreUniqueAcrossThreads() throws Exception {
+        Snowflake snowflake = new Snowflake(9);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                tasks.add(() -> {
+                    int count = 0;
+                    for (int i = 0; i < 500; i++) {
+                        IdBlock block = snowflake.reserve(64);
+                        while (block.hasNext()) {
+                            ids.add(block.next());
+                            count++;
+                        }
+                        ids.add(snowflake.nextId());
+                        count++;
+                    }
+                    return count;
+                });
+            }
+            int total = 0;
+            for (Future<Integer> future : executor.invokeAll(tasks)) {
+                total += future.get();
+            }
+            assertThat(ids).hasSize(total);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStripedIdsAreUniqueAcrossThreads() throws Exception {
+        Snowflake snowflake = new Snowflake(5, SnowflakeOptions.builder()
+                .stripes(8)
+                .waitStrategy(SnowflakeOptions.WaitStrategy.PARK)
+                .build());
+        int threads = 32;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                tasks.add(() -> {
+                    int count = 0;
+                    long previous = 0;
+                    for (int i = 0; i < 20_000; i++) {
+                        long id = snowflake.nextId();
+                        assertThat(id).isGreaterThan(previous);
+                        previous = id;
+                        ids.add(id);
+                        count++;
+                        if (i % 1000 == 0) {
+                            IdBlock block = snowflake.reserve(32);
+                            while (block.hasNext()) {
+                                previous = block.next();
+                                ids.add(previous);
+                                count++;
+                            }
+                        }
+                    }
+                    return count;
+                });
+            }
+            int total = 0;
+            for (Future<Integer> future : executor.invokeAll(tasks)) {
+                total += future.get();
+            }
+            assertThat(ids).hasSize(total);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStripedLaneKeepsNodeBits() {
+        Snowflake snowflake = new Snowflake(1023, SnowflakeOptions.builder().stripes(64).build());
+        IdBlock block = snowflake.reserve(1000);
+
+        assertThat(block.getSize()).isLessThanOrEqualTo(64);
+        assertThat((block.getFirstId() >> 12) & 1023).isEqualTo(1023);
+    }
+
+    @Test
+    public void testStripesMustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new Snowflake(1, SnowflakeOptions.builder().stripes(3).build()));
+    }
+
+    @Test
+    public void testSmallClockRegressionUsesLogicalClock() {
+        MutableClock clock = new MutableClock(1_700_000_000_000L);
+        Snowflake snowflake = new Snowflake(1, SnowflakeOptions.builder()
+                .maxClockBackwardMillis(5)
+                .clock(clock)
+                .build());
+        long before = snowflake.nextId();
+
+        clock.add(-3);
+        long after = snowflake.nextId();
+
+        assertThat(after).isGreaterThan(before);
+        assertThat(snowflake.getClockBackwardCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testLargeClockRegressionFails() {
+        MutableClock clock = new MutableClock(1_700_000_000_000L);
+        Snowflake snowflake = new Snowflake(1, SnowflakeOptions.builder()
+                .maxClockBackwardMillis(5)
+                .clock(clock)
+                .build());
+        snowflake.nextId();
+
+        clock.add(-6);
+        assertThrows(IllegalStateException.class, snowflake::nextId);
+    }
+
+    @Test
+    public void testExhaustedMillisecondBorrowsFromLogicalClock() {
+        MutableClock clock = new MutableClock(1_700_000_000_000L);
+        Snowflake snowflake = new Snowflake(1, SnowflakeOptions.builder()
+                .maxClockBackwardMillis(2)
+                .clock(clock)
+                .build());
+        long previous = 0;
+        for (int i = 0; i < 4096 * 3; i++) {
+            long id = snowflake.nextId();
+            assertThat(id).isGreaterThan(previous);
+            previous = id;
+        }
+        assertThat(snowflake.getSequenceExhaustedCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testExhaustedMillisecondParksUntilClockMoves() throws Exception {
+        MutableClock clock = new MutableClock(1_700_000_000_000L);
+        Snowflake snowflake = new Snowflake(1, SnowflakeOptions.builder()
+                .waitStrategy(SnowflakeOptions.WaitStrategy.PARK)
+                .clock(clock)
+                .build());
+        for (int i = 0; i < 4096; i++) {
+            snowflake.nextId();
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> next = executor.submit(snowflake::nextId);
+            Thread.sleep(50);
+            assertThat(next).isNotDone();
+
+            clock.add(1);
+            assertThat(next.get()).isPositive();
+            assertThat(snowflake.getSequenceExhaustedCount()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testTimeOfDecodesCreationTime() {
+        MutableClock clock = new MutableClock(1_700_000_000_123L);
+        Snowflake snowflake = new Snowflake(42, SnowflakeOptions.builder().clock(clock).build());
+
+        assertThat(Snowflake.timeOf(snowflake.nextId()))
+                .isEqualTo(Instant.ofEpochMilli(1_700_000_000_123L));
+    }
+
+    @Test
+    public void testFirstIdAtBoundsIdsOfTimeWindow() {
+        MutableClock clock = new MutableClock(1_700_000_000_000L);
+        Snowflake snowflake = new Snowflake(1023, SnowflakeOptions.builder().clock(clock).build());
+        long inside = snowflake.nextId();
+        clock.add(1);
+        long after = snowflake.nextId();
+
+        Instant from = Instant.ofEpochMilli(1_700_000_000_000L);
+        Instant to = from.plusMillis(1);
+        assertThat(inside).isGreaterThanOrEqualTo(Snowflake.firstIdAt(from))
+                .isLessThan(Snowflake.firstIdAt(to));
+        assertThat(after).isGreaterThanOrEqualTo(Snowflake.firstIdAt(to));
+        assertThat(Snowflake.firstIdAt(Instant.EPOCH)).isZero();
+    }
+
+    @Test
+    public void testExpiredLeaseStopsIdsUntilRenewed() {
+        Snowflake snowflake = new Snowflake(5);
+        snowflake.leaseUntil(System.nanoTime() - 1);
+
+        assertThrows(IllegalStateException.class, snowflake::nextId);
+        assertThrows(IllegalStateException.class, () -> snowflake.reserve(10));
+
+        snowflake.leaseUntil(System.nanoTime() + 60_000_000_000L);
+        assertThat(snowflake.nextId()).isPositive();
+    }
+
+    /**
+     * Clock that only moves when told to.
+     */
+    private static class MutableClock extends Clock {
+
+        private final AtomicLong millis;
+
+        MutableClock(long millis) {
+            this.millis = new AtomicLong(millis);
+        }
+
+        void add(long delta) {
+            millis.addAndGet(delta);
+        }
+
+        @Override
+        public long millis() {
+            return millis.get();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis());
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
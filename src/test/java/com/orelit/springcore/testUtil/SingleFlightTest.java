@@ -0,0 +1,67 @@
+package com.orelit.springcore.testUtil;
+
+import com.orelit.springcore.common.util.SingleFlight;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for coalescing concurrent calls with SingleFlight.
+ */
+public class SingleFlightTest {
+
+    @Test
+    public void testConcurrentCallsShareOneExecution() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("0123456789", () -> {
+                    calls.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "user";
+                })));
+            }
+            while (calls.get() == 0) {
+                Thread.onSpinWait();
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<String> result : results) {
+                assertThat(result.get()).isEqualTo("user");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(singleFlight.getInFlightCount()).isZero();
+    }
+
+    @Test
+    public void testExceptionIsRethrownAndNotKept() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("key", () -> {
+            throw new IllegalStateException("failed");
+        }));
+        assertThat(singleFlight.execute("key", () -> null)).isNull();
+    }
+}
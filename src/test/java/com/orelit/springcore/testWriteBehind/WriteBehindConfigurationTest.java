@@ -0,0 +1,34 @@
+package com.orelit.springcore.testWriteBehind;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orelit.springcore.common.properties.ApplicationConfigurationProperties;
+import com.orelit.springcore.persistence.writebehind.WriteBehindConfiguration;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for the settings checked when the write-behind queue is created.
+ */
+public class WriteBehindConfigurationTest {
+
+    @Test
+    public void testJournalDirectoryMustBeAbsolute() {
+        ApplicationConfigurationProperties properties = new ApplicationConfigurationProperties();
+        properties.getWriteBehind().setDirectory("write-behind");
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> new WriteBehindConfiguration()
+                .writeBehindQueue(properties, new ObjectMapper(), null, null, null, null, null));
+
+        assertThat(ex.getMessage()).contains("application.write-behind.directory");
+    }
+
+    @Test
+    public void testJournalDirectoryIsRequired() {
+        ApplicationConfigurationProperties properties = new ApplicationConfigurationProperties();
+
+        assertThrows(IllegalArgumentException.class, () -> new WriteBehindConfiguration()
+                .writeBehindQueue(properties, new ObjectMapper(), null, null, null, null, null));
+    }
+}
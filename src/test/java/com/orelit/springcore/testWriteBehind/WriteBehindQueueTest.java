@@ -0,0 +1,136 @@
+package com.orelit.springcore.testWriteBehind;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orelit.springcore.common.dto.OrelUserDto;
+import com.orelit.springcore.persistence.writebehind.WriteBehindJournal;
+import com.orelit.springcore.persistence.writebehind.WriteBehindQueue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for the write-behind queue of user updates, with the database replaced by a list of
+ * written batches.
+ */
+public class WriteBehindQueueTest {
+
+    @TempDir
+    private Path directory;
+
+    private final List<List<OrelUserDto>> batches = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void testUpdatesAreCoalescedAndReadBeforeTheyAreWritten() throws Exception {
+        WriteBehindQueue queue = queue(batches::add, Duration.ofMinutes(1), Duration.ofMinutes(2));
+
+        queue.enqueue(update("0712345678", "Sales"));
+        queue.enqueue(update("0787654321", "Sales"));
+        queue.enqueue(update("0712345678", "Finance"));
+
+        assertThat(queue.find("0712345678").getDep_name()).isEqualTo("Finance");
+        assertThat(queue.overlay(update("0787654321", "Old")).getDep_name()).isEqualTo("Sales");
+        assertThat(batches).isEmpty();
+
+        queue.flush();
+
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).extracting(OrelUserDto::getDep_name).containsExactly("Finance", "Sales");
+        assertThat(queue.find("0712345678")).isNull();
+        assertThat(queue.getPendingCount()).isZero();
+        queue.destroy();
+    }
+
+    @Test
+    public void testUnwrittenUpdatesAreWrittenAfterRestart() throws Exception {
+        WriteBehindQueue failing = queue(updates -> {
+            throw new DataAccessResourceFailureException("Database is down");
+        }, Duration.ofMinutes(1), Duration.ofMinutes(2));
+        failing.enqueue(update("0712345678", "Sales"));
+        failing.enqueue(update("0712345678", "Finance"));
+        assertThrows(DataAccessResourceFailureException.class, failing::flush);
+        assertThat(failing.find("0712345678").getDep_name()).isEqualTo("Finance");
+        failing.destroy();
+
+        WriteBehindQueue restarted = queue(batches::add, Duration.ofMinutes(1), Duration.ofMinutes(2));
+        assertThat(restarted.find("0712345678").getDep_name()).isEqualTo("Finance");
+        restarted.flush();
+        restarted.destroy();
+
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).extracting(OrelUserDto::getDep_name).containsExactly("Finance");
+        try (var files = Files.list(directory)) {
+            assertThat(files.mapToLong(file -> file.toFile().length()).sum()).isZero();
+        }
+    }
+
+    @Test
+    public void testUpdatesFailWhenTheQueueFallsBehindTheMaxLag() throws Exception {
+        WriteBehindQueue queue = queue(updates -> {
+            throw new DataAccessResourceFailureException("Database is down");
+        }, Duration.ofMillis(20), Duration.ofMillis(200));
+        queue.enqueue(update("0712345678", "Sales"));
+        Thread.sleep(300);
+
+        assertThrows(IllegalStateException.class, () -> queue.enqueue(update("0787654321", "Sales")));
+        assertThat(queue.getFailedFlushCount()).isPositive();
+        queue.destroy();
+    }
+
+    @Test
+    public void testUpdatesThatCannotBeWrittenAreDeadLettered() throws Exception {
+        WriteBehindQueue queue = queue(updates -> {
+            if (updates.stream().anyMatch(update -> update.getPhoneNo().equals("0799999999"))) {
+                throw new DataIntegrityViolationException("Data too long for column 'dep_name'");
+            }
+            batches.add(updates);
+        }, Duration.ofMinutes(1), Duration.ofMinutes(2));
+        queue.enqueue(update("0712345678", "Sales"));
+        queue.enqueue(update("0799999999", "Poison"));
+        queue.enqueue(update("0787654321", "Finance"));
+
+        queue.flush();
+
+        assertThat(batches).flatExtracting(updates -> updates).extracting(OrelUserDto::getPhoneNo)
+                .containsExactly("0712345678", "0787654321");
+        assertThat(queue.find("0799999999")).isNull();
+        assertThat(queue.getPendingCount()).isZero();
+        assertThat(queue.getDeadLetterCount()).isEqualTo(1);
+        assertThat(Files.readString(directory.resolve("dead-letters.log"))).contains("0799999999");
+        queue.destroy();
+
+        WriteBehindQueue restarted = queue(batches::add, Duration.ofMinutes(1), Duration.ofMinutes(2));
+        assertThat(restarted.getPendingCount()).isZero();
+        restarted.destroy();
+    }
+
+    private WriteBehindQueue queue(Consumer<List<OrelUserDto>> writer, Duration flushInterval, Duration maxLag) {
+        WriteBehindQueue queue = new WriteBehindQueue(new WriteBehindJournal(directory, new ObjectMapper()),
+                writer, flushInterval, 500, maxLag, 10_000);
+        queue.afterPropertiesSet();
+        return queue;
+    }
+
+    private static OrelUserDto update(String phoneNo, String depName) {
+        return OrelUserDto.builder()
+                .phoneNo(phoneNo)
+                .language("English")
+                .firstName("John")
+                .middleName("Doe")
+                .email("john@orelit.com")
+                .dep_name(depName)
+                .dep_contact_no("0112345678")
+                .dep_email("dep@orelit.com")
+                .build();
+    }
+}